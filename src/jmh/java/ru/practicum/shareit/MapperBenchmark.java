@@ -0,0 +1,82 @@
+package ru.practicum.shareit;
+
+import org.openjdk.jmh.annotations.*;
+import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.dto.BookingDtoRequest;
+import ru.practicum.shareit.booking.dto.BookingMapper;
+import ru.practicum.shareit.booking.dto.Status;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.item.dto.ItemDtoWithBooking;
+import ru.practicum.shareit.item.dto.ItemMapper;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.request.ItemRequest;
+import ru.practicum.shareit.request.dto.ItemRequestDto;
+import ru.practicum.shareit.request.dto.ItemRequestMapper;
+import ru.practicum.shareit.user.User;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость преобразований сущностей в DTO и обратно.
+ * Запуск: mvn -Pbenchmark test-compile exec:exec -Djmh.args="MapperBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MapperBenchmark {
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+    private User user;
+    private Item item;
+    private Booking booking;
+    private BookingDtoRequest bookingDtoRequest;
+    private ItemRequest itemRequest;
+
+    @Setup
+    public void setUp() {
+        user = new User(1, "user", "user@user.com");
+        itemRequest = new ItemRequest(1L, "Нужна дрель", user, LocalDateTime.of(2023, 9, 1, 12, 0));
+        item = new Item(1, "Дрель", "Аккумуляторная дрель", true, user, itemRequest);
+        booking = new Booking(1, LocalDateTime.of(2023, 9, 20, 18, 0), LocalDateTime.of(2023, 9, 21, 18, 0),
+                item, user, Status.APPROVED);
+        bookingDtoRequest = new BookingDtoRequest(0, "2023-09-20T18:00:00", "2023-09-21T18:00:00", 1L);
+    }
+
+    @Benchmark
+    public Booking bookingFromRequest() {
+        return BookingMapper.toBookingFromRequest(bookingDtoRequest, user, Status.WAITING, item);
+    }
+
+    /**
+     * Разбор тех же дат общим форматтером — нижняя граница для bookingFromRequest.
+     */
+    @Benchmark
+    public LocalDateTime parseWithSharedFormatter() {
+        LocalDateTime.parse(bookingDtoRequest.getStart(), FORMATTER);
+        return LocalDateTime.parse(bookingDtoRequest.getEnd(), FORMATTER);
+    }
+
+    @Benchmark
+    public BookingDto bookingToDto() {
+        return BookingMapper.toBookingDto(booking);
+    }
+
+    @Benchmark
+    public ItemDtoWithBooking itemToDtoWithBooking() {
+        return ItemMapper.toItemDtoWithBooking(item);
+    }
+
+    @Benchmark
+    public ItemRequestDto itemRequestToDto() {
+        return ItemRequestMapper.toItemRequestDto(itemRequest);
+    }
+
+    @Benchmark
+    public ItemRequestDto itemRequestToDtoWithItems() {
+        return ItemRequestMapper.toItemRequestWithItemsDto(itemRequest);
+    }
+}
@@ -0,0 +1,33 @@
+package ru.practicum.shareit;
+
+import java.lang.reflect.Proxy;
+import java.util.Map;
+
+/**
+ * Заглушки репозиториев для бенчмарков: метод возвращает заранее заданный результат по имени,
+ * не разбирая аргументы, поэтому в замер попадает только код сервиса.
+ */
+public final class RepositoryStubs {
+    private RepositoryStubs() {
+    }
+
+    public static <T> T stub(Class<T> type, Map<String, Object> results) {
+        Object proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (self, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "equals":
+                        return self == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(self);
+                    default:
+                        return type.getSimpleName() + "Stub";
+                }
+            }
+            if (!results.containsKey(method.getName())) {
+                throw new UnsupportedOperationException(type.getSimpleName() + "." + method.getName());
+            }
+            return results.get(method.getName());
+        });
+        return type.cast(proxy);
+    }
+}
@@ -0,0 +1,135 @@
+package ru.practicum.shareit.booking;
+
+import org.h2.tools.Server;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Массовая вставка аренд так, как ее выполняет Hibernate: при IDENTITY — по одному INSERT
+ * с возвратом ключа на строку, при последовательности с pooled-lo — одна выборка из
+ * последовательности и один JDBC-пакет на 50 строк.
+ * Выигрыш дают сэкономленные обращения к базе, поэтому кроме встроенной H2 замеряется H2 по TCP.
+ * Запуск: mvn -Pbenchmark test-compile exec:exec -Djmh.args="BookingInsertBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class BookingInsertBenchmark {
+    private static final int BATCH_SIZE = 50;
+    private static final String INSERT = "INSERT INTO bookings (start_date, end_date, item_id, booker_id, status, version) " +
+            "VALUES (?, ?, ?, ?, ?, 0)";
+    private static final String INSERT_WITH_ID = "INSERT INTO bookings (id, start_date, end_date, item_id, booker_id, status, version) " +
+            "VALUES (?, ?, ?, ?, ?, ?, 0)";
+
+    @Param({"1000", "10000"})
+    int rows;
+
+    @Param({"mem", "tcp"})
+    String transport;
+
+    private Server server;
+    private Connection connection;
+    private LocalDateTime start;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        String database = "mem:insert" + rows + ";DB_CLOSE_DELAY=-1";
+        if ("tcp".equals(transport)) {
+            server = Server.createTcpServer("-tcpPort", "0", "-ifNotExists").start();
+            connection = DriverManager.getConnection("jdbc:h2:tcp://localhost:" + server.getPort() + "/" + database, "test", "test");
+        } else {
+            connection = DriverManager.getConnection("jdbc:h2:" + database, "test", "test");
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS bookings");
+            statement.execute("DROP SEQUENCE IF EXISTS bookings_seq");
+            statement.execute("CREATE SEQUENCE bookings_seq START WITH 1 INCREMENT BY " + BATCH_SIZE);
+            statement.execute("CREATE TABLE bookings (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, " +
+                    "start_date TIMESTAMP, end_date TIMESTAMP, item_id BIGINT, booker_id BIGINT, " +
+                    "status VARCHAR(25), version BIGINT DEFAULT 0 NOT NULL)");
+        }
+        connection.setAutoCommit(false);
+        start = LocalDateTime.now().plusDays(1);
+    }
+
+    @TearDown(Level.Invocation)
+    public void truncate() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("TRUNCATE TABLE bookings");
+        }
+        connection.commit();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE bookings");
+            statement.execute("DROP SEQUENCE bookings_seq");
+        }
+        connection.close();
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Benchmark
+    public void identity(Blackhole blackhole) throws SQLException {
+        try (PreparedStatement insert = connection.prepareStatement(INSERT, Statement.RETURN_GENERATED_KEYS)) {
+            for (int i = 0; i < rows; i++) {
+                bind(insert, 1, i);
+                insert.executeUpdate();
+                try (ResultSet keys = insert.getGeneratedKeys()) {
+                    keys.next();
+                    blackhole.consume(keys.getLong(1));
+                }
+            }
+        }
+        connection.commit();
+    }
+
+    @Benchmark
+    public void sequencePooledLo(Blackhole blackhole) throws SQLException {
+        try (PreparedStatement next = connection.prepareStatement("SELECT NEXT VALUE FOR bookings_seq");
+             PreparedStatement insert = connection.prepareStatement(INSERT_WITH_ID)) {
+            long id = 0;
+            for (int i = 0; i < rows; i++) {
+                if (i % BATCH_SIZE == 0) {
+                    try (ResultSet resultSet = next.executeQuery()) {
+                        resultSet.next();
+                        id = resultSet.getLong(1);
+                    }
+                }
+                insert.setLong(1, id);
+                blackhole.consume(id++);
+                bind(insert, 2, i);
+                insert.addBatch();
+                if ((i + 1) % BATCH_SIZE == 0) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+    }
+
+    private void bind(PreparedStatement insert, int first, int row) throws SQLException {
+        insert.setTimestamp(first, Timestamp.valueOf(start.plusDays(row)));
+        insert.setTimestamp(first + 1, Timestamp.valueOf(start.plusDays(row).plusHours(1)));
+        insert.setLong(first + 2, row % 100 + 1);
+        insert.setLong(first + 3, row % 10 + 1);
+        insert.setString(first + 4, "WAITING");
+    }
+}
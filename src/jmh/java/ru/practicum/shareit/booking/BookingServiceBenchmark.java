@@ -0,0 +1,82 @@
+package ru.practicum.shareit.booking;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.practicum.shareit.EntityVersions;
+import ru.practicum.shareit.RepositoryStubs;
+import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.dto.BookingRow;
+import ru.practicum.shareit.booking.dto.State;
+import ru.practicum.shareit.booking.dto.Status;
+import ru.practicum.shareit.item.ItemRepository;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.user.User;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ветки getBookingsByState и getBookingsByOwnerOfItems поверх репозиториев в памяти:
+ * замеряется выбор ветки и сборка DTO из плоских строк.
+ * Запуск: mvn -Pbenchmark test-compile exec:exec -Djmh.args="BookingServiceBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@org.openjdk.jmh.annotations.State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BookingServiceBenchmark {
+    @Param({"ALL", "CURRENT", "PAST", "FUTURE", "WAITING", "REJECTED"})
+    State state;
+
+    @Param({"10", "1000"})
+    int bookingCount;
+
+    private BookingService bookingService;
+    private User owner;
+    private User booker;
+
+    @Setup
+    public void setUp() {
+        owner = new User(1, "owner", "owner@user.com");
+        booker = new User(2, "booker", "booker@user.com");
+        Item item = new Item(1, "Дрель", "Аккумуляторная дрель", true, owner, null);
+        LocalDateTime now = LocalDateTime.now();
+        List<BookingRow> rows = new ArrayList<>();
+        Status[] statuses = Status.values();
+        for (int i = 0; i < bookingCount; i++) {
+            LocalDateTime start = now.plusHours(i - bookingCount / 2);
+            rows.add(new BookingRow((long) i + 1, start, start.plusHours(1), statuses[i % statuses.length],
+                    item.getId(), item.getName(), item.getDescription(), item.isAvailable(),
+                    owner.getId(), owner.getName(), owner.getEmail(), booker.getId(), booker.getName(), booker.getEmail()));
+        }
+
+        Map<String, Object> results = new HashMap<>();
+        for (String method : List.of("findRowsByBooker", "findCurrentRowsByBooker", "findPastRowsByBooker", "findFutureRowsByBooker",
+                "findRowsByBookerAndStatus", "findRowsByItemOwner", "findCurrentRowsByItemOwner",
+                "findPastRowsByItemOwner", "findFutureRowsByItemOwner", "findRowsByItemOwnerAndStatus")) {
+            results.put(method, rows);
+        }
+        BookingRepository bookingRepository = RepositoryStubs.stub(BookingRepository.class, results);
+        ItemRepository itemRepository = RepositoryStubs.stub(ItemRepository.class, Map.of());
+        bookingService = new BookingServiceImpl(bookingRepository, itemRepository,
+                new BookingIntervalIndex(bookingRepository, 10_000, Duration.ofMinutes(30)), new BookingLocks(),
+                RepositoryStubs.stub(PlatformTransactionManager.class, Map.of()), new EntityVersions());
+    }
+
+    @Benchmark
+    public List<BookingDto> byBooker() throws Exception {
+        return bookingService.getBookingsByState(state, booker);
+    }
+
+    @Benchmark
+    public List<BookingDto> byOwner() throws Exception {
+        return bookingService.getBookingsByOwnerOfItems(state, owner);
+    }
+}
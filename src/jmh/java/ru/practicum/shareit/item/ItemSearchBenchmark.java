@@ -0,0 +1,100 @@
+package ru.practicum.shareit.item;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.practicum.shareit.item.model.Item;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поиск по триграммному индексу против LIKE-запроса ItemRepository.search на H2.
+ * Запуск: mvn -Pbenchmark test-compile exec:exec -Djmh.args="ItemSearchBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ItemSearchBenchmark {
+    private static final String[] NAMES = {"дрель", "отвертка", "пила", "молоток", "лестница", "палатка",
+            "велосипед", "стол", "щётка", "клей", "перфоратор", "рюкзак", "самокат", "удочка", "проектор"};
+    private static final String[] ADJECTIVES = {"аккумуляторная", "большая", "складная", "новая", "старая",
+            "походная", "детская", "ручная", "электрическая", "садовая"};
+    private static final String LIKE_QUERY = "SELECT id FROM items WHERE (LOWER(name) LIKE LOWER(CONCAT('%', ?, '%')) " +
+            "OR LOWER(description) LIKE LOWER(CONCAT('%', ?, '%'))) AND is_avaliable = true";
+
+    @Param({"100000", "1000000"})
+    int itemCount;
+
+    @Param({"перфор", "складная лестница", "zzz"})
+    String text;
+
+    private Connection connection;
+    private PreparedStatement likeStatement;
+    private ItemSearchIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:bench" + itemCount + ";DB_CLOSE_DELAY=-1", "test", "test");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS items");
+            statement.execute("CREATE TABLE items (id BIGINT PRIMARY KEY, name VARCHAR(255) NOT NULL, " +
+                    "description CLOB, is_avaliable BOOLEAN NOT NULL)");
+        }
+        index = new ItemSearchIndex(null);
+        Random random = new Random(42);
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO items VALUES (?, ?, ?, ?)")) {
+            for (long id = 1; id <= itemCount; id++) {
+                String name = NAMES[random.nextInt(NAMES.length)] + " " + id;
+                String description = ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " "
+                        + NAMES[random.nextInt(NAMES.length)] + ", " + ADJECTIVES[random.nextInt(ADJECTIVES.length)];
+                boolean available = random.nextInt(10) != 0;
+                insert.setLong(1, id);
+                insert.setString(2, name);
+                insert.setString(3, description);
+                insert.setBoolean(4, available);
+                insert.addBatch();
+                if (id % 10_000 == 0) {
+                    insert.executeBatch();
+                }
+                index.index(new Item(id, name, description, available, null, null));
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+        likeStatement = connection.prepareStatement(LIKE_QUERY);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE items");
+        }
+        connection.close();
+    }
+
+    @Benchmark
+    public void like(Blackhole blackhole) throws SQLException {
+        likeStatement.setString(1, text);
+        likeStatement.setString(2, text);
+        try (ResultSet resultSet = likeStatement.executeQuery()) {
+            while (resultSet.next()) {
+                blackhole.consume(resultSet.getLong(1));
+            }
+        }
+    }
+
+    @Benchmark
+    public void index(Blackhole blackhole) {
+        blackhole.consume(index.search(text));
+    }
+}
@@ -0,0 +1,51 @@
+package ru.practicum.shareit;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.jcache.internal.JCacheRegionFactory;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Кэш второго уровня Hibernate для Item и User на Caffeine через JCache. Регионы создаются здесь
+ * с ограничением размера и временем жизни из shareit.entity-cache.<регион>.maximum-size и .ttl
+ * (передаются через spring.jpa.properties), неописанный регион — ошибка при старте.
+ * У каждой SessionFactory свой менеджер кэшей: в тестах одновременно живут контексты с разными базами.
+ * Попадания и промахи по регионам публикуются как hibernate.second.level.cache.requests.
+ */
+public class EntityCacheRegionFactory extends JCacheRegionFactory {
+    public static final String ITEMS = "items";
+    public static final String USERS = "users";
+    private static final String PREFIX = "shareit.entity-cache.";
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    protected CacheManager resolveCacheManager(SessionFactoryOptions settings, Map properties) {
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        CacheManager cacheManager = provider.getCacheManager(URI.create("shareit-entities-" + UUID.randomUUID()),
+                getClassLoader(provider));
+        cacheManager.createCache(ITEMS, region(properties, ITEMS, 10_000, Duration.ofMinutes(10)));
+        cacheManager.createCache(USERS, region(properties, USERS, 10_000, Duration.ofMinutes(30)));
+        return cacheManager;
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static CaffeineConfiguration<Object, Object> region(Map properties, String name,
+                                                                long maximumSize, Duration ttl) {
+        Object size = properties.get(PREFIX + name + ".maximum-size");
+        Object expire = properties.get(PREFIX + name + ".ttl");
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(size == null ? maximumSize : Long.parseLong(size.toString())));
+        configuration.setExpireAfterWrite(OptionalLong.of((expire == null ? ttl : Duration.parse(expire.toString())).toNanos()));
+        configuration.setStatisticsEnabled(true);
+        return configuration;
+    }
+}
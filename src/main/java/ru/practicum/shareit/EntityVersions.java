@@ -0,0 +1,92 @@
+package ru.practicum.shareit;
+
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Счетчики версий вещей и запросов для ETag карточек GET /items/{id} и GET /requests/{id}.
+ * Счетчик увеличивается после записи, которая меняет карточку, поэтому ETag, выданный до записи, больше не совпадет.
+ * Эпоха меняется при старте и при изменениях, затрагивающих все карточки (правка и удаление пользователей).
+ * В ETag входит пользователь: владелец видит в карточке вещи аренды, остальные — нет.
+ * Карточка владельца меняется и без записи: когда начинается ближайшая аренда, она становится последней.
+ * Поэтому сервис сообщает время начала ближайшей аренды, и после него версия вещи увеличивается
+ * при следующем вычислении тега.
+ * Счетчики заводятся только при изменениях: для id, которые ни разу не менялись, версия равна нулю,
+ * поэтому запросы с произвольными id не увеличивают карты.
+ * Эпоха и счетчики хранятся в памяти экземпляра, а не в базе: после перезапуска и на другом экземпляре
+ * эпоха другая, и выданные ранее теги не совпадают. Клиент в этом случае получает 200 с новым тегом, но не
+ * устаревший 304.
+ */
+@Component
+public class EntityVersions {
+    private final ConcurrentMap<Long, AtomicLong> items = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, AtomicLong> requests = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, LocalDateTime> itemTransitions = new ConcurrentHashMap<>();
+    private final AtomicLong epoch = new AtomicLong(System.currentTimeMillis());
+
+    public String itemTag(Long itemId, Long userId) {
+        LocalDateTime transition = itemTransitions.get(itemId);
+        if (transition != null && !transition.isAfter(LocalDateTime.now()) && itemTransitions.remove(itemId, transition)) {
+            itemChanged(itemId);
+        }
+        return tag("item", items, itemId, userId);
+    }
+
+    public String requestTag(Long requestId, Long userId) {
+        return tag("request", requests, requestId, userId);
+    }
+
+    public void itemChanged(Long itemId) {
+        version(items, itemId).incrementAndGet();
+    }
+
+    /**
+     * Карточка вещи у владельца изменится в time без записи в базу. Из нескольких сообщенных времен
+     * запоминается самое раннее.
+     */
+    public void itemChangesAt(Long itemId, LocalDateTime time) {
+        itemTransitions.merge(itemId, time, (current, next) -> next.isBefore(current) ? next : current);
+    }
+
+    public void requestChanged(Long requestId) {
+        version(requests, requestId).incrementAndGet();
+    }
+
+    public void allChanged() {
+        epoch.incrementAndGet();
+    }
+
+    /**
+     * Совпадает ли тег с одним из перечисленных в If-None-Match. Слабые теги сравниваются без префикса W/.
+     */
+    public static boolean matches(String[] ifNoneMatch, String tag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String header : ifNoneMatch) {
+            for (String candidate : header.split(",")) {
+                String trimmed = candidate.trim();
+                if (trimmed.startsWith("W/")) {
+                    trimmed = trimmed.substring(2);
+                }
+                if (trimmed.equals(tag)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private String tag(String type, ConcurrentMap<Long, AtomicLong> versions, Long id, Long userId) {
+        AtomicLong version = versions.get(id);
+        return "\"" + type + "-" + id + "-" + userId + "-" + epoch.get() + "." + (version == null ? 0 : version.get()) + "\"";
+    }
+
+    private static AtomicLong version(ConcurrentMap<Long, AtomicLong> versions, Long id) {
+        return versions.computeIfAbsent(id, key -> new AtomicLong());
+    }
+}
@@ -0,0 +1,55 @@
+package ru.practicum.shareit;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Condition;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+
+/**
+ * Профиль virtual-threads: запросы Tomcat и асинхронные ответы MVC (StreamingResponseBody)
+ * выполняются на виртуальных потоках вместо пула из server.tomcat.threads.max потоков.
+ * На JVM младше 21 профиль ничего не меняет.
+ */
+@Configuration
+@Profile("virtual-threads")
+@Slf4j
+public class VirtualThreadConfig {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        if (!VirtualThreads.isSupported()) {
+            log.warn("Профиль virtual-threads включен, но JVM {} не поддерживает виртуальные потоки, " +
+                    "Tomcat остается на пуле потоков", Runtime.version());
+            return protocolHandler -> {
+            };
+        }
+        return protocolHandler -> {
+            protocolHandler.setExecutor(VirtualThreads.newThreadPerTaskExecutor("http-vt-"));
+            log.info("Запросы Tomcat выполняются на виртуальных потоках");
+        };
+    }
+
+    /**
+     * Заменяет пул applicationTaskExecutor, который Spring MVC использует для асинхронных ответов.
+     */
+    @Bean(name = TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    @Conditional(VirtualThreadsSupported.class)
+    public AsyncTaskExecutor virtualThreadTaskExecutor() {
+        return new TaskExecutorAdapter(VirtualThreads.newThreadPerTaskExecutor("task-vt-"));
+    }
+
+    static class VirtualThreadsSupported implements Condition {
+        @Override
+        public boolean matches(ConditionContext context, AnnotatedTypeMetadata metadata) {
+            return VirtualThreads.isSupported();
+        }
+    }
+}
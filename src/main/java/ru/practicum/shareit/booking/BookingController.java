@@ -1,13 +1,28 @@
 package ru.practicum.shareit.booking;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.practicum.shareit.booking.dto.BookingBatchResult;
+import ru.practicum.shareit.booking.dto.BookingCursor;
 import ru.practicum.shareit.booking.dto.BookingDto;
 import ru.practicum.shareit.booking.dto.BookingDtoRequest;
 import ru.practicum.shareit.booking.dto.State;
+import ru.practicum.shareit.exception.ConflictException;
 import ru.practicum.shareit.exception.NotFoundException;
 import ru.practicum.shareit.exception.ValidationException;
+import ru.practicum.shareit.user.Caller;
+import ru.practicum.shareit.user.User;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,21 +34,31 @@ import java.util.Optional;
 @RequestMapping(path = "/bookings")
 public class BookingController {
     private BookingService bookingService;
+    private final ObjectWriter bookingWriter;
     private static final String X_SHARER_USER_ID = "X-Sharer-User-Id";
+    private static final String X_NEXT_CURSOR = "X-Next-Cursor";
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
 
-    public BookingController(BookingService bookingService) {
+    public BookingController(BookingService bookingService, ObjectMapper objectMapper) {
         this.bookingService = bookingService;
+        this.bookingWriter = objectMapper.writerFor(BookingDto.class);
     }
 
     @PostMapping
     public BookingDto createBooking(@RequestBody BookingDtoRequest bookingDtoRequest,
-                                    @RequestHeader(value = X_SHARER_USER_ID) Long userId) throws Exception {
-        return bookingService.createBooking(bookingDtoRequest, userId);
+                                    @Caller User caller) throws Exception {
+        return bookingService.createBooking(bookingDtoRequest, caller);
+    }
+
+    @PostMapping("/batch")
+    public List<BookingBatchResult> createBookings(@RequestBody List<BookingDtoRequest> bookingDtoRequests,
+                                                   @Caller User caller) throws NotFoundException, ValidationException {
+        return bookingService.createBookings(bookingDtoRequests, caller);
     }
 
     @PatchMapping("/{bookingId}")
     public BookingDto approveBooking(@PathVariable Long bookingId, @RequestParam boolean approved,
-                                     @RequestHeader(value = X_SHARER_USER_ID) Long userId) throws NotFoundException, ValidationException {
+                                     @RequestHeader(value = X_SHARER_USER_ID) Long userId) throws NotFoundException, ValidationException, ConflictException {
         return bookingService.approveBooking(bookingId, approved, userId);
     }
 
@@ -44,35 +69,107 @@ public class BookingController {
     }
 
     @GetMapping
-    public List<BookingDto> getBookingsByState(@RequestParam(defaultValue = "ALL") String state,
-                                               @RequestHeader(value = X_SHARER_USER_ID) Long userId,
-                                               @RequestParam Optional<Integer> from,
-                                               @RequestParam Optional<Integer> size
+    public ResponseEntity<List<BookingDto>> getBookingsByState(@RequestParam(defaultValue = "ALL") String state,
+                                                               @Caller User caller,
+                                                               @RequestParam Optional<Integer> from,
+                                                               @RequestParam Optional<Integer> size,
+                                                               @RequestParam Optional<String> cursor
     ) throws Exception {
         try {
             State validState = State.valueOf(state);
-            if (from.isEmpty() || size.isEmpty()) return bookingService.getBookingsByState(validState, userId);
+            if (cursor.isPresent()) {
+                validateCursorSize(size);
+                return withNextCursor(bookingService.getBookingsByState(validState, caller,
+                        BookingCursor.decode(cursor.get()), size.get()));
+            }
+            if (from.isEmpty() || size.isEmpty()) return ResponseEntity.ok(bookingService.getBookingsByState(validState, caller));
             if (from.get() < 0 || size.get() < 0) throw new ValidationException();
-            return bookingService.getBookingsByState(validState, userId, from.get(), size.get());
+            return withNextCursor(bookingService.getBookingsByState(validState, caller, from.get(), size.get()));
         } catch (IllegalArgumentException e) {
             throw new ValidationException(String.format("Unknown state: %s", state));
         }
     }
 
     @GetMapping("/owner")
-    public List<BookingDto> getBookingsByOwnerOfItems(@RequestParam(defaultValue = "ALL") String state,
-                                                      @RequestHeader(value = X_SHARER_USER_ID) Long userId,
-                                                      @RequestParam Optional<Integer> from,
-                                                      @RequestParam Optional<Integer> size
+    public ResponseEntity<List<BookingDto>> getBookingsByOwnerOfItems(@RequestParam(defaultValue = "ALL") String state,
+                                                                      @Caller User caller,
+                                                                      @RequestParam Optional<Integer> from,
+                                                                      @RequestParam Optional<Integer> size,
+                                                                      @RequestParam Optional<String> cursor
     ) throws Exception {
         try {
             State validState = State.valueOf(state);
-            if (from.isEmpty() || size.isEmpty()) return bookingService.getBookingsByOwnerOfItems(validState, userId);
+            if (cursor.isPresent()) {
+                validateCursorSize(size);
+                return withNextCursor(bookingService.getBookingsByOwnerOfItems(validState, caller,
+                        BookingCursor.decode(cursor.get()), size.get()));
+            }
+            if (from.isEmpty() || size.isEmpty()) return ResponseEntity.ok(bookingService.getBookingsByOwnerOfItems(validState, caller));
             if (from.get() < 0 || size.get() < 0) throw new ValidationException();
-            return bookingService.getBookingsByOwnerOfItems(validState, userId, from.get(), size.get());
+            return withNextCursor(bookingService.getBookingsByOwnerOfItems(validState, caller, from.get(), size.get()));
         } catch (IllegalArgumentException e) {
             throw new ValidationException(String.format("Unknown state: %s", state));
         }
 
     }
+
+    @GetMapping(produces = APPLICATION_NDJSON)
+    public ResponseEntity<StreamingResponseBody> exportBookingsByState(@RequestParam(defaultValue = "ALL") String state,
+                                                                       @Caller User caller
+    ) throws ValidationException, NotFoundException {
+        return ndjson(bookingService.exportBookingsByState(parseState(state), caller));
+    }
+
+    @GetMapping(path = "/owner", produces = APPLICATION_NDJSON)
+    public ResponseEntity<StreamingResponseBody> exportBookingsByOwnerOfItems(@RequestParam(defaultValue = "ALL") String state,
+                                                                              @Caller User caller
+    ) throws ValidationException, NotFoundException {
+        return ndjson(bookingService.exportBookingsByOwnerOfItems(parseState(state), caller));
+    }
+
+    private State parseState(String state) throws ValidationException {
+        try {
+            return State.valueOf(state);
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException(String.format("Unknown state: %s", state));
+        }
+    }
+
+    private ResponseEntity<StreamingResponseBody> ndjson(BookingExport export) {
+        StreamingResponseBody body = outputStream -> {
+            OutputStream out = new BufferedOutputStream(outputStream);
+            try {
+                export.writeTo(booking -> {
+                    try {
+                        out.write(bookingWriter.writeValueAsBytes(booking));
+                        out.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            out.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(APPLICATION_NDJSON)).body(body);
+    }
+
+    private void validateCursorSize(Optional<Integer> size) throws ValidationException {
+        if (size.isEmpty() || size.get() <= 0) {
+            log.info("Курсор передан без размера страницы");
+            throw new ValidationException("Для курсора необходимо указать size больше нуля");
+        }
+    }
+
+    /**
+     * Курсор отдается, только если за страницей точно есть еще аренды: Slice читает на строку больше.
+     */
+    private ResponseEntity<List<BookingDto>> withNextCursor(Slice<BookingDto> bookings) {
+        if (!bookings.hasNext()) return ResponseEntity.ok(bookings.getContent());
+        List<BookingDto> content = bookings.getContent();
+        return ResponseEntity.ok()
+                .header(X_NEXT_CURSOR, BookingCursor.of(content.get(content.size() - 1)).encode())
+                .body(content);
+    }
 }
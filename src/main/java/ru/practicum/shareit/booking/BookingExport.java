@@ -0,0 +1,13 @@
+package ru.practicum.shareit.booking;
+
+import ru.practicum.shareit.booking.dto.BookingDto;
+
+import java.util.function.Consumer;
+
+/**
+ * Отложенная выгрузка аренд: строки читаются из базы потоком при вызове writeTo.
+ */
+@FunctionalInterface
+public interface BookingExport {
+    void writeTo(Consumer<BookingDto> consumer);
+}
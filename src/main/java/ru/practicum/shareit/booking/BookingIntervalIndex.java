@@ -0,0 +1,76 @@
+package ru.practicum.shareit.booking;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.booking.dto.Status;
+import ru.practicum.shareit.booking.model.Booking;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Неотклонённые аренды по вещам. Интервалы вещи загружаются из базы при первом обращении,
+ * дальше поддерживаются createBooking и approveBooking.
+ * Индекс ограничен по числу вещей и забывает вещи, к которым давно не обращались;
+ * закончившиеся аренды отбрасываются при обращении к вещи.
+ * Загрузка идёт без захвата мониторов: первый поток кладёт в кэш незавершённый future и читает базу,
+ * остальные ждут этот future.
+ */
+@Component
+@Slf4j
+public class BookingIntervalIndex {
+    private static final List<Status> ACTIVE_STATUSES = List.of(Status.WAITING, Status.APPROVED);
+    private final BookingRepository bookingRepository;
+    private final ConcurrentMap<Long, CompletableFuture<BookingIntervals>> items;
+
+    public BookingIntervalIndex(BookingRepository bookingRepository,
+                                @Value("${shareit.booking-index.maximum-size:10000}") long maximumSize,
+                                @Value("${shareit.booking-index.idle-ttl:PT30M}") Duration idleTtl) {
+        this.bookingRepository = bookingRepository;
+        Cache<Long, CompletableFuture<BookingIntervals>> cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterAccess(idleTtl)
+                .build();
+        this.items = cache.asMap();
+    }
+
+    public BookingIntervals forItem(Long itemId) {
+        CompletableFuture<BookingIntervals> loading = new CompletableFuture<>();
+        CompletableFuture<BookingIntervals> existing = items.putIfAbsent(itemId, loading);
+        BookingIntervals intervals = existing == null ? load(itemId, loading) : existing.join();
+        intervals.pruneEndedBefore(LocalDateTime.now());
+        return intervals;
+    }
+
+    /**
+     * Забывает интервалы вещей, например после каскадного удаления аренд в базе: при следующем обращении
+     * они загрузятся заново.
+     */
+    public void invalidateAll() {
+        items.clear();
+    }
+
+    private BookingIntervals load(Long itemId, CompletableFuture<BookingIntervals> loading) {
+        try {
+            List<Booking> bookings = bookingRepository
+                    .findAllByItemIdAndStatusInAndEndAfter(itemId, ACTIVE_STATUSES, LocalDateTime.now());
+            BookingIntervals intervals = new BookingIntervals();
+            for (Booking booking : bookings) {
+                intervals.add(booking.getId(), booking.getStart(), booking.getEnd());
+            }
+            log.debug("Загружены аренды вещи {}: {}", itemId, bookings.size());
+            loading.complete(intervals);
+            return intervals;
+        } catch (RuntimeException e) {
+            items.remove(itemId, loading);
+            loading.completeExceptionally(e);
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package ru.practicum.shareit.booking;
+
+import ru.practicum.shareit.item.dto.AvailabilityInterval;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Неотклонённые аренды одной вещи. Кроме самих интервалов хранится их объединение
+ * в виде непересекающихся отрезков, отсортированных по началу, — проверка пересечения
+ * с ним занимает O(log n).
+ * Атомарность проверки и сохранения новой аренды обеспечивает блокировка вещи из BookingLocks.
+ */
+public class BookingIntervals {
+    private final Map<Long, Interval> bookings = new HashMap<>();
+    private final NavigableMap<LocalDateTime, LocalDateTime> busy = new TreeMap<>();
+
+    public synchronized boolean overlaps(LocalDateTime start, LocalDateTime end) {
+        Map.Entry<LocalDateTime, LocalDateTime> candidate = busy.lowerEntry(end);
+        return candidate != null && candidate.getValue().isAfter(start);
+    }
+
+    /**
+     * Календарь на [from, to): занятые отрезки из объединения, обрезанные по границам,
+     * и свободные промежутки между ними.
+     */
+    public synchronized List<AvailabilityInterval> availability(LocalDateTime from, LocalDateTime to) {
+        Map.Entry<LocalDateTime, LocalDateTime> first = busy.lowerEntry(from);
+        LocalDateTime fromKey = first != null && first.getValue().isAfter(from) ? first.getKey() : from;
+        List<AvailabilityInterval> result = new ArrayList<>();
+        LocalDateTime cursor = from;
+        for (Map.Entry<LocalDateTime, LocalDateTime> segment : busy.subMap(fromKey, true, to, false).entrySet()) {
+            LocalDateTime start = segment.getKey().isBefore(from) ? from : segment.getKey();
+            LocalDateTime end = segment.getValue().isAfter(to) ? to : segment.getValue();
+            if (cursor.isBefore(start)) {
+                result.add(AvailabilityInterval.free(cursor, start));
+            }
+            result.add(AvailabilityInterval.busy(start, end));
+            cursor = end;
+        }
+        if (cursor.isBefore(to)) {
+            result.add(AvailabilityInterval.free(cursor, to));
+        }
+        return result;
+    }
+
+    public synchronized void add(Long bookingId, LocalDateTime start, LocalDateTime end) {
+        Interval previous = bookings.put(bookingId, new Interval(start, end));
+        if (previous != null) {
+            rebuild();
+            return;
+        }
+        merge(start, end);
+    }
+
+    public synchronized void remove(Long bookingId) {
+        if (bookings.remove(bookingId) != null) {
+            rebuild();
+        }
+    }
+
+    public synchronized int size() {
+        return bookings.size();
+    }
+
+    /**
+     * Отбрасывает аренды, закончившиеся не позже now. Пока первый занятый отрезок не закончился,
+     * закончившихся аренд нет и проверка стоит O(1).
+     */
+    public synchronized void pruneEndedBefore(LocalDateTime now) {
+        Map.Entry<LocalDateTime, LocalDateTime> first = busy.firstEntry();
+        if (first == null || first.getValue().isAfter(now)) {
+            return;
+        }
+        bookings.values().removeIf(interval -> !interval.end.isAfter(now));
+        rebuild();
+    }
+
+    private void merge(LocalDateTime start, LocalDateTime end) {
+        Map.Entry<LocalDateTime, LocalDateTime> candidate = busy.lowerEntry(end);
+        while (candidate != null && candidate.getValue().isAfter(start)) {
+            if (candidate.getKey().isBefore(start)) start = candidate.getKey();
+            if (candidate.getValue().isAfter(end)) end = candidate.getValue();
+            busy.remove(candidate.getKey());
+            candidate = busy.lowerEntry(end);
+        }
+        busy.put(start, end);
+    }
+
+    private void rebuild() {
+        busy.clear();
+        for (Interval interval : bookings.values()) {
+            merge(interval.start, interval.end);
+        }
+    }
+
+    private static class Interval {
+        final LocalDateTime start;
+        final LocalDateTime end;
+
+        Interval(LocalDateTime start, LocalDateTime end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package ru.practicum.shareit.booking;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Таблица блокировок по вещам. Идентификатор вещи отображается на полосу по младшим битам,
+ * поэтому любые 1024 подряд идущие вещи получают разные блокировки.
+ */
+@Component
+public class BookingLocks {
+    private static final int DEFAULT_STRIPES = 1024;
+    private final Lock[] stripes;
+    private final int mask;
+
+    public BookingLocks() {
+        this(DEFAULT_STRIPES);
+    }
+
+    BookingLocks(int stripes) {
+        int size = stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.stripes = new Lock[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    public Lock forItem(long itemId) {
+        return stripes[index(itemId)];
+    }
+
+    /**
+     * Блокировки нескольких вещей без повторов, упорядоченные по номеру полосы:
+     * пакетные операции захватывают их в одном порядке и не блокируют друг друга навечно.
+     */
+    public List<Lock> forItems(Collection<Long> itemIds) {
+        SortedSet<Integer> indexes = new TreeSet<>();
+        for (Long itemId : itemIds) {
+            indexes.add(index(itemId));
+        }
+        List<Lock> locks = new ArrayList<>(indexes.size());
+        for (int index : indexes) {
+            locks.add(stripes[index]);
+        }
+        return locks;
+    }
+
+    public int stripes() {
+        return stripes.length;
+    }
+
+    private int index(long itemId) {
+        return (int) (itemId ^ (itemId >>> 32)) & mask;
+    }
+}
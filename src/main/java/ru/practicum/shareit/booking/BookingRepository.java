@@ -1,60 +1,214 @@
 package ru.practicum.shareit.booking;
 
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import ru.practicum.shareit.booking.dto.BookingRow;
+import ru.practicum.shareit.booking.dto.BookingShort;
 import ru.practicum.shareit.booking.dto.Status;
 import ru.practicum.shareit.booking.model.Booking;
 import ru.practicum.shareit.user.User;
 
+import javax.persistence.QueryHint;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 public interface BookingRepository extends JpaRepository<Booking, Long> {
-    Optional<Booking> findFirstByBookerIdAndItemIdAndEndLessThanEqual(Long bookerId, Long itemId, LocalDateTime end);
+    /**
+     * Выборки по вещи и арендатору фильтруют по item_id и booker_id самой таблицы bookings:
+     * производные запросы по ItemId и BookerId присоединяют items и users и сравнивают их id,
+     * из-за чего H2 не может пройти по индексам bookings.
+     */
+    @Query(value = "SELECT * FROM bookings b WHERE b.booker_id = :bookerId AND b.item_id = :itemId AND b.end_date <= :end " +
+            "LIMIT 1", nativeQuery = true)
+    Optional<Booking> findFirstByBookerIdAndItemIdAndEndLessThanEqual(@Param("bookerId") Long bookerId,
+                                                                      @Param("itemId") Long itemId,
+                                                                      @Param("end") LocalDateTime end);
+
+    @Query("SELECT b.item.id FROM Booking b WHERE b.id = :id")
+    Optional<Long> findItemIdById(@Param("id") Long id);
+
+    @Query("SELECT b FROM Booking b WHERE b.item.id = :itemId AND b.status IN (:statuses) AND b.end > :end")
+    List<Booking> findAllByItemIdAndStatusInAndEndAfter(@Param("itemId") Long itemId,
+                                                        @Param("statuses") Collection<Status> statuses,
+                                                        @Param("end") LocalDateTime end);
+
+    @Query(value = "SELECT * FROM bookings b WHERE b.item_id = :itemId AND b.start_date <= :time " +
+            "ORDER BY b.start_date DESC LIMIT 1", nativeQuery = true)
+    Optional<Booking> findFirstByItemIdAndStartLessThanEqualOrderByStartDesc(@Param("itemId") Long itemId,
+                                                                             @Param("time") LocalDateTime time);
+
+    @Query(value = "SELECT * FROM bookings b WHERE b.item_id = :itemId AND b.start_date > :time " +
+            "ORDER BY b.start_date ASC LIMIT 1", nativeQuery = true)
+    Optional<Booking> findFirstByItemIdAndStartAfterOrderByStartAsc(@Param("itemId") Long itemId,
+                                                                    @Param("time") LocalDateTime time);
+
+    /**
+     * Последняя (start <= time) и ближайшая следующая (start > time) аренда для каждой вещи одним запросом.
+     */
+    @Query(value = "SELECT b.id AS id, b.item_id AS itemId, b.booker_id AS bookerId, b.status AS status, b.start_date AS start " +
+            "FROM (SELECT bk.id, bk.item_id, bk.booker_id, bk.status, bk.start_date, " +
+            "ROW_NUMBER() OVER (PARTITION BY bk.item_id, bk.start_date <= :time " +
+            "ORDER BY CASE WHEN bk.start_date <= :time THEN bk.start_date END DESC, bk.start_date ASC, bk.id ASC) AS rn " +
+            "FROM bookings bk WHERE bk.item_id IN (:itemIds)) b " +
+            "WHERE b.rn = 1", nativeQuery = true)
+    List<BookingShort> findLastAndNextByItemIdIn(@Param("itemIds") Collection<Long> itemIds, @Param("time") LocalDateTime time);
+
+    /**
+     * Строка ответа целиком одним запросом: вещь, ее владелец и арендатор присоединяются к аренде.
+     */
+    String BOOKING_ROW = "SELECT new ru.practicum.shareit.booking.dto.BookingRow(b.id, b.start, b.end, b.status, " +
+            "i.id, i.name, i.description, i.available, o.id, o.name, o.email, u.id, u.name, u.email) " +
+            "FROM Booking b JOIN b.item i LEFT JOIN i.owner o LEFT JOIN b.booker u ";
+
+    /**
+     * Аренды вещей владельца отбираются по item_id из подзапроса: так bookings читается по индексу на item_id,
+     * а не просматривается целиком в поисках строк, чья вещь принадлежит владельцу.
+     */
+    String BY_ITEM_OWNER = "b.item.id IN (SELECT it.id FROM Item it WHERE it.owner = :user)";
+
+    @Query(BOOKING_ROW + "WHERE b.booker = :user")
+    List<BookingRow> findRowsByBooker(@Param("user") User user, Sort sort);
+
+    @Query(BOOKING_ROW + "WHERE b.booker = :user")
+    Slice<BookingRow> findRowsByBooker(@Param("user") User user, Pageable pageable);
+
+    @Query(BOOKING_ROW + "WHERE b.booker = :user AND b.status = :status")
+    List<BookingRow> findRowsByBookerAndStatus(@Param("user") User user, @Param("status") Status status, Sort sort);
+
+    @Query(BOOKING_ROW + "WHERE b.booker = :user AND b.status = :status")
+    Slice<BookingRow> findRowsByBookerAndStatus(@Param("user") User user, @Param("status") Status status, Pageable pageable);
+
+    @Query(BOOKING_ROW + "WHERE b.booker = :user AND b.start < :now AND b.end > :now")
+    List<BookingRow> findCurrentRowsByBooker(@Param("user") User user, @Param("now") LocalDateTime now, Sort sort);
+
+    @Query(BOOKING_ROW + "WHERE b.booker = :user AND b.start < :now AND b.end > :now")
+    Slice<BookingRow> findCurrentRowsByBooker(@Param("user") User user, @Param("now") LocalDateTime now, Pageable pageable);
+
+    @Query(BOOKING_ROW + "WHERE b.booker = :user AND b.end < :now")
+    List<BookingRow> findPastRowsByBooker(@Param("user") User user, @Param("now") LocalDateTime now, Sort sort);
+
+    @Query(BOOKING_ROW + "WHERE b.booker = :user AND b.end < :now")
+    Slice<BookingRow> findPastRowsByBooker(@Param("user") User user, @Param("now") LocalDateTime now, Pageable pageable);
+
+    @Query(BOOKING_ROW + "WHERE b.booker = :user AND b.start > :now")
+    List<BookingRow> findFutureRowsByBooker(@Param("user") User user, @Param("now") LocalDateTime now, Sort sort);
+
+    @Query(BOOKING_ROW + "WHERE b.booker = :user AND b.start > :now")
+    Slice<BookingRow> findFutureRowsByBooker(@Param("user") User user, @Param("now") LocalDateTime now, Pageable pageable);
+
+    @Query(BOOKING_ROW + "WHERE " + BY_ITEM_OWNER)
+    List<BookingRow> findRowsByItemOwner(@Param("user") User user, Sort sort);
+
+    @Query(BOOKING_ROW + "WHERE " + BY_ITEM_OWNER)
+    Slice<BookingRow> findRowsByItemOwner(@Param("user") User user, Pageable pageable);
+
+    @Query(BOOKING_ROW + "WHERE " + BY_ITEM_OWNER + " AND b.status = :status")
+    List<BookingRow> findRowsByItemOwnerAndStatus(@Param("user") User user, @Param("status") Status status, Sort sort);
+
+    @Query(BOOKING_ROW + "WHERE " + BY_ITEM_OWNER + " AND b.status = :status")
+    Slice<BookingRow> findRowsByItemOwnerAndStatus(@Param("user") User user, @Param("status") Status status, Pageable pageable);
+
+    @Query(BOOKING_ROW + "WHERE " + BY_ITEM_OWNER + " AND b.start < :now AND b.end > :now")
+    List<BookingRow> findCurrentRowsByItemOwner(@Param("user") User user, @Param("now") LocalDateTime now, Sort sort);
+
+    @Query(BOOKING_ROW + "WHERE " + BY_ITEM_OWNER + " AND b.start < :now AND b.end > :now")
+    Slice<BookingRow> findCurrentRowsByItemOwner(@Param("user") User user, @Param("now") LocalDateTime now, Pageable pageable);
+
+    @Query(BOOKING_ROW + "WHERE " + BY_ITEM_OWNER + " AND b.end < :now")
+    List<BookingRow> findPastRowsByItemOwner(@Param("user") User user, @Param("now") LocalDateTime now, Sort sort);
+
+    @Query(BOOKING_ROW + "WHERE " + BY_ITEM_OWNER + " AND b.end < :now")
+    Slice<BookingRow> findPastRowsByItemOwner(@Param("user") User user, @Param("now") LocalDateTime now, Pageable pageable);
+
+    @Query(BOOKING_ROW + "WHERE " + BY_ITEM_OWNER + " AND b.start > :now")
+    List<BookingRow> findFutureRowsByItemOwner(@Param("user") User user, @Param("now") LocalDateTime now, Sort sort);
+
+    @Query(BOOKING_ROW + "WHERE " + BY_ITEM_OWNER + " AND b.start > :now")
+    Slice<BookingRow> findFutureRowsByItemOwner(@Param("user") User user, @Param("now") LocalDateTime now, Pageable pageable);
 
-    Optional<Booking> findFirstByItemIdAndStartLessThanEqualOrderByStartDesc(Long itemId, LocalDateTime time);
+    @Query(BOOKING_ROW + "WHERE b.booker = :user AND b.start <= :start AND (b.start < :start OR b.id < :id) ORDER BY b.start DESC, b.id DESC")
+    Slice<BookingRow> findAllByBookerBefore(@Param("user") User user, @Param("start") LocalDateTime start, @Param("id") Long id, Pageable pageable);
 
-    Optional<Booking> findFirstByItemIdAndStartAfterOrderByStartAsc(Long itemId, LocalDateTime time);
+    @Query(BOOKING_ROW + "WHERE b.booker = :user AND b.status = :status AND b.start <= :start AND (b.start < :start OR b.id < :id) ORDER BY b.start DESC, b.id DESC")
+    Slice<BookingRow> findAllByStatusAndBookerBefore(@Param("status") Status status, @Param("user") User user, @Param("start") LocalDateTime start, @Param("id") Long id, Pageable pageable);
 
-    //  List<Booking> findAllByBooker(User user);
-    Page<Booking> findAllByBooker(User user, Pageable pageable);
+    @Query(BOOKING_ROW + "WHERE b.booker = :user AND b.start < :now AND b.end > :now AND b.start <= :start AND (b.start < :start OR b.id < :id) ORDER BY b.start DESC, b.id DESC")
+    Slice<BookingRow> findCurrentByBookerBefore(@Param("user") User user, @Param("now") LocalDateTime now, @Param("start") LocalDateTime start, @Param("id") Long id, Pageable pageable);
 
-    List<Booking> findAllByStatusAndBooker(Status state, User booker, Pageable pageable);
+    @Query(BOOKING_ROW + "WHERE b.booker = :user AND b.end < :now AND b.start <= :start AND (b.start < :start OR b.id < :id) ORDER BY b.start DESC, b.id DESC")
+    Slice<BookingRow> findPastByBookerBefore(@Param("user") User user, @Param("now") LocalDateTime now, @Param("start") LocalDateTime start, @Param("id") Long id, Pageable pageable);
 
-    List<Booking> findAllByStatusAndBooker(Status state, User booker, Sort sort);
+    @Query(BOOKING_ROW + "WHERE b.booker = :user AND b.start > :now AND b.start <= :start AND (b.start < :start OR b.id < :id) ORDER BY b.start DESC, b.id DESC")
+    Slice<BookingRow> findFutureByBookerBefore(@Param("user") User user, @Param("now") LocalDateTime now, @Param("start") LocalDateTime start, @Param("id") Long id, Pageable pageable);
 
-    List<Booking> findAllByStatusAndItemOwner(Status state, User itemOwner, Sort sort);
+    @Query(BOOKING_ROW + "WHERE " + BY_ITEM_OWNER + " AND b.start <= :start AND (b.start < :start OR b.id < :id) ORDER BY b.start DESC, b.id DESC")
+    Slice<BookingRow> findAllByItemOwnerBefore(@Param("user") User user, @Param("start") LocalDateTime start, @Param("id") Long id, Pageable pageable);
 
-    List<Booking> findAllByItemOwner(User itemOwner, Sort sort);
+    @Query(BOOKING_ROW + "WHERE " + BY_ITEM_OWNER + " AND b.status = :status AND b.start <= :start AND (b.start < :start OR b.id < :id) ORDER BY b.start DESC, b.id DESC")
+    Slice<BookingRow> findAllByStatusAndItemOwnerBefore(@Param("status") Status status, @Param("user") User user, @Param("start") LocalDateTime start, @Param("id") Long id, Pageable pageable);
 
-    List<Booking> findAllByStatusAndItemOwner(Status state, User itemOwner, Pageable pageable);
+    @Query(BOOKING_ROW + "WHERE " + BY_ITEM_OWNER + " AND b.start < :now AND b.end > :now AND b.start <= :start AND (b.start < :start OR b.id < :id) ORDER BY b.start DESC, b.id DESC")
+    Slice<BookingRow> findCurrentByItemOwnerBefore(@Param("user") User user, @Param("now") LocalDateTime now, @Param("start") LocalDateTime start, @Param("id") Long id, Pageable pageable);
 
-    List<Booking> findAllByItemOwner(User itemOwner, Pageable pageable);
+    @Query(BOOKING_ROW + "WHERE " + BY_ITEM_OWNER + " AND b.end < :now AND b.start <= :start AND (b.start < :start OR b.id < :id) ORDER BY b.start DESC, b.id DESC")
+    Slice<BookingRow> findPastByItemOwnerBefore(@Param("user") User user, @Param("now") LocalDateTime now, @Param("start") LocalDateTime start, @Param("id") Long id, Pageable pageable);
 
-    List<Booking> findAllByStartBeforeAndEndAfterAndBooker(LocalDateTime start, LocalDateTime end, User booker, Pageable pageable);
+    @Query(BOOKING_ROW + "WHERE " + BY_ITEM_OWNER + " AND b.start > :now AND b.start <= :start AND (b.start < :start OR b.id < :id) ORDER BY b.start DESC, b.id DESC")
+    Slice<BookingRow> findFutureByItemOwnerBefore(@Param("user") User user, @Param("now") LocalDateTime now, @Param("start") LocalDateTime start, @Param("id") Long id, Pageable pageable);
 
-    List<Booking> findAllByEndBeforeAndBooker(LocalDateTime end, User booker, Pageable pageable);
+    /**
+     * Потоковые выгрузки: строки читаются порциями по STREAM_FETCH_SIZE, вызывать внутри транзакции.
+     */
+    String STREAM_FETCH_SIZE = "500";
+    String STREAM_ORDER = " ORDER BY b.start DESC";
 
-    List<Booking> findAllByStartAfterAndBooker(LocalDateTime start, User booker, Pageable pageable);
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query(BOOKING_ROW + "WHERE b.booker = :user" + STREAM_ORDER)
+    Stream<BookingRow> streamRowsByBooker(@Param("user") User user);
 
-    List<Booking> findAllByStartBeforeAndEndAfter(LocalDateTime start, LocalDateTime end, Sort sort);
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query(BOOKING_ROW + "WHERE b.booker = :user AND b.status = :status" + STREAM_ORDER)
+    Stream<BookingRow> streamRowsByBookerAndStatus(@Param("user") User user, @Param("status") Status status);
 
-    List<Booking> findAllByEndBefore(LocalDateTime end, Sort sort);
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query(BOOKING_ROW + "WHERE b.booker = :user AND b.start < :now AND b.end > :now" + STREAM_ORDER)
+    Stream<BookingRow> streamCurrentRowsByBooker(@Param("user") User user, @Param("now") LocalDateTime now);
 
-    List<Booking> findAllByStartAfter(LocalDateTime start, Sort sort);
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query(BOOKING_ROW + "WHERE b.booker = :user AND b.end < :now" + STREAM_ORDER)
+    Stream<BookingRow> streamPastRowsByBooker(@Param("user") User user, @Param("now") LocalDateTime now);
 
-    List<Booking> findAllByItemOwnerAndStartBeforeAndEndAfter(User itemOwner, LocalDateTime start, LocalDateTime end, Sort sort);
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query(BOOKING_ROW + "WHERE b.booker = :user AND b.start > :now" + STREAM_ORDER)
+    Stream<BookingRow> streamFutureRowsByBooker(@Param("user") User user, @Param("now") LocalDateTime now);
 
-    List<Booking> findAllByItemOwnerAndEndBefore(User itemOwner, LocalDateTime end, Sort sort);
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query(BOOKING_ROW + "WHERE " + BY_ITEM_OWNER + STREAM_ORDER)
+    Stream<BookingRow> streamRowsByItemOwner(@Param("user") User user);
 
-    List<Booking> findAllByItemOwnerAndStartAfter(User itemOwner, LocalDateTime start, Sort sort);
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query(BOOKING_ROW + "WHERE " + BY_ITEM_OWNER + " AND b.status = :status" + STREAM_ORDER)
+    Stream<BookingRow> streamRowsByItemOwnerAndStatus(@Param("user") User user, @Param("status") Status status);
 
-    List<Booking> findAllByItemOwnerAndStartBeforeAndEndAfter(User itemOwner, LocalDateTime start, LocalDateTime end, Pageable pageable);
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query(BOOKING_ROW + "WHERE " + BY_ITEM_OWNER + " AND b.start < :now AND b.end > :now" + STREAM_ORDER)
+    Stream<BookingRow> streamCurrentRowsByItemOwner(@Param("user") User user, @Param("now") LocalDateTime now);
 
-    List<Booking> findAllByItemOwnerAndEndBefore(User itemOwner, LocalDateTime end, Pageable pageable);
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query(BOOKING_ROW + "WHERE " + BY_ITEM_OWNER + " AND b.end < :now" + STREAM_ORDER)
+    Stream<BookingRow> streamPastRowsByItemOwner(@Param("user") User user, @Param("now") LocalDateTime now);
 
-    List<Booking> findAllByItemOwnerAndStartAfter(User itemOwner, LocalDateTime start, Pageable pageable);
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query(BOOKING_ROW + "WHERE " + BY_ITEM_OWNER + " AND b.start > :now" + STREAM_ORDER)
+    Stream<BookingRow> streamFutureRowsByItemOwner(@Param("user") User user, @Param("now") LocalDateTime now);
 }
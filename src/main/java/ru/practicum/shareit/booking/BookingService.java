@@ -1,25 +1,47 @@
 package ru.practicum.shareit.booking;
 
+import org.springframework.data.domain.Slice;
+import ru.practicum.shareit.booking.dto.BookingBatchResult;
+import ru.practicum.shareit.booking.dto.BookingCursor;
 import ru.practicum.shareit.booking.dto.BookingDto;
 import ru.practicum.shareit.booking.dto.BookingDtoRequest;
 import ru.practicum.shareit.booking.dto.State;
+import ru.practicum.shareit.exception.ConflictException;
 import ru.practicum.shareit.exception.NotFoundException;
 import ru.practicum.shareit.exception.ValidationException;
+import ru.practicum.shareit.user.User;
 
 import java.util.List;
 
 public interface BookingService {
-    BookingDto createBooking(BookingDtoRequest bookingDtoRequest, Long userId) throws Exception;
+    BookingDto createBooking(BookingDtoRequest bookingDtoRequest, User user) throws Exception;
 
-    BookingDto approveBooking(Long bookingId, boolean approved, Long userId) throws NotFoundException, ValidationException;
+    List<BookingBatchResult> createBookings(List<BookingDtoRequest> bookingDtoRequests, User user) throws NotFoundException, ValidationException;
+
+    BookingDto approveBooking(Long bookingId, boolean approved, Long userId) throws NotFoundException, ValidationException, ConflictException;
 
     BookingDto getBookingById(Long bookingId, Long userId) throws NotFoundException;
 
-    List<BookingDto> getBookingsByState(State state, Long userId, Integer from, Integer size) throws Exception;
+    /**
+     * Страница аренд по from и size. Возвращается Slice: читается size + 1 строк без COUNT по всей выборке,
+     * лишняя строка только отвечает на вопрос, есть ли следующая страница.
+     */
+    Slice<BookingDto> getBookingsByState(State state, User user, Integer from, Integer size) throws Exception;
+
+    List<BookingDto> getBookingsByState(State state, User user) throws Exception;
+
+    Slice<BookingDto> getBookingsByState(State state, User user, BookingCursor cursor, Integer size) throws Exception;
+
+    /**
+     * Страница аренд вещей владельца, тоже Slice без COUNT.
+     */
+    Slice<BookingDto> getBookingsByOwnerOfItems(State state, User user, Integer from, Integer size) throws Exception;
+
+    List<BookingDto> getBookingsByOwnerOfItems(State state, User user) throws Exception;
 
-    List<BookingDto> getBookingsByState(State state, Long userId) throws Exception;
+    Slice<BookingDto> getBookingsByOwnerOfItems(State state, User user, BookingCursor cursor, Integer size) throws Exception;
 
-    List<BookingDto> getBookingsByOwnerOfItems(State state, Long userId, Integer from, Integer size) throws Exception;
+    BookingExport exportBookingsByState(State state, User user);
 
-    List<BookingDto> getBookingsByOwnerOfItems(State state, Long userId) throws Exception;
+    BookingExport exportBookingsByOwnerOfItems(State state, User user);
 }
@@ -2,72 +2,237 @@ package ru.practicum.shareit.booking;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.EntityVersions;
 import ru.practicum.shareit.booking.dto.*;
 import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.exception.ConflictException;
 import ru.practicum.shareit.exception.NotFoundException;
 import ru.practicum.shareit.exception.ValidationException;
 import ru.practicum.shareit.item.ItemRepository;
 import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.user.User;
-import ru.practicum.shareit.user.UserRepository;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.List;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @Slf4j
 public class BookingServiceImpl implements BookingService {
+    private static final int MAX_ATTEMPTS = 3;
+    private static final int MAX_BATCH_SIZE = 1000;
     private final BookingRepository bookingRepository;
     private final ItemRepository itemRepository;
-    private final UserRepository userRepository;
+    private final BookingIntervalIndex bookingIntervalIndex;
+    private final BookingLocks bookingLocks;
+    private final TransactionTemplate readOnlyTransaction;
+    private final EntityVersions entityVersions;
 
     public BookingServiceImpl(BookingRepository bookingRepository, ItemRepository itemRepository,
-                              UserRepository userRepository) {
+                              BookingIntervalIndex bookingIntervalIndex,
+                              BookingLocks bookingLocks, PlatformTransactionManager transactionManager,
+                              EntityVersions entityVersions) {
         this.bookingRepository = bookingRepository;
         this.itemRepository = itemRepository;
-        this.userRepository = userRepository;
+        this.bookingIntervalIndex = bookingIntervalIndex;
+        this.bookingLocks = bookingLocks;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.entityVersions = entityVersions;
     }
 
     @Override
     // @Transactional(propagation = Propagation.REQUIRED)
-    public BookingDto createBooking(BookingDtoRequest bookingDtoRequest, Long userId) throws Exception {
-        User userById = userRepository.findById(userId).orElseThrow(() -> {
-            log.info("Пользователь {} не найден", userId);
-            return new NotFoundException(String.format("Пользователь %s не найден", userId));
-        });
+    public BookingDto createBooking(BookingDtoRequest bookingDtoRequest, User user) throws Exception {
         Item itemById = itemRepository.findById(bookingDtoRequest.getItemId()).orElseThrow(() -> {
             log.info("Вещь по айди {} не найдена", bookingDtoRequest.getId());
             return new NotFoundException(String.format("Вещь по айди %s не найдена!", bookingDtoRequest.getId()));
         });
         validateItemForAvailable(itemById);
         validateStartAndEndOfBooking(bookingDtoRequest);
+        validateOwnerIdNotEqualsUserId(itemById, user);
+        Booking booking = BookingMapper.toBookingFromRequest(bookingDtoRequest, user, Status.WAITING, itemById);
+        Lock lock = bookingLocks.forItem(itemById.getId());
+        lock.lock();
+        try {
+            validateBookingNotOverlaps(bookingIntervalIndex.forItem(itemById.getId()), booking);
+            Booking saved = bookingRepository.save(booking);
+            // Интервалы берутся из индекса заново: пока шло сохранение, вещь могла быть вытеснена и загружена повторно.
+            bookingIntervalIndex.forItem(itemById.getId()).add(saved.getId(), saved.getStart(), saved.getEnd());
+            itemRepository.offerNextBooking(itemById.getId(), saved.getId(), saved.getStart());
+            entityVersions.itemChanged(itemById.getId());
+            return BookingMapper.toBookingDto(saved);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Пользователь и все вещи пакета читаются двумя запросами, заявки проверяются по очереди,
+     * прошедшие проверку сохраняются одним saveAll под блокировками своих вещей.
+     */
+    @Override
+    public List<BookingBatchResult> createBookings(List<BookingDtoRequest> bookingDtoRequests, User user) throws NotFoundException, ValidationException {
+        if (bookingDtoRequests.size() > MAX_BATCH_SIZE) {
+            log.info("Слишком большой пакет аренд: {}", bookingDtoRequests.size());
+            throw new ValidationException(String.format("В пакете может быть не больше %s аренд", MAX_BATCH_SIZE));
+        }
+        Set<Long> itemIds = bookingDtoRequests.stream()
+                .filter(Objects::nonNull)
+                .map(BookingDtoRequest::getItemId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<Long, Item> items = new HashMap<>();
+        if (!itemIds.isEmpty()) {
+            itemRepository.findAllByIdIn(itemIds).forEach(item -> items.put(item.getId(), item));
+        }
+
+        BookingBatchResult[] results = new BookingBatchResult[bookingDtoRequests.size()];
+        Map<Integer, Booking> candidates = new LinkedHashMap<>();
+        for (int i = 0; i < bookingDtoRequests.size(); i++) {
+            try {
+                candidates.put(i, toBatchBooking(bookingDtoRequests.get(i), user, items));
+            } catch (NotFoundException | ValidationException e) {
+                results[i] = BookingBatchResult.failed(i, e);
+            }
+        }
+
+        List<Lock> locks = bookingLocks.forItems(candidates.values().stream()
+                .map(booking -> booking.getItem().getId())
+                .collect(Collectors.toSet()));
+        locks.forEach(Lock::lock);
+        try {
+            Map<Long, BookingIntervals> batchIntervals = new HashMap<>();
+            List<Integer> indexes = new ArrayList<>();
+            List<Booking> bookings = new ArrayList<>();
+            for (Map.Entry<Integer, Booking> candidate : candidates.entrySet()) {
+                Booking booking = candidate.getValue();
+                BookingIntervals batch = batchIntervals.computeIfAbsent(booking.getItem().getId(), id -> new BookingIntervals());
+                try {
+                    validateBookingNotOverlaps(bookingIntervalIndex.forItem(booking.getItem().getId()), booking);
+                    validateBookingNotOverlaps(batch, booking);
+                } catch (ConflictException e) {
+                    results[candidate.getKey()] = BookingBatchResult.failed(candidate.getKey(), e);
+                    continue;
+                }
+                batch.add((long) -candidate.getKey() - 1, booking.getStart(), booking.getEnd());
+                indexes.add(candidate.getKey());
+                bookings.add(booking);
+            }
+            List<Booking> saved = bookings.isEmpty() ? List.of() : bookingRepository.saveAll(bookings);
+            Map<Long, Booking> earliest = new HashMap<>();
+            for (int i = 0; i < saved.size(); i++) {
+                Booking booking = saved.get(i);
+                bookingIntervalIndex.forItem(booking.getItem().getId()).add(booking.getId(), booking.getStart(), booking.getEnd());
+                earliest.merge(booking.getItem().getId(), booking, (current, candidate) ->
+                        candidate.getStart().isBefore(current.getStart()) ? candidate : current);
+                results[indexes.get(i)] = BookingBatchResult.created(indexes.get(i), BookingMapper.toBookingDto(booking));
+            }
+            for (Booking booking : earliest.values()) {
+                itemRepository.offerNextBooking(booking.getItem().getId(), booking.getId(), booking.getStart());
+                entityVersions.itemChanged(booking.getItem().getId());
+            }
+            log.info("Пакет аренд пользователя {}: создано {} из {}", user.getId(), saved.size(), bookingDtoRequests.size());
+        } finally {
+            for (int i = locks.size() - 1; i >= 0; i--) {
+                locks.get(i).unlock();
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Идентификатор из заявки не переносится: иначе saveAll слил бы заявку с существующей арендой вместо вставки.
+     */
+    private Booking toBatchBooking(BookingDtoRequest bookingDtoRequest, User userById, Map<Long, Item> items) throws NotFoundException, ValidationException {
+        if (bookingDtoRequest == null || bookingDtoRequest.getItemId() == null) {
+            log.info("В заявке пакета не указана вещь: {}", bookingDtoRequest);
+            throw new ValidationException("В заявке не указана вещь");
+        }
+        Item itemById = items.get(bookingDtoRequest.getItemId());
+        if (itemById == null) {
+            log.info("Вещь по айди {} не найдена", bookingDtoRequest.getItemId());
+            throw new NotFoundException(String.format("Вещь по айди %s не найдена!", bookingDtoRequest.getItemId()));
+        }
+        validateItemForAvailable(itemById);
+        try {
+            validateStartAndEndOfBooking(bookingDtoRequest);
+        } catch (DateTimeParseException e) {
+            log.info("Некорректное время бронирования : {}, {}", bookingDtoRequest.getStart(), bookingDtoRequest.getEnd());
+            throw new ValidationException("Некорректное время бронирования");
+        }
         validateOwnerIdNotEqualsUserId(itemById, userById);
-        return BookingMapper.toBookingDto(bookingRepository.save(BookingMapper.toBookingFromRequest(bookingDtoRequest, userById, Status.WAITING, itemById)));
+        Booking booking = BookingMapper.toBookingFromRequest(bookingDtoRequest, userById, Status.WAITING, itemById);
+        booking.setId(0);
+        return booking;
     }
 
     @Override
     //  @Transactional(propagation = Propagation.REQUIRED)
-    public BookingDto approveBooking(Long bookingId, boolean approved, Long userId) throws NotFoundException, ValidationException {
-        Booking booking = bookingRepository.findById(bookingId).orElseThrow(() -> {
+    public BookingDto approveBooking(Long bookingId, boolean approved, Long userId) throws NotFoundException, ValidationException, ConflictException {
+        Long itemId = bookingRepository.findItemIdById(bookingId).orElseThrow(() -> {
             log.info("Аренды не существует: {}", bookingId);
             return new NotFoundException(String.format("Аренда не найдена по айди %s", bookingId));
         });
+        Lock lock = bookingLocks.forItem(itemId);
+        lock.lock();
+        try {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    return approveBooking(findBooking(bookingId), approved, userId);
+                } catch (ObjectOptimisticLockingFailureException e) {
+                    if (attempt == MAX_ATTEMPTS) {
+                        log.info("Аренда {} изменена другим запросом, попытки исчерпаны", bookingId);
+                        throw new ConflictException("Аренда изменена другим запросом, повторите попытку");
+                    }
+                    log.info("Аренда {} изменена другим запросом, попытка {}", bookingId, attempt + 1);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private BookingDto approveBooking(Booking booking, boolean approved, Long userId) throws NotFoundException, ValidationException, ConflictException {
         Item item = itemRepository.findById(booking.getItem().getId()).orElseThrow(() -> {
             log.info("Вещь по айди {} не найдена", booking.getItem().getId());
             return new NotFoundException(String.format("Вещь по айди %s не найдена!", booking.getItem().getId()));
         });
         validateOwnerOfItem(userId, item);
         validateBookingBeforeApprove(booking, approved);
-        if (approved) {
-            booking.setStatus(Status.APPROVED);
-        } else {
-            booking.setStatus(Status.REJECTED);
+        if (approved && booking.getStatus() == Status.REJECTED) {
+            validateBookingNotOverlaps(bookingIntervalIndex.forItem(item.getId()), booking);
+        }
+        boolean wasActive = booking.getStatus() == Status.WAITING || booking.getStatus() == Status.APPROVED;
+        booking.setStatus(approved ? Status.APPROVED : Status.REJECTED);
+        Booking saved = bookingRepository.save(booking);
+        BookingIntervals intervals = bookingIntervalIndex.forItem(item.getId());
+        if (!approved) {
+            intervals.remove(saved.getId());
+        } else if (!wasActive) {
+            intervals.add(saved.getId(), saved.getStart(), saved.getEnd());
         }
-        return BookingMapper.toBookingDto(bookingRepository.save(booking));
+        entityVersions.itemChanged(item.getId());
+        return BookingMapper.toBookingDto(saved);
+    }
+
+    private Booking findBooking(Long bookingId) throws NotFoundException {
+        return bookingRepository.findById(bookingId).orElseThrow(() -> {
+            log.info("Аренды не существует: {}", bookingId);
+            return new NotFoundException(String.format("Аренда не найдена по айди %s", bookingId));
+        });
     }
 
     @Override
@@ -85,140 +250,212 @@ public class BookingServiceImpl implements BookingService {
     }
 
     @Override //этот
-    public List<BookingDto> getBookingsByState(State state, Long userId, Integer from, Integer size) throws Exception {
-        User userById = userRepository.findById(userId).orElseThrow(() -> {
-            log.info("Пользователь {} не найден", userId);
-            return new NotFoundException(String.format("Пользователь %s не найден", userId));
-        });
-        PageRequest pageRequest = PageRequest.of(size == 0 ? 0 : from / size, size, Sort.Direction.DESC, "start");
+    public Slice<BookingDto> getBookingsByState(State state, User user, Integer from, Integer size) throws Exception {
+        PageRequest pageRequest = PageRequest.of(size == 0 ? 0 : from / size, size, Sort.Direction.DESC, "start", "id");
 
-        List<BookingDto> bookings = null;
+        Slice<BookingRow> bookings = null;
         switch (state) {
             case ALL:
-                bookings = bookingRepository.findAllByBooker(userById, pageRequest)
-                        .getContent()
-                        .stream().map(BookingMapper::toBookingDto).collect(Collectors.toList());
+                bookings = bookingRepository.findRowsByBooker(user, pageRequest);
                 break;
             case CURRENT:
-                bookings = bookingRepository.findAllByStartBeforeAndEndAfterAndBooker(LocalDateTime.now(), LocalDateTime.now(), userById, pageRequest)
-                        .stream().map(BookingMapper::toBookingDto).collect(Collectors.toList());
+                bookings = bookingRepository.findCurrentRowsByBooker(user, LocalDateTime.now(), pageRequest);
                 break;
             case PAST:
-                bookings = bookingRepository.findAllByEndBeforeAndBooker(LocalDateTime.now(), userById, pageRequest)
-                        .stream().map(BookingMapper::toBookingDto).collect(Collectors.toList());
+                bookings = bookingRepository.findPastRowsByBooker(user, LocalDateTime.now(), pageRequest);
                 break;
             case FUTURE:
-                bookings = bookingRepository.findAllByStartAfterAndBooker(LocalDateTime.now(), userById, pageRequest)
-                        .stream().map(BookingMapper::toBookingDto).collect(Collectors.toList());
+                bookings = bookingRepository.findFutureRowsByBooker(user, LocalDateTime.now(), pageRequest);
                 break;
         }
         if (state.toString().equals(Status.REJECTED.toString()) || state.toString().equals(Status.WAITING.toString())) {
             bookings = bookingRepository
-                    .findAllByStatusAndBooker(Status.valueOf(state.toString()), userById, pageRequest)
-                    .stream().map(BookingMapper::toBookingDto).collect(Collectors.toList());
+                    .findRowsByBookerAndStatus(user, Status.valueOf(state.toString()), pageRequest);
         }
-        return bookings;
+        return bookings.map(BookingMapper::toBookingDto);
     }
 
     @Override
-    public List<BookingDto> getBookingsByState(State state, Long userId) throws Exception {
-        User userById = userRepository.findById(userId).orElseThrow(() -> {
-            log.info("Пользователь {} не найден", userId);
-            return new NotFoundException(String.format("Пользователь %s не найден", userId));
-        });
+    public List<BookingDto> getBookingsByState(State state, User user) throws Exception {
         List<BookingDto> bookings = null;
         switch (state) {
             case ALL:
-                bookings = bookingRepository.findAll(Sort.by(Sort.Direction.DESC, "start"))
+                bookings = bookingRepository.findRowsByBooker(user, Sort.by(Sort.Direction.DESC, "start"))
                         .stream().map(BookingMapper::toBookingDto).collect(Collectors.toList());
                 break;
             case CURRENT:
-                bookings = bookingRepository.findAllByStartBeforeAndEndAfter(LocalDateTime.now(), LocalDateTime.now(), Sort.by(Sort.Direction.DESC, "start"))
+                bookings = bookingRepository.findCurrentRowsByBooker(user, LocalDateTime.now(), Sort.by(Sort.Direction.DESC, "start"))
                         .stream().map(BookingMapper::toBookingDto).collect(Collectors.toList());
                 break;
             case PAST:
-                bookings = bookingRepository.findAllByEndBefore(LocalDateTime.now(), Sort.by(Sort.Direction.DESC, "start"))
+                bookings = bookingRepository.findPastRowsByBooker(user, LocalDateTime.now(), Sort.by(Sort.Direction.DESC, "start"))
                         .stream().map(BookingMapper::toBookingDto).collect(Collectors.toList());
                 break;
             case FUTURE:
-                bookings = bookingRepository.findAllByStartAfter(LocalDateTime.now(), Sort.by(Sort.Direction.DESC, "start"))
+                bookings = bookingRepository.findFutureRowsByBooker(user, LocalDateTime.now(), Sort.by(Sort.Direction.DESC, "start"))
                         .stream().map(BookingMapper::toBookingDto).collect(Collectors.toList());
                 break;
         }
         if (state.toString().equals(Status.REJECTED.toString()) || state.toString().equals(Status.WAITING.toString())) {
             bookings = bookingRepository
-                    .findAllByStatusAndBooker(Status.valueOf(state.toString()), userById, Sort.by(Sort.Direction.DESC, "start"))
+                    .findRowsByBookerAndStatus(user, Status.valueOf(state.toString()), Sort.by(Sort.Direction.DESC, "start"))
                     .stream().map(BookingMapper::toBookingDto).collect(Collectors.toList());
         }
         return bookings;
     }
 
     @Override
-    public List<BookingDto> getBookingsByOwnerOfItems(State state, Long userId, Integer from, Integer size) throws Exception {
-        User userById = userRepository.findById(userId).orElseThrow(() -> {
-            log.info("Пользователь {} не найден", userId);
-            return new NotFoundException(String.format("Пользователь %s не найден", userId));
-        });
-        List<BookingDto> bookings = null;
+    public Slice<BookingDto> getBookingsByState(State state, User user, BookingCursor cursor, Integer size) throws Exception {
+        PageRequest limit = PageRequest.of(0, size);
+        Slice<BookingRow> bookings;
+        switch (state) {
+            case CURRENT:
+                bookings = bookingRepository.findCurrentByBookerBefore(user, LocalDateTime.now(), cursor.getStart(), cursor.getId(), limit);
+                break;
+            case PAST:
+                bookings = bookingRepository.findPastByBookerBefore(user, LocalDateTime.now(), cursor.getStart(), cursor.getId(), limit);
+                break;
+            case FUTURE:
+                bookings = bookingRepository.findFutureByBookerBefore(user, LocalDateTime.now(), cursor.getStart(), cursor.getId(), limit);
+                break;
+            case WAITING:
+            case REJECTED:
+                bookings = bookingRepository.findAllByStatusAndBookerBefore(Status.valueOf(state.toString()), user, cursor.getStart(), cursor.getId(), limit);
+                break;
+            default:
+                bookings = bookingRepository.findAllByBookerBefore(user, cursor.getStart(), cursor.getId(), limit);
+        }
+        return bookings.map(BookingMapper::toBookingDto);
+    }
+
+    @Override
+    public Slice<BookingDto> getBookingsByOwnerOfItems(State state, User user, Integer from, Integer size) throws Exception {
+        Slice<BookingRow> bookings = null;
         switch (state) {
             case ALL:
-                bookings = bookingRepository.findAllByItemOwner(userById, PageRequest.of(from, size, Sort.Direction.DESC, "start"))
-                        .stream().map(BookingMapper::toBookingDto).collect(Collectors.toList());
+                bookings = bookingRepository.findRowsByItemOwner(user, PageRequest.of(from, size, Sort.Direction.DESC, "start", "id"));
                 break;
             case CURRENT:
-                bookings = bookingRepository.findAllByItemOwnerAndStartBeforeAndEndAfter(userById, LocalDateTime.now(), LocalDateTime.now(), PageRequest.of(from, size, Sort.Direction.DESC, "start"))
-                        .stream().map(BookingMapper::toBookingDto).collect(Collectors.toList());
+                bookings = bookingRepository.findCurrentRowsByItemOwner(user, LocalDateTime.now(), PageRequest.of(from, size, Sort.Direction.DESC, "start", "id"));
                 break;
             case PAST:
-                bookings = bookingRepository.findAllByItemOwnerAndEndBefore(userById, LocalDateTime.now(), PageRequest.of(from, size, Sort.Direction.DESC, "start"))
-                        .stream().map(BookingMapper::toBookingDto).collect(Collectors.toList());
+                bookings = bookingRepository.findPastRowsByItemOwner(user, LocalDateTime.now(), PageRequest.of(from, size, Sort.Direction.DESC, "start", "id"));
                 break;
             case FUTURE:
-                bookings = bookingRepository.findAllByItemOwnerAndStartAfter(userById, LocalDateTime.now(), PageRequest.of(from, size, Sort.Direction.DESC, "start"))
-                        .stream().map(BookingMapper::toBookingDto).collect(Collectors.toList());
+                bookings = bookingRepository.findFutureRowsByItemOwner(user, LocalDateTime.now(), PageRequest.of(from, size, Sort.Direction.DESC, "start", "id"));
                 break;
         }
         if (state.toString().equals((Status.REJECTED).toString()) || state.toString().equals((Status.WAITING).toString())) {
             bookings = bookingRepository
-                    .findAllByStatusAndItemOwner(Status.valueOf(state.toString()), userById, PageRequest.of(from, size, Sort.Direction.DESC, "start"))
-                    .stream().map(BookingMapper::toBookingDto).collect(Collectors.toList());
+                    .findRowsByItemOwnerAndStatus(user, Status.valueOf(state.toString()), PageRequest.of(from, size, Sort.Direction.DESC, "start", "id"));
         }
-        return bookings;
+        return bookings.map(BookingMapper::toBookingDto);
     }
 
     @Override
-    public List<BookingDto> getBookingsByOwnerOfItems(State state, Long userId) throws Exception {
-        User userById = userRepository.findById(userId).orElseThrow(() -> {
-            log.info("Пользователь {} не найден", userId);
-            return new NotFoundException(String.format("Пользователь %s не найден", userId));
-        });
+    public List<BookingDto> getBookingsByOwnerOfItems(State state, User user) throws Exception {
         List<BookingDto> bookings = null;
         switch (state) {
             case ALL:
-                bookings = bookingRepository.findAllByItemOwner(userById, Sort.by(Sort.Direction.DESC, "start"))
+                bookings = bookingRepository.findRowsByItemOwner(user, Sort.by(Sort.Direction.DESC, "start"))
                         .stream().map(BookingMapper::toBookingDto).collect(Collectors.toList());
                 break;
             case CURRENT:
-                bookings = bookingRepository.findAllByItemOwnerAndStartBeforeAndEndAfter(userById, LocalDateTime.now(), LocalDateTime.now(), Sort.by(Sort.Direction.DESC, "start"))
+                bookings = bookingRepository.findCurrentRowsByItemOwner(user, LocalDateTime.now(), Sort.by(Sort.Direction.DESC, "start"))
                         .stream().map(BookingMapper::toBookingDto).collect(Collectors.toList());
                 break;
             case PAST:
-                bookings = bookingRepository.findAllByItemOwnerAndEndBefore(userById, LocalDateTime.now(), Sort.by(Sort.Direction.DESC, "start"))
+                bookings = bookingRepository.findPastRowsByItemOwner(user, LocalDateTime.now(), Sort.by(Sort.Direction.DESC, "start"))
                         .stream().map(BookingMapper::toBookingDto).collect(Collectors.toList());
                 break;
             case FUTURE:
-                bookings = bookingRepository.findAllByItemOwnerAndStartAfter(userById, LocalDateTime.now(), Sort.by(Sort.Direction.DESC, "start"))
+                bookings = bookingRepository.findFutureRowsByItemOwner(user, LocalDateTime.now(), Sort.by(Sort.Direction.DESC, "start"))
                         .stream().map(BookingMapper::toBookingDto).collect(Collectors.toList());
                 break;
         }
         if (state.toString().equals((Status.REJECTED).toString()) || state.toString().equals((Status.WAITING).toString())) {
             bookings = bookingRepository
-                    .findAllByStatusAndItemOwner(Status.valueOf(state.toString()), userById, Sort.by(Sort.Direction.DESC, "start"))
+                    .findRowsByItemOwnerAndStatus(user, Status.valueOf(state.toString()), Sort.by(Sort.Direction.DESC, "start"))
                     .stream().map(BookingMapper::toBookingDto).collect(Collectors.toList());
         }
         return bookings;
     }
 
+    @Override
+    public Slice<BookingDto> getBookingsByOwnerOfItems(State state, User user, BookingCursor cursor, Integer size) throws Exception {
+        PageRequest limit = PageRequest.of(0, size);
+        Slice<BookingRow> bookings;
+        switch (state) {
+            case CURRENT:
+                bookings = bookingRepository.findCurrentByItemOwnerBefore(user, LocalDateTime.now(), cursor.getStart(), cursor.getId(), limit);
+                break;
+            case PAST:
+                bookings = bookingRepository.findPastByItemOwnerBefore(user, LocalDateTime.now(), cursor.getStart(), cursor.getId(), limit);
+                break;
+            case FUTURE:
+                bookings = bookingRepository.findFutureByItemOwnerBefore(user, LocalDateTime.now(), cursor.getStart(), cursor.getId(), limit);
+                break;
+            case WAITING:
+            case REJECTED:
+                bookings = bookingRepository.findAllByStatusAndItemOwnerBefore(Status.valueOf(state.toString()), user, cursor.getStart(), cursor.getId(), limit);
+                break;
+            default:
+                bookings = bookingRepository.findAllByItemOwnerBefore(user, cursor.getStart(), cursor.getId(), limit);
+        }
+        return bookings.map(BookingMapper::toBookingDto);
+    }
+
+    @Override
+    public BookingExport exportBookingsByState(State state, User user) {
+        return consumer -> export(() -> {
+            LocalDateTime now = LocalDateTime.now();
+            switch (state) {
+                case CURRENT:
+                    return bookingRepository.streamCurrentRowsByBooker(user, now);
+                case PAST:
+                    return bookingRepository.streamPastRowsByBooker(user, now);
+                case FUTURE:
+                    return bookingRepository.streamFutureRowsByBooker(user, now);
+                case WAITING:
+                case REJECTED:
+                    return bookingRepository.streamRowsByBookerAndStatus(user, Status.valueOf(state.toString()));
+                default:
+                    return bookingRepository.streamRowsByBooker(user);
+            }
+        }, consumer);
+    }
+
+    @Override
+    public BookingExport exportBookingsByOwnerOfItems(State state, User user) {
+        return consumer -> export(() -> {
+            LocalDateTime now = LocalDateTime.now();
+            switch (state) {
+                case CURRENT:
+                    return bookingRepository.streamCurrentRowsByItemOwner(user, now);
+                case PAST:
+                    return bookingRepository.streamPastRowsByItemOwner(user, now);
+                case FUTURE:
+                    return bookingRepository.streamFutureRowsByItemOwner(user, now);
+                case WAITING:
+                case REJECTED:
+                    return bookingRepository.streamRowsByItemOwnerAndStatus(user, Status.valueOf(state.toString()));
+                default:
+                    return bookingRepository.streamRowsByItemOwner(user);
+            }
+        }, consumer);
+    }
+
+    /**
+     * Поток курсора живет только внутри транзакции, поэтому он открывается и закрывается здесь же.
+     */
+    private void export(Supplier<Stream<BookingRow>> rows, Consumer<BookingDto> consumer) {
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<BookingRow> stream = rows.get()) {
+                stream.map(BookingMapper::toBookingDto).forEach(consumer);
+            }
+        });
+    }
+
     private void validateItemForAvailable(Item item) throws ValidationException {
         if (!item.isAvailable()) {
             log.info("Вещь недоступна: {}", item);
@@ -240,6 +477,14 @@ public class BookingServiceImpl implements BookingService {
         }
     }
 
+    private void validateBookingNotOverlaps(BookingIntervals intervals, Booking booking) throws ConflictException {
+        if (intervals.overlaps(booking.getStart(), booking.getEnd())) {
+            log.info("Время аренды вещи {} пересекается с другой арендой: {} - {}",
+                    booking.getItem().getId(), booking.getStart(), booking.getEnd());
+            throw new ConflictException("Вещь уже забронирована на это время");
+        }
+    }
+
     private void validateOwnerOfItem(Long userId, Item item) throws NotFoundException {
         if (item.getOwner().getId() != userId) {
             log.info("Пользователь не найден или не является владельцем вещи: {}", userId);
@@ -0,0 +1,58 @@
+package ru.practicum.shareit.booking;
+
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.boot.actuate.metrics.web.servlet.WebMvcTagsContributor;
+import org.springframework.core.MethodParameter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.method.HandlerMethod;
+import ru.practicum.shareit.booking.dto.State;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Добавляет к http.server.requests тег state: значение State для списков аренд, none для остальных запросов.
+ */
+@Component
+public class BookingStateTagsContributor implements WebMvcTagsContributor {
+    private static final String STATE = "state";
+    private static final String NONE = "none";
+    private static final String UNKNOWN = "UNKNOWN";
+
+    @Override
+    public Iterable<Tag> getTags(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                 Throwable exception) {
+        return Tags.of(STATE, state(request, handler));
+    }
+
+    @Override
+    public Iterable<Tag> getLongRequestTags(HttpServletRequest request, Object handler) {
+        return Tags.of(STATE, state(request, handler));
+    }
+
+    private String state(HttpServletRequest request, Object handler) {
+        if (!(handler instanceof HandlerMethod) || !hasStateParameter((HandlerMethod) handler)) {
+            return NONE;
+        }
+        String state = request.getParameter(STATE);
+        if (state == null) {
+            return State.ALL.name();
+        }
+        try {
+            return State.valueOf(state).name();
+        } catch (IllegalArgumentException e) {
+            return UNKNOWN;
+        }
+    }
+
+    private boolean hasStateParameter(HandlerMethod handler) {
+        for (MethodParameter parameter : handler.getMethodParameters()) {
+            if (parameter.hasParameterAnnotation(RequestParam.class) && STATE.equals(parameter.getParameterName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,38 @@
+package ru.practicum.shareit.booking.dto;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import ru.practicum.shareit.exception.ConflictException;
+import ru.practicum.shareit.exception.NotFoundException;
+
+/**
+ * Результат одной заявки из POST /bookings/batch: созданная аренда или код и текст ошибки,
+ * те же, что вернул бы одиночный POST /bookings.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class BookingBatchResult {
+    int index;
+    int status;
+    BookingDto booking;
+    String error;
+
+    public static BookingBatchResult created(int index, BookingDto booking) {
+        return new BookingBatchResult(index, 201, booking, null);
+    }
+
+    public static BookingBatchResult failed(int index, Exception e) {
+        int status = 400;
+        if (e instanceof NotFoundException) {
+            status = 404;
+        } else if (e instanceof ConflictException) {
+            status = 409;
+        }
+        return new BookingBatchResult(index, status, null, e.getMessage());
+    }
+}
@@ -19,6 +19,19 @@ public class BookingMapper {
         );
     }
 
+    public static BookingDto toBookingDto(BookingRow row) {
+        User owner = row.getOwnerId() != null ? new User(row.getOwnerId(), row.getOwnerName(), row.getOwnerEmail()) : null;
+        User booker = row.getBookerId() != null ? new User(row.getBookerId(), row.getBookerName(), row.getBookerEmail()) : null;
+        return new BookingDto(
+                row.getId(),
+                row.getStart(),
+                row.getEnd(),
+                new Item(row.getItemId(), row.getItemName(), row.getItemDescription(), row.getItemAvailable(), owner, null),
+                booker,
+                row.getStatus()
+        );
+    }
+
     public static BookingTwoFieldsDto toBookingTwoFieldsDto(Booking booking, Long bookerId) {
         return new BookingTwoFieldsDto(
                 booking.getId(),
@@ -26,6 +39,13 @@ public class BookingMapper {
         );
     }
 
+    public static BookingTwoFieldsDto toBookingTwoFieldsDto(BookingShort booking) {
+        return new BookingTwoFieldsDto(
+                booking.getId(),
+                booking.getBookerId()
+        );
+    }
+
     public static Booking toBookingFromRequest(BookingDtoRequest bookingDtoRequest, User user, Status status, Item item) {
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
         Booking booking = new Booking();
@@ -0,0 +1,32 @@
+package ru.practicum.shareit.booking.dto;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+/**
+ * Плоская строка списка аренд: только колонки, которые попадают в ответ.
+ * Заполняется конструктором в запросах BookingRepository, сущности при этом не загружаются.
+ */
+@Data
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class BookingRow {
+    Long id;
+    LocalDateTime start;
+    LocalDateTime end;
+    Status status;
+    Long itemId;
+    String itemName;
+    String itemDescription;
+    Boolean itemAvailable;
+    Long ownerId;
+    String ownerName;
+    String ownerEmail;
+    Long bookerId;
+    String bookerName;
+    String bookerEmail;
+}
@@ -1,7 +1,6 @@
 package ru.practicum.shareit.booking.model;
 
 import lombok.AccessLevel;
-import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.experimental.FieldDefaults;
@@ -16,14 +15,14 @@ import java.time.LocalDateTime;
  * TODO Sprint add-bookings.
  */
 @Data
-@AllArgsConstructor
 @NoArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE)
 @Entity
 @Table(name = "bookings", schema = "public")
 public class Booking {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "bookings_seq")
+    @SequenceGenerator(name = "bookings_seq", sequenceName = "bookings_seq", allocationSize = 50)
     long id;
     @Column(name = "start_date")
     LocalDateTime start;
@@ -37,6 +36,13 @@ public class Booking {
     User booker;
     @Enumerated(EnumType.STRING)
     Status status;
+    @Version
+    long version;
+
+    public Booking(long id, LocalDateTime start, LocalDateTime end, Item item, User booker, Status status) {
+        this(start, end, item, booker, status);
+        this.id = id;
+    }
 
     public Booking(LocalDateTime start, LocalDateTime end, Item item, User booker, Status status) {
         this.start = start;
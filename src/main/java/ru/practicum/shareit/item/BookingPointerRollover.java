@@ -0,0 +1,83 @@
+package ru.practicum.shareit.item;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.EntityVersions;
+import ru.practicum.shareit.booking.BookingLocks;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Поддерживает items.last_booking_id и items.next_booking_id во времени: когда ближайшая аренда
+ * начинается, она становится последней, а ближайшей — следующая за ней. Вещи обрабатываются
+ * пакетами по batchSize, на пакет уходит один UPDATE.
+ * UPDATE выполняется под блокировками вещей пакета из BookingLocks, иначе он мог бы затереть
+ * указатель, только что выставленный createBooking через offerNextBooking.
+ */
+@Component
+@Slf4j
+public class BookingPointerRollover {
+    private final ItemRepository itemRepository;
+    private final EntityVersions entityVersions;
+    private final BookingLocks bookingLocks;
+    private final int batchSize;
+
+    public BookingPointerRollover(ItemRepository itemRepository, EntityVersions entityVersions, BookingLocks bookingLocks,
+                                  @Value("${shareit.booking-pointers.batch-size:500}") int batchSize) {
+        this.itemRepository = itemRepository;
+        this.entityVersions = entityVersions;
+        this.bookingLocks = bookingLocks;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${shareit.booking-pointers.rollover-delay:PT1M}")
+    public void rollover() {
+        LocalDateTime now = LocalDateTime.now();
+        int items = 0;
+        List<Long> ids = itemRepository.findIdsWithStartedNextBooking(now, PageRequest.of(0, batchSize));
+        while (!ids.isEmpty()) {
+            refresh(ids, now);
+            ids.forEach(entityVersions::itemChanged);
+            items += ids.size();
+            ids = itemRepository.findIdsWithStartedNextBooking(now, PageRequest.of(0, batchSize));
+        }
+        if (items > 0) {
+            log.debug("Сдвинуты указатели аренд у вещей: {}", items);
+        }
+    }
+
+    /**
+     * Полный пересчет при старте: указатели могли устареть, пока приложение не работало.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        LocalDateTime now = LocalDateTime.now();
+        int items = 0;
+        List<Long> ids = itemRepository.findIdsAfter(0L, PageRequest.of(0, batchSize));
+        while (!ids.isEmpty()) {
+            refresh(ids, now);
+            items += ids.size();
+            ids = itemRepository.findIdsAfter(ids.get(ids.size() - 1), PageRequest.of(0, batchSize));
+        }
+        log.info("Указатели аренд пересчитаны, вещей: {}", items);
+    }
+
+    private void refresh(List<Long> ids, LocalDateTime now) {
+        List<Lock> locks = bookingLocks.forItems(ids);
+        locks.forEach(Lock::lock);
+        try {
+            itemRepository.refreshBookingPointers(ids, now);
+        } finally {
+            for (int i = locks.size() - 1; i >= 0; i--) {
+                locks.get(i).unlock();
+            }
+        }
+    }
+}
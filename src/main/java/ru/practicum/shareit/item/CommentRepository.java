@@ -1,10 +1,32 @@
 package ru.practicum.shareit.item;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import ru.practicum.shareit.item.dto.CommentDto;
+import ru.practicum.shareit.item.dto.CommentRow;
 import ru.practicum.shareit.item.model.Comment;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface CommentRepository extends JpaRepository<Comment, Long> {
-    List<Comment> findAllCommentByItemId(Long itemId);
+
+    @Query("SELECT new ru.practicum.shareit.item.dto.CommentDto(c.id, c.text, a.name, c.created) " +
+            "FROM Comment c JOIN c.author a WHERE c.item.id = :itemId ORDER BY c.created DESC, c.id DESC")
+    List<CommentDto> findDtosByItemId(@Param("itemId") Long itemId, Pageable pageable);
+
+    /**
+     * Не больше limit последних комментариев каждой вещи и общее число ее комментариев одним запросом.
+     */
+    @Query(value = "SELECT c.id AS id, c.item_id AS itemId, c.text AS text, u.name AS authorName, " +
+            "c.created AS created, c.total AS total " +
+            "FROM (SELECT cm.id, cm.item_id, CAST(cm.text AS VARCHAR) AS text, cm.author_id, cm.created, " +
+            "ROW_NUMBER() OVER (PARTITION BY cm.item_id ORDER BY cm.created DESC, cm.id DESC) AS rn, " +
+            "COUNT(*) OVER (PARTITION BY cm.item_id) AS total " +
+            "FROM comments cm WHERE cm.item_id IN (:itemIds)) c " +
+            "JOIN users u ON u.id = c.author_id " +
+            "WHERE c.rn <= :limit ORDER BY c.item_id, c.rn", nativeQuery = true)
+    List<CommentRow> findLatestByItemIdIn(@Param("itemIds") Collection<Long> itemIds, @Param("limit") int limit);
 }
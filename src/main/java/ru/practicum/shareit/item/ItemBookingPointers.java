@@ -0,0 +1,25 @@
+package ru.practicum.shareit.item;
+
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * Нативные UPDATE указателей items.last_booking_id и items.next_booking_id. Из кэша второго уровня
+ * после коммита вытесняются только затронутые вещи, остальной регион вещей сохраняется.
+ */
+public interface ItemBookingPointers {
+    /**
+     * Пересчитывает last_booking_id и next_booking_id на момент now тем же порядком, что и
+     * BookingRepository.findLastAndNextByItemIdIn. Версия вещи не меняется.
+     */
+    @Transactional
+    int refreshBookingPointers(Collection<Long> itemIds, LocalDateTime now);
+
+    /**
+     * Делает новую аренду ближайшей, если она начинается раньше текущей ближайшей.
+     */
+    @Transactional
+    int offerNextBooking(Long itemId, Long bookingId, LocalDateTime start);
+}
@@ -0,0 +1,80 @@
+package ru.practicum.shareit.item;
+
+import org.hibernate.query.NativeQuery;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.shareit.item.model.Item;
+
+import javax.persistence.Cache;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Запросам задано собственное пространство запросов, не совпадающее ни с одной таблицей сущностей:
+ * без него Hibernate после нативного UPDATE сбрасывал бы весь кэш второго уровня, а с таблицей items — весь регион вещей.
+ */
+public class ItemBookingPointersImpl implements ItemBookingPointers {
+    static final String POINTERS_SPACE = "item_booking_pointers";
+    private static final String REFRESH = "UPDATE items it SET " +
+            "last_booking_id = (SELECT b.id FROM bookings b WHERE b.item_id = it.id AND b.start_date <= :now " +
+            "ORDER BY b.start_date DESC, b.id ASC LIMIT 1), " +
+            "next_booking_id = (SELECT b.id FROM bookings b WHERE b.item_id = it.id AND b.start_date > :now " +
+            "ORDER BY b.start_date ASC, b.id ASC LIMIT 1) " +
+            "WHERE it.id IN (:itemIds)";
+    private static final String OFFER_NEXT = "UPDATE items it SET next_booking_id = :bookingId " +
+            "WHERE it.id = :itemId AND (it.next_booking_id IS NULL " +
+            "OR EXISTS (SELECT 1 FROM bookings b WHERE b.id = it.next_booking_id AND b.start_date > :start))";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public int refreshBookingPointers(Collection<Long> itemIds, LocalDateTime now) {
+        int updated = nativeUpdate(REFRESH)
+                .setParameter("itemIds", itemIds)
+                .setParameter("now", now)
+                .executeUpdate();
+        evictAfterCommit(itemIds);
+        return updated;
+    }
+
+    @Override
+    public int offerNextBooking(Long itemId, Long bookingId, LocalDateTime start) {
+        int updated = nativeUpdate(OFFER_NEXT)
+                .setParameter("itemId", itemId)
+                .setParameter("bookingId", bookingId)
+                .setParameter("start", start)
+                .executeUpdate();
+        if (updated > 0) {
+            evictAfterCommit(List.of(itemId));
+        }
+        return updated;
+    }
+
+    private Query nativeUpdate(String sql) {
+        return entityManager.createNativeQuery(sql)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedQuerySpace(POINTERS_SPACE);
+    }
+
+    /**
+     * Вытеснение до коммита не помогло бы: параллельное чтение успело бы вернуть в кэш старые указатели.
+     */
+    private void evictAfterCommit(Collection<Long> itemIds) {
+        Cache cache = entityManager.getEntityManagerFactory().getCache();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            itemIds.forEach(id -> cache.evict(Item.class, id));
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                itemIds.forEach(id -> cache.evict(Item.class, id));
+            }
+        });
+    }
+}
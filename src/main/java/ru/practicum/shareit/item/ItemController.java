@@ -2,12 +2,21 @@ package ru.practicum.shareit.item;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import reactor.core.publisher.Flux;
+import ru.practicum.shareit.EntityVersions;
 import ru.practicum.shareit.exception.NotFoundException;
 import ru.practicum.shareit.exception.ValidationException;
+import ru.practicum.shareit.item.dto.AvailabilityInterval;
 import ru.practicum.shareit.item.dto.CommentDto;
 import ru.practicum.shareit.item.dto.ItemDto;
 import ru.practicum.shareit.item.dto.ItemDtoWithBooking;
+import ru.practicum.shareit.user.Caller;
+import ru.practicum.shareit.user.User;
 
 import java.util.List;
 import java.util.Optional;
@@ -21,15 +30,16 @@ import java.util.Optional;
 public class ItemController {
     private static final String X_SHARER_USER_ID = "X-Sharer-User-Id";
     private ItemService itemService;
+    private final EntityVersions entityVersions;
 
-    public ItemController(ItemService itemService) {
+    public ItemController(ItemService itemService, EntityVersions entityVersions) {
         this.itemService = itemService;
+        this.entityVersions = entityVersions;
     }
 
     @PostMapping
-    public ItemDto createItem(@RequestBody ItemDto itemDto, @RequestHeader(value = X_SHARER_USER_ID) Long userId)
-            throws NotFoundException, ValidationException {
-        return itemService.createItem(itemDto, userId);
+    public ItemDto createItem(@RequestBody ItemDto itemDto, @Caller User caller) throws ValidationException {
+        return itemService.createItem(itemDto, caller);
     }
 
     @PatchMapping("/{itemId}")
@@ -38,10 +48,27 @@ public class ItemController {
         return itemService.updateItem(itemDto, itemId, userId);
     }
 
+    /**
+     * Если If-None-Match совпадает с текущей версией вещи, отвечает 304 без обращения к базе.
+     * ETag ставится только на успешный ответ: 404 для несуществующей вещи уходит без него.
+     */
     @GetMapping("/{itemId}")
-    public ItemDtoWithBooking getItemById(@PathVariable Long itemId,
-                                          @RequestHeader(value = X_SHARER_USER_ID) Long userId) throws NotFoundException {
-        return itemService.getItemById(itemId, userId);
+    public ResponseEntity<ItemDtoWithBooking> getItemById(@PathVariable Long itemId,
+                                                          @RequestHeader(value = X_SHARER_USER_ID) Long userId,
+                                                          WebRequest request) throws NotFoundException {
+        String eTag = entityVersions.itemTag(itemId, userId);
+        if (EntityVersions.matches(request.getHeaderValues(HttpHeaders.IF_NONE_MATCH), eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+        ItemDtoWithBooking item = itemService.getItemById(itemId, userId);
+        return ResponseEntity.ok().eTag(eTag).body(item);
+    }
+
+    @GetMapping("/{itemId}/availability")
+    public List<AvailabilityInterval> getAvailability(@PathVariable Long itemId,
+                                                      @RequestParam String from,
+                                                      @RequestParam String to) throws NotFoundException, ValidationException {
+        return itemService.getAvailability(itemId, from, to);
     }
 
     @GetMapping
@@ -65,10 +92,25 @@ public class ItemController {
 
     }
 
+    /**
+     * Поиск без страниц: каждая вещь пишется отдельной строкой по мере чтения из базы.
+     */
+    @GetMapping(value = "/search", produces = "application/x-ndjson")
+    public Flux<ItemDto> streamSearchItems(@RequestParam(name = "text") String text) {
+        return itemService.streamSearchItems(text);
+    }
+
+    @GetMapping("/{itemId}/comments")
+    public List<CommentDto> getComments(@PathVariable Long itemId,
+                                        @RequestParam(defaultValue = "0") Integer from,
+                                        @RequestParam(defaultValue = "20") Integer size) throws NotFoundException, ValidationException {
+        return itemService.getComments(itemId, from, size);
+    }
+
     @PostMapping("/{itemId}/comment")
     public CommentDto createComment(@RequestBody CommentDto commentDto, @PathVariable Long itemId,
-                                    @RequestHeader(value = X_SHARER_USER_ID) Long userId) throws ValidationException, NotFoundException {
-        return itemService.createComment(commentDto, itemId, userId);
+                                    @Caller User caller) throws ValidationException, NotFoundException {
+        return itemService.createComment(commentDto, itemId, caller);
     }
 
 }
@@ -4,12 +4,18 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import ru.practicum.shareit.item.dto.ItemShort;
 import ru.practicum.shareit.item.model.Item;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
-public interface ItemRepository extends JpaRepository<Item, Long> {
+public interface ItemRepository extends JpaRepository<Item, Long>, ItemBookingPointers {
+    String WITH_BOOKINGS = "SELECT it FROM Item it LEFT JOIN FETCH it.owner " +
+            "LEFT JOIN FETCH it.lastBooking lb LEFT JOIN FETCH lb.booker " +
+            "LEFT JOIN FETCH it.nextBooking nb LEFT JOIN FETCH nb.booker ";
 
     Optional<Item> findByIdAndOwnerId(Long itemId, Long userId);
 
@@ -19,7 +25,30 @@ public interface ItemRepository extends JpaRepository<Item, Long> {
     @Query("SELECT it FROM Item it WHERE (LOWER(it.name) LIKE LOWER(CONCAT('%', :text, '%')) OR LOWER(it.description) LIKE LOWER(CONCAT('%', :text, '%'))) AND it.available = true")
     List<Item> findAll(@Param("text") String text, Pageable pageable);
 
-    List<Item> findAllByOwnerId(Long userId);
+    @Query("SELECT it.id AS id, it.name AS name, it.description AS description FROM Item it WHERE it.available = true")
+    List<ItemShort> findAllAvailableShort();
 
-    List<Item> findAllByOwnerId(Long userId, Pageable pageable);
+    @Query(WITH_BOOKINGS + "WHERE it.id = :id")
+    Optional<Item> findWithBookingsById(@Param("id") Long id);
+
+    @Query(WITH_BOOKINGS + "WHERE it.owner.id = :userId")
+    List<Item> findAllByOwnerId(@Param("userId") Long userId);
+
+    @Query(WITH_BOOKINGS + "WHERE it.owner.id = :userId")
+    List<Item> findAllByOwnerId(@Param("userId") Long userId, Pageable pageable);
+
+    /**
+     * Вещи, у которых ближайшая аренда уже началась и указатели нужно сдвинуть.
+     */
+    @Query("SELECT it.id FROM Item it JOIN it.nextBooking nb WHERE nb.start <= :now ORDER BY it.id")
+    List<Long> findIdsWithStartedNextBooking(@Param("now") LocalDateTime now, Pageable pageable);
+
+    @Query("SELECT it.id FROM Item it WHERE it.id > :afterId ORDER BY it.id")
+    List<Long> findIdsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("SELECT it FROM Item it LEFT JOIN FETCH it.owner WHERE it.id IN :ids")
+    List<Item> findAllByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT it FROM Item it LEFT JOIN FETCH it.owner WHERE it.request.id IN :requestIds")
+    List<Item> findAllByRequestIdIn(@Param("requestIds") Collection<Long> requestIds);
 }
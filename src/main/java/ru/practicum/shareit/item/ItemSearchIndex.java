@@ -0,0 +1,217 @@
+package ru.practicum.shareit.item;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.item.dto.ItemShort;
+import ru.practicum.shareit.item.model.Item;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Триграммный индекс по имени и описанию доступных вещей.
+ * Результат совпадает с LOWER(name) LIKE '%text%' OR LOWER(description) LIKE '%text%'.
+ */
+@Component
+@Slf4j
+public class ItemSearchIndex {
+    private static final int GRAM = 3;
+    private final ItemRepository itemRepository;
+    private final Map<Long, String[]> documents = new HashMap<>();
+    private final Map<String, PostingList> postings = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public ItemSearchIndex(ItemRepository itemRepository) {
+        this.itemRepository = itemRepository;
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        List<ItemShort> items = itemRepository.findAllAvailableShort();
+        lock.writeLock().lock();
+        try {
+            documents.clear();
+            postings.clear();
+            for (ItemShort item : items) {
+                add(item.getId(), item.getName(), item.getDescription());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Поисковый индекс построен, вещей: {}", items.size());
+    }
+
+    /**
+     * Тексты вещи в индексе до и после изменения: по ним находятся запросы, результат которых мог измениться.
+     */
+    public List<String> index(Item item) {
+        List<String> texts = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            addTexts(texts, delete(item.getId()));
+            if (item.isAvailable()) {
+                addTexts(texts, add(item.getId(), item.getName(), item.getDescription()));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return texts;
+    }
+
+    public List<String> remove(Long itemId) {
+        List<String> texts = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            addTexts(texts, delete(itemId));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return texts;
+    }
+
+    /**
+     * Идентификаторы подходящих вещей в порядке возрастания.
+     */
+    public List<Long> search(String text) {
+        String query = normalize(text);
+        lock.readLock().lock();
+        try {
+            if (query.length() < GRAM) {
+                return scan(query);
+            }
+            List<PostingList> lists = new ArrayList<>();
+            for (String gram : grams(query)) {
+                PostingList list = postings.get(gram);
+                if (list == null) return Collections.emptyList();
+                lists.add(list);
+            }
+            lists.sort(Comparator.comparingInt(list -> list.size));
+            List<Long> result = new ArrayList<>();
+            PostingList smallest = lists.get(0);
+            for (int i = 0; i < smallest.size; i++) {
+                long id = smallest.ids[i];
+                if (containsInAll(lists, id) && matches(documents.get(id), query)) {
+                    result.add(id);
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Long> scan(String query) {
+        List<Long> result = new ArrayList<>();
+        for (Map.Entry<Long, String[]> document : documents.entrySet()) {
+            if (matches(document.getValue(), query)) {
+                result.add(document.getKey());
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private boolean containsInAll(List<PostingList> lists, long id) {
+        for (int i = 1; i < lists.size(); i++) {
+            if (!lists.get(i).contains(id)) return false;
+        }
+        return true;
+    }
+
+    private String[] add(long id, String name, String description) {
+        String[] document = {normalize(name), normalize(description)};
+        documents.put(id, document);
+        for (String gram : grams(document)) {
+            postings.computeIfAbsent(gram, g -> new PostingList()).add(id);
+        }
+        return document;
+    }
+
+    private String[] delete(long id) {
+        String[] document = documents.remove(id);
+        if (document == null) return null;
+        for (String gram : grams(document)) {
+            PostingList list = postings.get(gram);
+            list.remove(id);
+            if (list.size == 0) {
+                postings.remove(gram);
+            }
+        }
+        return document;
+    }
+
+    private static void addTexts(List<String> texts, String[] document) {
+        if (document != null) {
+            texts.addAll(Arrays.asList(document));
+        }
+    }
+
+    private static boolean matches(String[] document, String query) {
+        return document[0].contains(query) || document[1].contains(query);
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    private static Set<String> grams(String... texts) {
+        Set<String> grams = new HashSet<>();
+        for (String text : texts) {
+            for (int i = 0; i + GRAM <= text.length(); i++) {
+                grams.add(text.substring(i, i + GRAM));
+            }
+        }
+        return grams;
+    }
+
+    /**
+     * Отсортированный список идентификаторов без упаковки в Long.
+     */
+    private static class PostingList {
+        long[] ids = new long[2];
+        int size;
+
+        boolean contains(long id) {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+
+        void add(long id) {
+            if (size > 0 && ids[size - 1] < id) {
+                ensureCapacity();
+                ids[size++] = id;
+                return;
+            }
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position >= 0) return;
+            position = -position - 1;
+            ensureCapacity();
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            ids[position] = id;
+            size++;
+        }
+
+        void remove(long id) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position < 0) return;
+            System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+            size--;
+        }
+
+        private void ensureCapacity() {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+        }
+    }
+}
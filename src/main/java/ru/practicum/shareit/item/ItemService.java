@@ -1,16 +1,19 @@
 package ru.practicum.shareit.item;
 
 import org.springframework.data.domain.Pageable;
+import reactor.core.publisher.Flux;
 import ru.practicum.shareit.exception.NotFoundException;
 import ru.practicum.shareit.exception.ValidationException;
+import ru.practicum.shareit.item.dto.AvailabilityInterval;
 import ru.practicum.shareit.item.dto.CommentDto;
 import ru.practicum.shareit.item.dto.ItemDto;
 import ru.practicum.shareit.item.dto.ItemDtoWithBooking;
+import ru.practicum.shareit.user.User;
 
 import java.util.List;
 
 public interface ItemService {
-    ItemDto createItem(ItemDto itemDto, Long userId) throws NotFoundException, ValidationException;
+    ItemDto createItem(ItemDto itemDto, User user) throws ValidationException;
 
     ItemDto updateItem(ItemDto itemDto, Long itemId, Long userId) throws NotFoundException;
 
@@ -20,5 +23,11 @@ public interface ItemService {
 
     List<ItemDto> getSearchItems(String text, Pageable pageable);
 
-    CommentDto createComment(CommentDto commentDto, Long itemId, Long userId) throws ValidationException, NotFoundException;
+    Flux<ItemDto> streamSearchItems(String text);
+
+    List<AvailabilityInterval> getAvailability(Long itemId, String from, String to) throws NotFoundException, ValidationException;
+
+    List<CommentDto> getComments(Long itemId, Integer from, Integer size) throws NotFoundException, ValidationException;
+
+    CommentDto createComment(CommentDto commentDto, Long itemId, User user) throws ValidationException, NotFoundException;
 }
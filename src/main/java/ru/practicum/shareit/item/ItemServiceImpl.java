@@ -1,10 +1,18 @@
 package ru.practicum.shareit.item;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import ru.practicum.shareit.EntityVersions;
+import ru.practicum.shareit.booking.BookingIntervalIndex;
 import ru.practicum.shareit.booking.BookingRepository;
 import ru.practicum.shareit.booking.dto.BookingMapper;
+import ru.practicum.shareit.booking.dto.BookingShort;
+import ru.practicum.shareit.booking.dto.BookingTwoFieldsDto;
 import ru.practicum.shareit.booking.dto.Status;
 import ru.practicum.shareit.booking.model.Booking;
 import ru.practicum.shareit.exception.NotFoundException;
@@ -14,9 +22,10 @@ import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.request.ItemRequest;
 import ru.practicum.shareit.request.ItemRequestRepository;
 import ru.practicum.shareit.user.User;
-import ru.practicum.shareit.user.UserRepository;
 
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -24,109 +33,80 @@ import java.util.stream.Collectors;
 @Service
 @Slf4j
 public class ItemServiceImpl implements ItemService {
+    static final int SEARCH_CHUNK_SIZE = 100;
+    static final int LATEST_COMMENTS = 10;
     private final ItemRepository itemRepository;
-    private final UserRepository userRepository;
     private final BookingRepository bookingRepository;
     private final CommentRepository commentRepository;
     private final ItemRequestRepository itemRequestRepository;
+    private final ItemSearchIndex itemSearchIndex;
+    private final SearchResultCache searchResultCache;
+    private final BookingIntervalIndex bookingIntervalIndex;
+    private final EntityVersions entityVersions;
 
-    public ItemServiceImpl(ItemRepository itemRepository, UserRepository userRepository, BookingRepository bookingRepository, CommentRepository commentRepository, ItemRequestRepository itemRequestRepository) {
+    public ItemServiceImpl(ItemRepository itemRepository, BookingRepository bookingRepository,
+                           CommentRepository commentRepository, ItemRequestRepository itemRequestRepository,
+                           ItemSearchIndex itemSearchIndex, SearchResultCache searchResultCache,
+                           BookingIntervalIndex bookingIntervalIndex, EntityVersions entityVersions) {
         this.itemRepository = itemRepository;
-        this.userRepository = userRepository;
         this.bookingRepository = bookingRepository;
         this.commentRepository = commentRepository;
         this.itemRequestRepository = itemRequestRepository;
+        this.itemSearchIndex = itemSearchIndex;
+        this.searchResultCache = searchResultCache;
+        this.bookingIntervalIndex = bookingIntervalIndex;
+        this.entityVersions = entityVersions;
     }
 
 
     @Override
-    public ItemDto createItem(ItemDto itemDto, Long userId) throws NotFoundException, ValidationException {
+    public ItemDto createItem(ItemDto itemDto, User user) throws ValidationException {
         validateItemFromUser(itemDto);
-        User user = userRepository.findById(userId).orElseThrow(() -> {
-            log.info("Пользователь {} не найден", userId);
-            return new NotFoundException(String.format("Пользователь %s не найден", userId));
-        });
         itemDto.setOwner(user);
         ItemRequest itemRequest = new ItemRequest();
         if (itemDto.getRequestId() != null) {
             itemRequest = itemRequestRepository.findById(itemDto.getRequestId()).get();
         }
-        return ItemMapper.toItemDto(itemRepository.save(ItemMapper.toItem(itemDto, itemRequest)));
+        Item item = itemRepository.save(ItemMapper.toItem(itemDto, itemRequest));
+        searchResultCache.invalidate(itemSearchIndex.index(item));
+        return itemChanged(ItemMapper.toItemDto(item));
     }
 
     @Override
     public ItemDto updateItem(ItemDto itemDto, Long itemId, Long userId) throws NotFoundException {
-        validateOwnerOfItem(userId, itemId);
-        return ItemMapper.toItemDto(itemRepository.save(ItemMapper.toItemWithBlankFields(itemDto,
-                itemRepository.findById(itemId).get())));
+        Item item = itemRepository.save(ItemMapper.toItemWithBlankFields(itemDto, findOwnedItem(userId, itemId)));
+        searchResultCache.invalidate(itemSearchIndex.index(item));
+        return itemChanged(ItemMapper.toItemDto(item));
     }
 
+    /**
+     * Вещь, ее последняя и ближайшая аренды читаются одним запросом по указателям из items.
+     */
     @Override
     public ItemDtoWithBooking getItemById(Long itemId, Long userId) throws NotFoundException {
-        LocalDateTime time = LocalDateTime.now();
-        List<CommentDto> comments = commentRepository.findAllCommentByItemId(itemId).stream()
-                .map(CommentMapper::toCommentDto).collect(Collectors.toList());
-        if (itemRepository.findByIdAndOwnerId(itemId, userId).isPresent()) {
-            ItemDtoWithBooking item = itemRepository.findById(itemId).map(ItemMapper::toItemDtoWithBooking).orElseThrow(()
-                    -> new NotFoundException("Вещь не найдена"));
-            Optional<Booking> last = bookingRepository.findFirstByItemIdAndStartLessThanEqualOrderByStartDesc(itemId, time);
-            Optional<Booking> next = bookingRepository.findFirstByItemIdAndStartAfterOrderByStartAsc(itemId, time);
-            if (last.isPresent() && !last.get().getStatus().equals(Status.REJECTED)) {
-                item.setLastBooking(BookingMapper.toBookingTwoFieldsDto(last.get(), last.get().getBooker().getId()));
-            } else {
-                item.setLastBooking(null);
-            }
-            if (next.isPresent() && !next.get().getStatus().equals(Status.REJECTED)) {
-                item.setNextBooking(BookingMapper.toBookingTwoFieldsDto(next.get(), next.get().getBooker().getId()));
-            } else {
-                item.setNextBooking(null);
-            }
-            if (!comments.isEmpty()) {
-                item.setComments(comments);
-            }
-            return item;
-
+        Item item = itemRepository.findWithBookingsById(itemId)
+                .orElseThrow(() -> new NotFoundException(String.format("Вещь по айди: %s не найдена", itemId)));
+        ItemDtoWithBooking itemDto;
+        if (item.getOwner() != null && Objects.equals(item.getOwner().getId(), userId)) {
+            itemDto = ItemMapper.toItemDtoWithBooking(item);
+            setLastAndNextBookings(Map.of(item.getId(), itemDto), List.of(item), LocalDateTime.now());
         } else {
-            ItemDtoWithBooking item = itemRepository.findById(itemId).map(ItemMapper::toItemDtoWithBookingDtoForUser)
-                    .orElseThrow(() -> new NotFoundException(String.format("Вещь по айди: %s не найдена", itemId)));
-            if (!comments.isEmpty()) {
-                item.setComments(comments);
-            }
-            return item;
+            itemDto = ItemMapper.toItemDtoWithBookingDtoForUser(item);
         }
+        setLatestComments(Map.of(item.getId(), itemDto));
+        return itemDto;
     }
 
     @Override
     public List<ItemDtoWithBooking> getAllItemsForOwner(Long userId, Pageable pageable) {
-        Map<Long, ItemDtoWithBooking> itemMap;
-        if (pageable == null) {
-            itemMap = itemRepository.findAllByOwnerId(userId).stream()
-                    .map(ItemMapper::toItemDtoWithBooking)
-                    .collect(Collectors.toMap(ItemDtoWithBooking::getId, Function.identity()));
-        } else {
-            itemMap = itemRepository.findAllByOwnerId(userId, pageable).stream()
-                    .map(ItemMapper::toItemDtoWithBooking)
-                    .collect(Collectors.toMap(ItemDtoWithBooking::getId, Function.identity()));
-        }
-        LocalDateTime time = LocalDateTime.now();
-        for (ItemDtoWithBooking item : itemMap.values()) {
-            Optional<Booking> last = bookingRepository.findFirstByItemIdAndStartLessThanEqualOrderByStartDesc(item.getId(), time);
-            Optional<Booking> next = bookingRepository.findFirstByItemIdAndStartAfterOrderByStartAsc(item.getId(), time);
-            List<CommentDto> comments = commentRepository.findAllCommentByItemId(item.getId()).stream()
-                    .map(CommentMapper::toCommentDto).collect(Collectors.toList());
-            if (last.isPresent() && !last.get().getStatus().equals(Status.REJECTED)) {
-                item.setLastBooking(BookingMapper.toBookingTwoFieldsDto(last.get(), last.get().getBooker().getId()));
-            } else {
-                item.setLastBooking(null);
-            }
-            if (next.isPresent() && !next.get().getStatus().equals(Status.REJECTED)) {
-                item.setNextBooking(BookingMapper.toBookingTwoFieldsDto(next.get(), next.get().getBooker().getId()));
-            } else {
-                item.setNextBooking(null);
-            }
-            if (!comments.isEmpty()) {
-                item.setComments(comments);
-            }
+        List<Item> owned = pageable == null
+                ? itemRepository.findAllByOwnerId(userId)
+                : itemRepository.findAllByOwnerId(userId, pageable);
+        Map<Long, ItemDtoWithBooking> itemMap = owned.stream()
+                .map(ItemMapper::toItemDtoWithBooking)
+                .collect(Collectors.toMap(ItemDtoWithBooking::getId, Function.identity()));
+        if (!itemMap.isEmpty()) {
+            loadBookingsAndComments(itemMap, owned, LocalDateTime.now());
         }
         List<ItemDtoWithBooking> items = new ArrayList<>();
         itemMap.entrySet().stream()
@@ -139,35 +119,167 @@ public class ItemServiceImpl implements ItemService {
     @Override
     public List<ItemDto> getSearchItems(String text, Pageable pageable) {
         if (text == null || text.isBlank()) return Collections.emptyList();
-        List<Item> search;
-        if (pageable == null) {
-            search = itemRepository.search(text);
-        } else {
-            search = itemRepository.findAll(text, pageable);
+        List<Long> ids = searchResultCache.get(text, pageable, () -> {
+            List<Long> found = itemSearchIndex.search(text);
+            if (pageable == null || pageable.isUnpaged()) return found;
+            int from = (int) Math.min(pageable.getOffset(), found.size());
+            return found.subList(from, Math.min(from + pageable.getPageSize(), found.size()));
+        });
+        return toSearchResult(ids, itemRepository.findAllById(ids));
+    }
+
+    /**
+     * Результаты поиска порциями по SEARCH_CHUNK_SIZE вещей: следующая порция читается из базы
+     * только после того, как подписчик запросил элементы сверх уже загруженных.
+     */
+    @Override
+    public Flux<ItemDto> streamSearchItems(String text) {
+        if (text == null || text.isBlank()) return Flux.empty();
+        return Flux.defer(() -> Flux.fromIterable(itemSearchIndex.search(text)))
+                .buffer(SEARCH_CHUNK_SIZE)
+                .concatMap(ids -> Mono.fromCallable(() -> toSearchResult(ids, itemRepository.findAllByIdIn(ids)))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .flatMapIterable(Function.identity()), 1);
+    }
+
+    private List<ItemDto> toSearchResult(List<Long> ids, List<Item> found) {
+        Map<Long, Item> items = found.stream()
+                .collect(Collectors.toMap(Item::getId, Function.identity()));
+        List<ItemDto> result = new ArrayList<>();
+        for (Long id : ids) {
+            if (items.containsKey(id)) {
+                result.add(ItemMapper.toItemDto(items.get(id)));
+            } else {
+                searchResultCache.invalidate(itemSearchIndex.remove(id));
+            }
         }
-        return search.stream().map(ItemMapper::toItemDto)
-                .collect(Collectors.toList());
+        return result;
     }
 
+    /**
+     * Календарь строится по индексу неотклонённых аренд без чтения аренд из базы.
+     * Индекс хранит только не закончившиеся аренды, поэтому календарь начинается не раньше текущего момента.
+     */
     @Override
-    public CommentDto createComment(CommentDto commentDto, Long itemId, Long userId) throws ValidationException, NotFoundException {
-        User user = userRepository.findById(userId).orElseThrow(() -> {
-            log.info("Пользователь {} не найден", userId);
-            return new NotFoundException(String.format("Пользователь %s не найден", userId));
-        });
+    public List<AvailabilityInterval> getAvailability(Long itemId, String from, String to) throws NotFoundException, ValidationException {
+        LocalDateTime start = parseAvailabilityBound(from);
+        LocalDateTime end = parseAvailabilityBound(to);
+        if (!start.isBefore(end)) {
+            log.info("Некорректный период календаря: {}, {}", from, to);
+            throw new ValidationException("Начало периода должно быть раньше конца");
+        }
+        if (!itemRepository.existsById(itemId)) {
+            log.info("Вещь по айди {} не найдена", itemId);
+            throw new NotFoundException(String.format("Вещь по айди %s не найдена!", itemId));
+        }
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        if (start.isBefore(now)) start = now;
+        if (!start.isBefore(end)) return Collections.emptyList();
+        return bookingIntervalIndex.forItem(itemId).availability(start, end);
+    }
+
+    private LocalDateTime parseAvailabilityBound(String value) throws ValidationException {
+        try {
+            return LocalDateTime.parse(value, DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss"));
+        } catch (DateTimeParseException e) {
+            log.info("Некорректная дата календаря: {}", value);
+            throw new ValidationException(String.format("Некорректная дата %s", value));
+        }
+    }
+
+    @Override
+    public List<CommentDto> getComments(Long itemId, Integer from, Integer size) throws NotFoundException, ValidationException {
+        if (from < 0 || size <= 0) {
+            log.info("Некорректные параметры страницы комментариев: {}, {}", from, size);
+            throw new ValidationException("Некорректные параметры страницы");
+        }
+        if (!itemRepository.existsById(itemId)) {
+            log.info("Вещь по айди {} не найдена", itemId);
+            throw new NotFoundException(String.format("Вещь по айди %s не найдена!", itemId));
+        }
+        return commentRepository.findDtosByItemId(itemId, PageRequest.of(from / size, size));
+    }
+
+    @Override
+    public CommentDto createComment(CommentDto commentDto, Long itemId, User user) throws ValidationException, NotFoundException {
         Item item = itemRepository.findById(itemId).orElseThrow(() -> {
             log.info("Вещь по айди {} не найдена", itemId);
             return new NotFoundException(String.format("Вещь по айди %s не найдена!", itemId));
         });
 
-        Optional<Booking> booking = bookingRepository.findFirstByBookerIdAndItemIdAndEndLessThanEqual(userId, itemId, LocalDateTime.now());
+        Optional<Booking> booking = bookingRepository.findFirstByBookerIdAndItemIdAndEndLessThanEqual(user.getId(), itemId, LocalDateTime.now());
         if (booking.isPresent() && !commentDto.getText().isEmpty()) {
-            return CommentMapper.toCommentDto(commentRepository.save(CommentMapper.toComment(commentDto, item, user)));
+            CommentDto comment = CommentMapper.toCommentDto(commentRepository.save(CommentMapper.toComment(commentDto, item, user)));
+            entityVersions.itemChanged(itemId);
+            return comment;
         } else {
             throw new ValidationException("Ошибка ввода данных!");
         }
     }
 
+    /**
+     * Вещь входит в карточку своего запроса, поэтому меняется версия и вещи, и запроса.
+     */
+    private ItemDto itemChanged(ItemDto item) {
+        entityVersions.itemChanged(item.getId());
+        if (item.getRequestId() != null) {
+            entityVersions.requestChanged(item.getRequestId());
+        }
+        return item;
+    }
+
+    private void loadBookingsAndComments(Map<Long, ItemDtoWithBooking> itemMap, List<Item> items, LocalDateTime time) {
+        setLatestComments(itemMap);
+        setLastAndNextBookings(itemMap, items, time);
+    }
+
+    private void setLatestComments(Map<Long, ItemDtoWithBooking> itemMap) {
+        for (CommentRow row : commentRepository.findLatestByItemIdIn(itemMap.keySet(), LATEST_COMMENTS)) {
+            ItemDtoWithBooking item = itemMap.get(row.getItemId());
+            item.getComments().add(new CommentDto(row.getId(), row.getText(), row.getAuthorName(), row.getCreated()));
+            item.setCommentCount(row.getTotal());
+        }
+    }
+
+    /**
+     * Аренды берутся из указателей вещи. Если ближайшая аренда уже началась, а BookingPointerRollover
+     * еще не сдвинул указатели, аренды такой вещи читаются запросом к bookings.
+     * Начало ближайшей аренды сообщается EntityVersions: в этот момент карточка владельца изменится без записи.
+     */
+    private void setLastAndNextBookings(Map<Long, ItemDtoWithBooking> itemMap, List<Item> items, LocalDateTime time) {
+        List<Long> stale = new ArrayList<>();
+        for (Item item : items) {
+            ItemDtoWithBooking itemDto = itemMap.get(item.getId());
+            itemDto.setLastBooking(null);
+            itemDto.setNextBooking(null);
+            if (item.getNextBooking() != null && !item.getNextBooking().getStart().isAfter(time)) {
+                stale.add(item.getId());
+                continue;
+            }
+            itemDto.setLastBooking(toBookingTwoFieldsDto(item.getLastBooking()));
+            itemDto.setNextBooking(toBookingTwoFieldsDto(item.getNextBooking()));
+            if (item.getNextBooking() != null) {
+                entityVersions.itemChangesAt(item.getId(), item.getNextBooking().getStart());
+            }
+        }
+        if (stale.isEmpty()) return;
+        for (BookingShort booking : bookingRepository.findLastAndNextByItemIdIn(stale, time)) {
+            BookingTwoFieldsDto bookingDto = booking.getStatus().equals(Status.REJECTED)
+                    ? null : BookingMapper.toBookingTwoFieldsDto(booking);
+            if (booking.getStart().isAfter(time)) {
+                itemMap.get(booking.getItemId()).setNextBooking(bookingDto);
+                entityVersions.itemChangesAt(booking.getItemId(), booking.getStart());
+            } else {
+                itemMap.get(booking.getItemId()).setLastBooking(bookingDto);
+            }
+        }
+    }
+
+    private BookingTwoFieldsDto toBookingTwoFieldsDto(Booking booking) {
+        if (booking == null || booking.getStatus() == Status.REJECTED) return null;
+        return BookingMapper.toBookingTwoFieldsDto(booking, booking.getBooker().getId());
+    }
+
     private void validateItemFromUser(ItemDto itemDto) throws ValidationException {
         if (itemDto.getName() == null || itemDto.getName().isBlank() || itemDto.getAvailable() == null ||
                 itemDto.getDescription() == null || itemDto.getDescription().isBlank()) {
@@ -177,10 +289,15 @@ public class ItemServiceImpl implements ItemService {
         }
     }
 
-    private void validateOwnerOfItem(long userId, long itemId) throws NotFoundException {
-        if (!itemRepository.findByIdAndOwnerId(itemId, userId).isPresent()) {
-            log.info("Пользователь c идентификатором {} не является владельцем вещи", userId);
-            throw new NotFoundException(String.format("Пользователь c идентификатором %s не является владельцем вещи", userId));
-        }
+    /**
+     * Вещь читается по id, чтобы попасть в кэш второго уровня, владелец сверяется в памяти.
+     */
+    private Item findOwnedItem(long userId, long itemId) throws NotFoundException {
+        return itemRepository.findById(itemId)
+                .filter(item -> item.getOwner() != null && item.getOwner().getId() == userId)
+                .orElseThrow(() -> {
+                    log.info("Пользователь c идентификатором {} не является владельцем вещи", userId);
+                    return new NotFoundException(String.format("Пользователь c идентификатором %s не является владельцем вещи", userId));
+                });
     }
 }
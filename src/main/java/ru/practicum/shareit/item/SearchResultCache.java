@@ -0,0 +1,112 @@
+package ru.practicum.shareit.item;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Кэш страниц поиска вещей: (текст в нижнем регистре, страница) -> идентификаторы вещей.
+ * При изменении вещи удаляются только запросы, текст которых входит в ее имя или описание
+ * до или после изменения. Попадания и вытеснения публикуются как cache.gets и cache.evictions,
+ * точечные удаления — как cache.invalidations.
+ */
+@Component
+@Slf4j
+public class SearchResultCache {
+    static final String NAME = "item-search";
+    private final Cache<Key, List<Long>> cache;
+    private final Counter invalidations;
+    private final AtomicLong generation = new AtomicLong();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public SearchResultCache(MeterRegistry meterRegistry,
+                             @Value("${shareit.search-cache.maximum-size:1000}") long maximumSize) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, NAME);
+        this.invalidations = Counter.builder("cache.invalidations")
+                .tag("cache", NAME)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Результат, посчитанный во время удаления, в кэш не кладется: он мог быть прочитан из индекса
+     * до изменения вещи.
+     */
+    public List<Long> get(String text, Pageable pageable, Supplier<List<Long>> search) {
+        Key key = pageable == null || pageable.isUnpaged()
+                ? new Key(normalize(text), 0, 0)
+                : new Key(normalize(text), pageable.getOffset(), pageable.getPageSize());
+        List<Long> ids = cache.getIfPresent(key);
+        if (ids != null) return ids;
+        long stamp = generation.get();
+        ids = List.copyOf(search.get());
+        lock.readLock().lock();
+        try {
+            if (generation.get() == stamp) {
+                cache.put(key, ids);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return ids;
+    }
+
+    /**
+     * Удаляет запросы, которые находят хотя бы один из текстов.
+     */
+    public void invalidate(Collection<String> texts) {
+        if (texts.isEmpty()) return;
+        lock.writeLock().lock();
+        try {
+            generation.incrementAndGet();
+            int removed = 0;
+            for (Key key : cache.asMap().keySet()) {
+                if (matchesAny(texts, key.getText()) && cache.asMap().remove(key) != null) {
+                    removed++;
+                }
+            }
+            if (removed > 0) {
+                invalidations.increment(removed);
+                log.debug("Из кэша поиска удалено запросов: {}", removed);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static boolean matchesAny(Collection<String> texts, String query) {
+        for (String text : texts) {
+            if (normalize(text).contains(query)) return true;
+        }
+        return false;
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    @Data
+    private static class Key {
+        private final String text;
+        private final long offset;
+        private final int size;
+    }
+}
@@ -0,0 +1,30 @@
+package ru.practicum.shareit.item.dto;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+/**
+ * Отрезок календаря вещи [start, end): свободный или занятый неотклонёнными арендами.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class AvailabilityInterval {
+    LocalDateTime start;
+    LocalDateTime end;
+    boolean free;
+
+    public static AvailabilityInterval free(LocalDateTime start, LocalDateTime end) {
+        return new AvailabilityInterval(start, end, true);
+    }
+
+    public static AvailabilityInterval busy(LocalDateTime start, LocalDateTime end) {
+        return new AvailabilityInterval(start, end, false);
+    }
+}
@@ -0,0 +1,20 @@
+package ru.practicum.shareit.item.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Комментарий из выборки последних комментариев по вещам вместе с общим числом комментариев вещи.
+ */
+public interface CommentRow {
+    Long getId();
+
+    Long getItemId();
+
+    String getText();
+
+    String getAuthorName();
+
+    LocalDateTime getCreated();
+
+    Long getTotal();
+}
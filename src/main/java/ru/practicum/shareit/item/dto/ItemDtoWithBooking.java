@@ -29,5 +29,9 @@ public class ItemDtoWithBooking {
     Boolean available;
     BookingTwoFieldsDto lastBooking;
     BookingTwoFieldsDto nextBooking;
+    /**
+     * Последние комментарии, не больше ItemServiceImpl.LATEST_COMMENTS; все — через GET /items/{id}/comments.
+     */
     List<CommentDto> comments;
+    long commentCount;
 }
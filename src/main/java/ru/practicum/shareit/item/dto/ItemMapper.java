@@ -26,7 +26,8 @@ public class ItemMapper {
                 item.isAvailable(),
                 new BookingTwoFieldsDto(),
                 new BookingTwoFieldsDto(),
-                new ArrayList<>()
+                new ArrayList<>(),
+                0
         );
     }
 
@@ -1,10 +1,18 @@
 package ru.practicum.shareit.request;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import ru.practicum.shareit.EntityVersions;
 import ru.practicum.shareit.exception.NotFoundException;
 import ru.practicum.shareit.exception.ValidationException;
 import ru.practicum.shareit.request.dto.ItemRequestDto;
+import ru.practicum.shareit.user.Caller;
+import ru.practicum.shareit.user.User;
 
 import java.util.Collections;
 import java.util.List;
@@ -18,35 +26,54 @@ import java.util.Optional;
 @RequestMapping(path = "/requests")
 public class ItemRequestController {
     private final ItemRequestService itemRequestService;
+    private final EntityVersions entityVersions;
     private static final String X_SHARER_USER_ID = "X-Sharer-User-Id";
+    private static final String X_HAS_NEXT = "X-Has-Next";
 
-    public ItemRequestController(ItemRequestService itemRequestService) {
+    public ItemRequestController(ItemRequestService itemRequestService, EntityVersions entityVersions) {
         this.itemRequestService = itemRequestService;
+        this.entityVersions = entityVersions;
     }
 
     @PostMapping
     ItemRequestDto createRequest(@RequestBody ItemRequestDto itemRequestDto,
-                                 @RequestHeader(value = X_SHARER_USER_ID) Long userId) throws NotFoundException, ValidationException {
-        return itemRequestService.createRequest(itemRequestDto, userId);
+                                 @Caller User caller) throws ValidationException {
+        return itemRequestService.createRequest(itemRequestDto, caller);
     }
 
     @GetMapping
-    List<ItemRequestDto> getRequestsWithAnswers(@RequestHeader(value = X_SHARER_USER_ID) Long userId) throws NotFoundException {
-        return itemRequestService.getRequestsWithAnswers(userId);
+    List<ItemRequestDto> getRequestsWithAnswers(@Caller User caller) {
+        return itemRequestService.getRequestsWithAnswers(caller);
     }
 
+    /**
+     * X-Has-Next говорит, есть ли следующая страница; общее число запросов не считается.
+     */
     @GetMapping("/all")
-    List<ItemRequestDto> getAllRequests(@RequestHeader(value = X_SHARER_USER_ID) Long userId,
-                                        @RequestParam Optional<Integer> from,
-                                        @RequestParam Optional<Integer> size) {
-        if (from.isEmpty() || size.isEmpty()) return Collections.emptyList();
-        return itemRequestService.getAllRequests(userId, from.get(), size.get());
+    ResponseEntity<List<ItemRequestDto>> getAllRequests(@RequestHeader(value = X_SHARER_USER_ID) Long userId,
+                                                        @RequestParam Optional<Integer> from,
+                                                        @RequestParam Optional<Integer> size) {
+        if (from.isEmpty() || size.isEmpty()) return ResponseEntity.ok(Collections.emptyList());
+        Slice<ItemRequestDto> requests = itemRequestService.getAllRequests(userId, from.get(), size.get());
+        return ResponseEntity.ok()
+                .header(X_HAS_NEXT, String.valueOf(requests.hasNext()))
+                .body(requests.getContent());
     }
 
+    /**
+     * Если If-None-Match совпадает с текущей версией запроса, отвечает 304 без обращения к базе.
+     * ETag ставится только на успешный ответ.
+     */
     @GetMapping("/{requestId}")
-    ItemRequestDto getRequestById(@RequestHeader(value = X_SHARER_USER_ID) Long userId,
-                                  @PathVariable Long requestId) throws NotFoundException, ValidationException {
-        return itemRequestService.getRequestById(userId, requestId);
+    ResponseEntity<ItemRequestDto> getRequestById(@Caller User caller,
+                                                  @PathVariable Long requestId,
+                                                  WebRequest request) throws NotFoundException {
+        String eTag = entityVersions.requestTag(requestId, caller.getId());
+        if (EntityVersions.matches(request.getHeaderValues(HttpHeaders.IF_NONE_MATCH), eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+        ItemRequestDto itemRequest = itemRequestService.getRequestById(requestId);
+        return ResponseEntity.ok().eTag(eTag).body(itemRequest);
     }
 
 }
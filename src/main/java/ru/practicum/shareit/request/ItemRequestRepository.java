@@ -1,7 +1,7 @@
 package ru.practicum.shareit.request;
 
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.repository.PagingAndSortingRepository;
 
@@ -10,7 +10,10 @@ import java.util.List;
 public interface ItemRequestRepository extends JpaRepository<ItemRequest, Long>, PagingAndSortingRepository<ItemRequest, Long> {
     List<ItemRequest> findAllByRequestorId(Long userId);
 
-    Page<ItemRequest> findAllByRequestorIdNot(Long userId, Pageable pageable);
+    /**
+     * Slice вместо Page: без COUNT по всем чужим запросам, следующая страница определяется по лишней строке.
+     */
+    Slice<ItemRequest> findAllByRequestorIdNot(Long userId, Pageable pageable);
 
     List<ItemRequest> findAllById(Long requestId);
 }
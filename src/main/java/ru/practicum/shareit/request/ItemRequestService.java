@@ -1,17 +1,19 @@
 package ru.practicum.shareit.request;
 
+import org.springframework.data.domain.Slice;
 import ru.practicum.shareit.exception.NotFoundException;
 import ru.practicum.shareit.exception.ValidationException;
 import ru.practicum.shareit.request.dto.ItemRequestDto;
+import ru.practicum.shareit.user.User;
 
 import java.util.List;
 
 public interface ItemRequestService {
-    ItemRequestDto createRequest(ItemRequestDto itemRequestDto, Long userId) throws NotFoundException, ValidationException;
+    ItemRequestDto createRequest(ItemRequestDto itemRequestDto, User user) throws ValidationException;
 
-    List<ItemRequestDto> getRequestsWithAnswers(Long userId) throws NotFoundException;
+    List<ItemRequestDto> getRequestsWithAnswers(User user);
 
-    List<ItemRequestDto> getAllRequests(Long userId, Integer from, Integer size);
+    Slice<ItemRequestDto> getAllRequests(Long userId, Integer from, Integer size);
 
-    ItemRequestDto getRequestById(Long userId, Long requestId) throws NotFoundException;
+    ItemRequestDto getRequestById(Long requestId) throws NotFoundException;
 }
@@ -2,8 +2,10 @@ package ru.practicum.shareit.request;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import ru.practicum.shareit.EntityVersions;
 import ru.practicum.shareit.exception.NotFoundException;
 import ru.practicum.shareit.exception.ValidationException;
 import ru.practicum.shareit.item.ItemRepository;
@@ -12,97 +14,75 @@ import ru.practicum.shareit.item.dto.ItemMapper;
 import ru.practicum.shareit.request.dto.ItemRequestDto;
 import ru.practicum.shareit.request.dto.ItemRequestMapper;
 import ru.practicum.shareit.user.User;
-import ru.practicum.shareit.user.UserRepository;
 
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class ItemRequestServiceImpl implements ItemRequestService {
     private final ItemRepository itemRepository;
-    private final UserRepository userRepository;
     private final ItemRequestRepository requestRepository;
+    private final EntityVersions entityVersions;
 
-    public ItemRequestServiceImpl(ItemRepository itemRepository, UserRepository userRepository, ItemRequestRepository requestRepository) {
+    public ItemRequestServiceImpl(ItemRepository itemRepository, ItemRequestRepository requestRepository,
+                                  EntityVersions entityVersions) {
         this.itemRepository = itemRepository;
-        this.userRepository = userRepository;
         this.requestRepository = requestRepository;
+        this.entityVersions = entityVersions;
     }
 
     @Override
-    public ItemRequestDto createRequest(ItemRequestDto itemRequestDto, Long userId) throws NotFoundException, ValidationException {
-        User user = userRepository.findById(userId).orElseThrow(() -> {
-            log.info("Пользователь {} не найден", userId);
-            return new NotFoundException(String.format("Пользователь не найден %s!", userId));
-        });
+    public ItemRequestDto createRequest(ItemRequestDto itemRequestDto, User user) throws ValidationException {
         if (itemRequestDto.getDescription() == null) {
             log.info("Описание не заполнено");
             throw new ValidationException("Описание не заполнено!");
         }
-        return ItemRequestMapper.toItemRequestDto(requestRepository.save(ItemRequestMapper.toItemRequest(itemRequestDto, user)));
+        ItemRequestDto request = ItemRequestMapper.toItemRequestDto(requestRepository.save(ItemRequestMapper.toItemRequest(itemRequestDto, user)));
+        entityVersions.requestChanged(request.getId());
+        return request;
     }
 
     @Override
-    public List<ItemRequestDto> getRequestsWithAnswers(Long userId) throws NotFoundException {
-        userRepository.findById(userId).orElseThrow(() -> {
-            log.info("Пользователь {} не найден", userId);
-            return new NotFoundException(String.format("Пользователь не найден %s!", userId));
-        });
-        List<ItemRequestDto> itemRequests = requestRepository.findAllByRequestorId(userId).stream()
+    public List<ItemRequestDto> getRequestsWithAnswers(User user) {
+        List<ItemRequestDto> itemRequests = requestRepository.findAllByRequestorId(user.getId()).stream()
                 .map(ItemRequestMapper::toItemRequestWithItemsDto)
                 .collect(Collectors.toList());
-        List<ItemDto> items = itemRepository.findAll().stream()
-                .map(ItemMapper::toItemDto)
-                .collect(Collectors.toList());
-        for (ItemRequestDto itemRequestDto : itemRequests) {
-            for (ItemDto itemDto : items) {
-                if (itemDto.getRequestId() != null && itemRequestDto.getId() == itemDto.getRequestId()) {
-                    itemRequestDto.setItems(List.of(itemDto));
-                }
-            }
-        }
+        setAnswers(itemRequests);
         return itemRequests;
     }
 
     @Override
-    public List<ItemRequestDto> getAllRequests(Long userId, Integer from, Integer size) {
+    public Slice<ItemRequestDto> getAllRequests(Long userId, Integer from, Integer size) {
         Sort sortByCreated = Sort.by(Sort.Direction.ASC, "created");
-        List<ItemRequestDto> itemRequests = requestRepository.findAllByRequestorIdNot(userId, PageRequest.of(from, size, sortByCreated)).getContent().stream()
-                .map(ItemRequestMapper::toItemRequestDto).collect(Collectors.toList());
-        List<ItemDto> items = itemRepository.findAll().stream()
-                .map(ItemMapper::toItemDto)
-                .collect(Collectors.toList());
-        for (ItemRequestDto itemRequestDto : itemRequests) {
-            for (ItemDto itemDto : items) {
-                if (itemDto.getRequestId() != null && itemRequestDto.getId() == itemDto.getRequestId()) {
-                    itemRequestDto.setItems(List.of(itemDto));
-                }
-            }
-        }
+        Slice<ItemRequestDto> itemRequests = requestRepository.findAllByRequestorIdNot(userId, PageRequest.of(from, size, sortByCreated))
+                .map(ItemRequestMapper::toItemRequestDto);
+        setAnswers(itemRequests.getContent());
         return itemRequests;
     }
 
     @Override
-    public ItemRequestDto getRequestById(Long userId, Long requestId) throws NotFoundException {
-        userRepository.findById(userId).orElseThrow(() -> {
-            log.info("Пользователь {} не найден", userId);
-            return new NotFoundException(String.format("Пользователь не найден!", userId));
-        });
-        requestRepository.findById(requestId).orElseThrow(() -> {
+    public ItemRequestDto getRequestById(Long requestId) throws NotFoundException {
+        ItemRequestDto itemRequest = ItemRequestMapper.toItemRequestWithItemsDto(requestRepository.findById(requestId).orElseThrow(() -> {
             log.info("Запрос на вещь {} не найден", requestId);
             return new NotFoundException(String.format("Запрос на вещь не найден!", requestId));
-        });
-        ItemRequestDto itemRequest = ItemRequestMapper.toItemRequestWithItemsDto(requestRepository.findById(requestId).get());
-        List<ItemDto> items = itemRepository.findAll().stream()
+        }));
+        setAnswers(List.of(itemRequest));
+        return itemRequest;
+    }
+
+    private void setAnswers(List<ItemRequestDto> itemRequests) {
+        if (itemRequests.isEmpty()) return;
+        Map<Long, List<ItemDto>> answers = itemRepository.findAllByRequestIdIn(itemRequests.stream()
+                        .map(ItemRequestDto::getId)
+                        .collect(Collectors.toSet())).stream()
                 .map(ItemMapper::toItemDto)
-                .collect(Collectors.toList());
-        for (ItemDto itemDto : items) {
-            if (itemDto.getRequestId() != null && itemRequest.getId() == itemDto.getRequestId()) {
-                itemRequest.setItems(List.of(itemDto));
+                .collect(Collectors.groupingBy(ItemDto::getRequestId));
+        for (ItemRequestDto itemRequestDto : itemRequests) {
+            if (answers.containsKey(itemRequestDto.getId())) {
+                itemRequestDto.setItems(answers.get(itemRequestDto.getId()));
             }
         }
-        return itemRequest;
     }
 }
-
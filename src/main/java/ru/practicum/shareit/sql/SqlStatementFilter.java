@@ -0,0 +1,75 @@
+package ru.practicum.shareit.sql;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Открывает счетчик SQL на время HTTP-запроса, публикует shareit.sql.statements и shareit.sql.time
+ * по шаблону адреса и предупреждает, когда запросов больше max-statements или один запрос повторен
+ * max-repeats раз и больше — так выглядит N+1. Без реестра метрик (срезы @WebMvcTest) пишет в глобальный реестр.
+ */
+@Component
+@Slf4j
+public class SqlStatementFilter extends OncePerRequestFilter {
+    private final MeterRegistry meterRegistry;
+    private final int maxStatements;
+    private final int maxRepeats;
+
+    public SqlStatementFilter(ObjectProvider<MeterRegistry> meterRegistry,
+                              @Value("${shareit.sql.max-statements:20}") int maxStatements,
+                              @Value("${shareit.sql.max-repeats:5}") int maxRepeats) {
+        this.meterRegistry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+        this.maxStatements = maxStatements;
+        this.maxRepeats = maxRepeats;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        SqlStatements statements = SqlStatements.begin();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            SqlStatements.end();
+            report(request, statements);
+        }
+    }
+
+    private void report(HttpServletRequest request, SqlStatements statements) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+        DistributionSummary.builder("shareit.sql.statements")
+                .tag("method", request.getMethod())
+                .tag("uri", uri)
+                .register(meterRegistry)
+                .record(statements.getCount());
+        Timer.builder("shareit.sql.time")
+                .tag("method", request.getMethod())
+                .tag("uri", uri)
+                .register(meterRegistry)
+                .record(statements.getJdbcNanos(), TimeUnit.NANOSECONDS);
+        if (statements.getCount() > maxStatements) {
+            log.warn("{} {}: {} SQL-запросов за {} мс", request.getMethod(), uri, statements.getCount(),
+                    TimeUnit.NANOSECONDS.toMillis(statements.getJdbcNanos()));
+        }
+        if (statements.getMaxRepeats() >= maxRepeats) {
+            log.warn("{} {}: запрос повторен {} раз, возможен N+1: {}", request.getMethod(), uri,
+                    statements.getMaxRepeats(), statements.getMostRepeated());
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package ru.practicum.shareit.sql;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Заголовки X-Sql-Statements и X-Sql-Time-Ms с числом и временем SQL-запросов, выполненных до записи тела ответа.
+ */
+@ControllerAdvice
+public class SqlStatementHeaders implements ResponseBodyAdvice<Object> {
+    public static final String STATEMENTS = "X-Sql-Statements";
+    public static final String TIME = "X-Sql-Time-Ms";
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        SqlStatements statements = SqlStatements.current();
+        if (statements != null) {
+            response.getHeaders().set(STATEMENTS, String.valueOf(statements.getCount()));
+            response.getHeaders().set(TIME, String.valueOf(TimeUnit.NANOSECONDS.toMillis(statements.getJdbcNanos())));
+        }
+        return body;
+    }
+}
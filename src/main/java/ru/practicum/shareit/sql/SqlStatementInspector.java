@@ -0,0 +1,18 @@
+package ru.practicum.shareit.sql;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Считает SQL-запросы текущего HTTP-запроса, текст запроса не меняет.
+ * Подключается через hibernate.session_factory.statement_inspector.
+ */
+public class SqlStatementInspector implements StatementInspector {
+    @Override
+    public String inspect(String sql) {
+        SqlStatements statements = SqlStatements.current();
+        if (statements != null) {
+            statements.record(sql);
+        }
+        return sql;
+    }
+}
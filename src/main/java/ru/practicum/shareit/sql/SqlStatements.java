@@ -0,0 +1,70 @@
+package ru.practicum.shareit.sql;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * SQL-запросы текущего HTTP-запроса: число, время JDBC и повторы одинаковых по форме запросов.
+ * Привязаны к потоку запроса, запросы из других потоков (асинхронные ответы, Flux) не учитываются.
+ */
+public final class SqlStatements {
+    private static final ThreadLocal<SqlStatements> CURRENT = new ThreadLocal<>();
+    private static final Pattern IN_LIST = Pattern.compile("\\(\\s*\\?(\\s*,\\s*\\?)*\\s*\\)");
+
+    private final Map<String, Integer> shapes = new HashMap<>();
+    private int count;
+    private long jdbcNanos;
+    private String mostRepeated;
+    private int maxRepeats;
+
+    private SqlStatements() {
+    }
+
+    static SqlStatements begin() {
+        SqlStatements statements = new SqlStatements();
+        CURRENT.set(statements);
+        return statements;
+    }
+
+    static void end() {
+        CURRENT.remove();
+    }
+
+    static SqlStatements current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Форма запроса — текст без длины списков IN, чтобы пакеты разного размера считались одним запросом.
+     */
+    void record(String sql) {
+        count++;
+        String shape = IN_LIST.matcher(sql).replaceAll("(?)");
+        int repeats = shapes.merge(shape, 1, Integer::sum);
+        if (repeats > maxRepeats) {
+            maxRepeats = repeats;
+            mostRepeated = shape;
+        }
+    }
+
+    void addJdbcTime(long nanos) {
+        jdbcNanos += nanos;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getJdbcNanos() {
+        return jdbcNanos;
+    }
+
+    public int getMaxRepeats() {
+        return maxRepeats;
+    }
+
+    public String getMostRepeated() {
+        return mostRepeated;
+    }
+}
@@ -0,0 +1,38 @@
+package ru.practicum.shareit.sql;
+
+import org.hibernate.BaseSessionEventListener;
+
+/**
+ * Время выполнения JDBC-запросов и пакетов текущего HTTP-запроса.
+ * Создается на каждую сессию через hibernate.session.events.auto.
+ */
+public class SqlTimingListener extends BaseSessionEventListener {
+    private long start;
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        start = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        addElapsed();
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        start = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        addElapsed();
+    }
+
+    private void addElapsed() {
+        SqlStatements statements = SqlStatements.current();
+        if (statements != null) {
+            statements.addJdbcTime(System.nanoTime() - start);
+        }
+    }
+}
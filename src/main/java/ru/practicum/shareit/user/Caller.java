@@ -0,0 +1,17 @@
+package ru.practicum.shareit.user;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Параметр контроллера типа User, который заполняется пользователем из X-Sharer-User-Id
+ * до вызова метода. Несуществующий пользователь дает 404, метод при этом не вызывается.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Caller {
+}
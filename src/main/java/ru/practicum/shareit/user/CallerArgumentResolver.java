@@ -0,0 +1,53 @@
+package ru.practicum.shareit.user;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.MethodParameter;
+import org.springframework.web.bind.MissingRequestHeaderException;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import ru.practicum.shareit.exception.NotFoundException;
+
+/**
+ * Достает пользователя из X-Sharer-User-Id и кладет в атрибут запроса:
+ * в пределах одного HTTP-запроса пользователь проверяется один раз.
+ * findById обслуживается регионом users кэша второго уровня Hibernate, поэтому повторные запросы
+ * от того же пользователя не обращаются к базе.
+ */
+@Slf4j
+public class CallerArgumentResolver implements HandlerMethodArgumentResolver {
+    public static final String X_SHARER_USER_ID = "X-Sharer-User-Id";
+    static final String ATTRIBUTE = CallerArgumentResolver.class.getName() + ".CALLER";
+    private final UserRepository userRepository;
+
+    public CallerArgumentResolver(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return parameter.hasParameterAnnotation(Caller.class) && User.class.equals(parameter.getParameterType());
+    }
+
+    @Override
+    public User resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                NativeWebRequest webRequest, WebDataBinderFactory binderFactory) throws Exception {
+        User caller = (User) webRequest.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (caller != null) {
+            return caller;
+        }
+        String header = webRequest.getHeader(X_SHARER_USER_ID);
+        if (header == null) {
+            throw new MissingRequestHeaderException(X_SHARER_USER_ID, parameter);
+        }
+        Long userId = Long.valueOf(header.trim());
+        caller = userRepository.findById(userId).orElseThrow(() -> {
+            log.info("Пользователь {} не найден", userId);
+            return new NotFoundException(String.format("Пользователь %s не найден", userId));
+        });
+        webRequest.setAttribute(ATTRIBUTE, caller, RequestAttributes.SCOPE_REQUEST);
+        return caller;
+    }
+}
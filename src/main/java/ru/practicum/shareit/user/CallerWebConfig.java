@@ -0,0 +1,24 @@
+package ru.practicum.shareit.user;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Подключает {@link CallerArgumentResolver} для параметров с {@link Caller}.
+ */
+@Configuration
+public class CallerWebConfig implements WebMvcConfigurer {
+    private final UserRepository userRepository;
+
+    public CallerWebConfig(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+        resolvers.add(new CallerArgumentResolver(userRepository));
+    }
+}
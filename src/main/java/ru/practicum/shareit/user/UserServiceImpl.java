@@ -3,12 +3,16 @@ package ru.practicum.shareit.user;
 import lombok.extern.slf4j.Slf4j;
 import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.stereotype.Service;
+import ru.practicum.shareit.EntityVersions;
+import ru.practicum.shareit.booking.BookingIntervalIndex;
 import ru.practicum.shareit.exception.ConflictException;
 import ru.practicum.shareit.exception.NotFoundException;
 import ru.practicum.shareit.exception.ValidationException;
+import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.user.dto.UserDto;
 import ru.practicum.shareit.user.dto.UserMapper;
 
+import javax.persistence.EntityManagerFactory;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -17,9 +21,16 @@ import java.util.stream.Collectors;
 @Slf4j
 public class UserServiceImpl implements UserService {
     private final UserRepository userRepository;
+    private final EntityManagerFactory entityManagerFactory;
+    private final EntityVersions entityVersions;
+    private final BookingIntervalIndex bookingIntervalIndex;
 
-    public UserServiceImpl(UserRepository userRepository) {
+    public UserServiceImpl(UserRepository userRepository, EntityManagerFactory entityManagerFactory,
+                           EntityVersions entityVersions, BookingIntervalIndex bookingIntervalIndex) {
         this.userRepository = userRepository;
+        this.entityManagerFactory = entityManagerFactory;
+        this.entityVersions = entityVersions;
+        this.bookingIntervalIndex = bookingIntervalIndex;
     }
 
     @Override
@@ -35,7 +46,10 @@ public class UserServiceImpl implements UserService {
     @Override
     public UserDto updateUser(UserDto userDto, Long id) throws ConflictException {
         validateDuplicationEmailUser(userDto, id);
-        return UserMapper.toUserDto(userRepository.save(UserMapper.toUserWithBlankFields(userDto, userRepository.findById(id).get())));
+        User user = userRepository.save(UserMapper.toUserWithBlankFields(userDto, userRepository.findById(id).get()));
+        // Имя пользователя показывается в комментариях любых вещей.
+        entityVersions.allChanged();
+        return UserMapper.toUserDto(user);
     }
 
     @Override
@@ -53,6 +67,11 @@ public class UserServiceImpl implements UserService {
     @Override
     public void deleteUserById(Long id) {
         userRepository.deleteById(id);
+        // Вещи пользователя удаляются каскадом в базе, а у чужих вещей обнуляются указатели на его аренды.
+        entityManagerFactory.getCache().evict(Item.class);
+        // Аренды пользователя и аренды его вещей тоже удалены каскадом, иначе они остались бы занятыми в индексе.
+        bookingIntervalIndex.invalidateAll();
+        entityVersions.allChanged();
     }
 
     private void validateEmail(UserDto userDto) throws ValidationException {
@@ -3,8 +3,20 @@ DROP TABLE IF EXISTS requests cascade;
 DROP TABLE IF EXISTS items cascade;
 DROP TABLE IF EXISTS bookings cascade;
 DROP TABLE IF EXISTS comments cascade;
+DROP SEQUENCE IF EXISTS users_seq;
+DROP SEQUENCE IF EXISTS requests_seq;
+DROP SEQUENCE IF EXISTS items_seq;
+DROP SEQUENCE IF EXISTS bookings_seq;
+DROP SEQUENCE IF EXISTS comments_seq;
+
+CREATE SEQUENCE IF NOT EXISTS users_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS requests_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS items_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS bookings_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS comments_seq START WITH 1 INCREMENT BY 50;
+
 CREATE TABLE IF NOT EXISTS users (
-  id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+  id BIGINT DEFAULT nextval('users_seq') NOT NULL,
   name VARCHAR(255) NOT NULL,
   email VARCHAR(512) NOT NULL,
   CONSTRAINT pk_user PRIMARY KEY (id),
@@ -12,7 +24,7 @@ CREATE TABLE IF NOT EXISTS users (
 );
 
 CREATE TABLE IF NOT EXISTS requests (
-  id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+  id BIGINT DEFAULT nextval('requests_seq') NOT NULL,
   description TEXT,
   requestor_id BIGINT REFERENCES users (id) ON DELETE CASCADE,
   created TIMESTAMP WITHOUT TIME ZONE,
@@ -20,27 +32,36 @@ CREATE TABLE IF NOT EXISTS requests (
 );
 
 CREATE TABLE IF NOT EXISTS items (
-  id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+  id BIGINT DEFAULT nextval('items_seq') NOT NULL,
   name VARCHAR(255) NOT NULL,
   description TEXT,
   is_avaliable BOOLEAN NOT NULL,
   owner_id BIGINT REFERENCES users (id) ON DELETE CASCADE,
   request_id BIGINT REFERENCES requests (id),
+  last_booking_id BIGINT,
+  next_booking_id BIGINT,
+  version BIGINT DEFAULT 0 NOT NULL,
   CONSTRAINT pk_item PRIMARY KEY (id)
 );
 
+CREATE INDEX IF NOT EXISTS idx_items_request_id ON items (request_id);
+
 CREATE TABLE IF NOT EXISTS bookings (
-  id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+  id BIGINT DEFAULT nextval('bookings_seq') NOT NULL,
   start_date TIMESTAMP WITHOUT TIME ZONE,
   end_date TIMESTAMP WITHOUT TIME ZONE,
   item_id BIGINT REFERENCES items (id) ON DELETE CASCADE,
   booker_id BIGINT REFERENCES users (id) ON DELETE CASCADE,
   status VARCHAR(25),
+  version BIGINT DEFAULT 0 NOT NULL,
   CONSTRAINT pk_booking PRIMARY KEY (id)
 );
 
+ALTER TABLE items ADD CONSTRAINT fk_items_last_booking FOREIGN KEY (last_booking_id) REFERENCES bookings (id) ON DELETE SET NULL;
+ALTER TABLE items ADD CONSTRAINT fk_items_next_booking FOREIGN KEY (next_booking_id) REFERENCES bookings (id) ON DELETE SET NULL;
+
 CREATE TABLE IF NOT EXISTS comments (
-  id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+  id BIGINT DEFAULT nextval('comments_seq') NOT NULL,
   text TEXT,
   item_id BIGINT REFERENCES items (id) ON DELETE CASCADE,
   author_id BIGINT REFERENCES users (id) ON DELETE CASCADE,
@@ -48,4 +69,11 @@ CREATE TABLE IF NOT EXISTS comments (
   CONSTRAINT pk_comment PRIMARY KEY (id)
 );
 
-
+CREATE INDEX IF NOT EXISTS idx_items_owner_id ON items (owner_id);
+CREATE INDEX IF NOT EXISTS idx_items_next_booking_id ON items (next_booking_id);
+CREATE INDEX IF NOT EXISTS idx_comments_item_created ON comments (item_id, created DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_bookings_booker_start ON bookings (booker_id, start_date DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_bookings_booker_status_start ON bookings (booker_id, status, start_date DESC);
+CREATE INDEX IF NOT EXISTS idx_bookings_booker_item_end ON bookings (booker_id, item_id, end_date);
+CREATE INDEX IF NOT EXISTS idx_bookings_item_start ON bookings (item_id, start_date DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_bookings_item_waiting ON bookings (item_id, start_date DESC) WHERE status = 'WAITING';
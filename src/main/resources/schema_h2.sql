@@ -3,6 +3,16 @@ drop table if exists requests cascade;
 drop table if exists items cascade;
 drop table if exists bookings cascade;
 drop table if exists comments cascade;
+drop sequence if exists users_seq;
+drop sequence if exists requests_seq;
+drop sequence if exists items_seq;
+drop sequence if exists bookings_seq;
+drop sequence if exists comments_seq;
+create sequence if not exists users_seq start with 1 increment by 50;
+create sequence if not exists requests_seq start with 1 increment by 50;
+create sequence if not exists items_seq start with 1 increment by 50;
+create sequence if not exists bookings_seq start with 1 increment by 50;
+create sequence if not exists comments_seq start with 1 increment by 50;
 create table if not exists users (
   id bigint not null,
   name varchar(255) not null,
@@ -29,6 +39,9 @@ create table if not exists items (
   is_avaliable boolean not null,
   owner_id bigint,
   request_id bigint,
+  last_booking_id bigint,
+  next_booking_id bigint,
+  version bigint default 0 not null,
   foreign key (owner_id)
   references users (id) on delete cascade,
   foreign key (request_id)
@@ -36,6 +49,7 @@ create table if not exists items (
   constraint pk_item
     primary key (id)
 );
+create index if not exists idx_items_request_id on items (request_id);
 create table if not exists bookings (
   id bigint not null,
   start_date timestamp,
@@ -43,13 +57,18 @@ create table if not exists bookings (
   item_id bigint,
   booker_id bigint,
   status varchar(25),
-  foreign key (item_id)
+  version bigint default 0 not null,
+  constraint fk_bookings_item foreign key (item_id)
   references items (id) on delete cascade,
-  foreign key (booker_id)
+  constraint fk_bookings_booker foreign key (booker_id)
   references users (id) on delete cascade,
   constraint pk_booking
     primary key (id)
 );
+alter table items add constraint fk_items_last_booking
+  foreign key (last_booking_id) references bookings (id) on delete set null;
+alter table items add constraint fk_items_next_booking
+  foreign key (next_booking_id) references bookings (id) on delete set null;
 create table if not exists comments (
   id bigint not null,
   text clob,
@@ -63,3 +82,12 @@ create table if not exists comments (
   constraint pk_comment
     primary key (id)
 );
+
+create index if not exists idx_items_owner_id on items (owner_id);
+create index if not exists idx_items_next_booking_id on items (next_booking_id);
+create index if not exists idx_comments_item_created on comments (item_id, created desc, id desc);
+create index if not exists idx_bookings_booker_start on bookings (booker_id, start_date desc, id desc);
+create index if not exists idx_bookings_booker_status_start on bookings (booker_id, status, start_date desc);
+create index if not exists idx_bookings_booker_item_end on bookings (booker_id, item_id, end_date);
+create index if not exists idx_bookings_item_start on bookings (item_id, start_date desc, id desc);
+create index if not exists idx_bookings_item_status_start on bookings (item_id, status, start_date desc);
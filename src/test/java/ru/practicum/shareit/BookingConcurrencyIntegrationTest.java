@@ -0,0 +1,192 @@
+package ru.practicum.shareit;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.practicum.shareit.booking.BookingRepository;
+import ru.practicum.shareit.booking.BookingService;
+import ru.practicum.shareit.booking.dto.BookingDtoRequest;
+import ru.practicum.shareit.booking.dto.Status;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.exception.ConflictException;
+import ru.practicum.shareit.exception.ValidationException;
+import ru.practicum.shareit.user.User;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:booking-concurrency")
+public class BookingConcurrencyIntegrationTest {
+    private static final int FLIPS = 50;
+    private static final int CREATES = 25;
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+    private static final User BOOKER = new User(3L, "other", "other@other.com");
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Test
+    public void concurrentApproveOfSameBookingSucceedsOnce() throws Exception {
+        int threads = 8;
+        AtomicInteger approved = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            tasks.add(() -> {
+                try {
+                    bookingService.approveBooking(3L, true, 1L);
+                    approved.incrementAndGet();
+                } catch (ValidationException e) {
+                    rejected.incrementAndGet();
+                }
+                return null;
+            });
+        }
+        runConcurrently(tasks);
+
+        assertThat(approved.get()).isEqualTo(1);
+        assertThat(rejected.get()).isEqualTo(threads - 1);
+        Booking booking = bookingRepository.findById(3L).get();
+        assertThat(booking.getStatus()).isEqualTo(Status.APPROVED);
+        assertThat(booking.getVersion()).isEqualTo(1L);
+    }
+
+    @Test
+    public void statusFlipsAreNotLostUnderContention() throws Exception {
+        // аренды 1, 2, 6 относятся к одной вещи 3, аренды 8, 4, 7 — к разным вещам
+        long sameItem = flipConcurrently(Map.of(1L, 2L, 2L, 2L, 6L, 2L));
+        long differentItems = flipConcurrently(Map.of(8L, 1L, 4L, 2L, 7L, 4L));
+        log.info("Смена статуса, {} операций: одна вещь {} мс, разные вещи {} мс",
+                3 * FLIPS, sameItem, differentItems);
+    }
+
+    @Test
+    public void concurrentOverlappingCreatesOnSameItemSucceedOnce() throws Exception {
+        int threads = 8;
+        LocalDateTime base = LocalDateTime.now().plusDays(10).withNano(0);
+        AtomicInteger created = new AtomicInteger();
+        AtomicInteger conflicts = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            // все интервалы пересекаются с [base + 7 мин, base + 2 ч)
+            LocalDateTime start = base.plusMinutes(i);
+            tasks.add(() -> {
+                try {
+                    bookingService.createBooking(request(5L, start, base.plusHours(2)), BOOKER);
+                    created.incrementAndGet();
+                } catch (ConflictException e) {
+                    conflicts.incrementAndGet();
+                }
+                return null;
+            });
+        }
+        runConcurrently(tasks);
+
+        assertThat(created.get()).isEqualTo(1);
+        assertThat(conflicts.get()).isEqualTo(threads - 1);
+        assertThat(bookingRepository
+                .findAllByItemIdAndStatusInAndEndAfter(5L, List.of(Status.WAITING, Status.APPROVED), base).stream()
+                .filter(booking -> booking.getStart().isBefore(base.plusHours(2))))
+                .hasSize(1);
+    }
+
+    @Test
+    public void createThroughputOnSameItemAgainstDifferentItems() throws Exception {
+        // у вещей 1, 2, 4, 5 разные владельцы, но ни одна не принадлежит бронирующему пользователю 3
+        List<Long> items = List.of(1L, 2L, 4L, 5L);
+        long sameItem = createConcurrently(List.of(5L, 5L, 5L, 5L), LocalDateTime.now().plusDays(20).withNano(0));
+        long differentItems = createConcurrently(items, LocalDateTime.now().plusDays(40).withNano(0));
+        log.info("Создание аренд, {} операций: одна вещь {} мс, разные вещи {} мс",
+                items.size() * CREATES, sameItem, differentItems);
+    }
+
+    private long createConcurrently(List<Long> itemIds, LocalDateTime base) throws Exception {
+        AtomicInteger created = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < itemIds.size(); t++) {
+            int thread = t;
+            Long itemId = itemIds.get(t);
+            tasks.add(() -> {
+                for (int i = 0; i < CREATES; i++) {
+                    // у каждого потока свои часовые слоты, поэтому аренды на одной вещи не пересекаются
+                    LocalDateTime start = base.plusHours((long) i * itemIds.size() + thread);
+                    bookingService.createBooking(request(itemId, start, start.plusMinutes(30)), BOOKER);
+                    created.incrementAndGet();
+                }
+                return null;
+            });
+        }
+        long started = System.nanoTime();
+        runConcurrently(tasks);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        assertThat(created.get()).isEqualTo(itemIds.size() * CREATES);
+        return elapsed;
+    }
+
+    private static BookingDtoRequest request(Long itemId, LocalDateTime start, LocalDateTime end) {
+        return new BookingDtoRequest(0, start.format(FORMATTER), end.format(FORMATTER), itemId);
+    }
+
+    private long flipConcurrently(Map<Long, Long> ownerByBooking) throws Exception {
+        Map<Long, Long> versions = new HashMap<>();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (Map.Entry<Long, Long> entry : ownerByBooking.entrySet()) {
+            versions.put(entry.getKey(), bookingRepository.findById(entry.getKey()).get().getVersion());
+            tasks.add(() -> {
+                for (int i = 0; i < FLIPS; i++) {
+                    bookingService.approveBooking(entry.getKey(), i % 2 == 1, entry.getValue());
+                }
+                return null;
+            });
+        }
+        long started = System.nanoTime();
+        runConcurrently(tasks);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        for (Long bookingId : ownerByBooking.keySet()) {
+            Booking booking = bookingRepository.findById(bookingId).get();
+            assertThat(booking.getStatus()).isEqualTo(Status.APPROVED);
+            assertThat(booking.getVersion()).isEqualTo(versions.get(bookingId) + FLIPS);
+        }
+        return elapsed;
+    }
+
+    private void runConcurrently(List<Callable<Void>> tasks) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+        CountDownLatch ready = new CountDownLatch(1);
+        List<Future<Void>> futures = new ArrayList<>();
+        for (Callable<Void> task : tasks) {
+            futures.add(executor.submit(() -> {
+                ready.await();
+                return task.call();
+            }));
+        }
+        ready.countDown();
+        try {
+            for (Future<Void> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package ru.practicum.shareit;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import ru.practicum.shareit.booking.BookingService;
+import ru.practicum.shareit.booking.dto.BookingBatchResult;
+import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.dto.BookingDtoRequest;
+import ru.practicum.shareit.item.ItemRepository;
+import ru.practicum.shareit.item.dto.AvailabilityInterval;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.user.User;
+
+import javax.persistence.Cache;
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"spring.datasource.url=jdbc:h2:mem:booking-controller",
+                "spring.jpa.properties.hibernate.generate_statistics=true"})
+public class BookingControllerIntegrationTest {
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+    private static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Test
+    public void testCreateBookingsInsertsInJdbcBatches() {
+        LocalDateTime start = LocalDateTime.now().plusDays(1).withNano(0);
+        List<BookingDtoRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            requests.add(new BookingDtoRequest(0, FORMATTER.format(start.plusDays(i)),
+                    FORMATTER.format(start.plusDays(i).plusHours(1)), i % 2 == 0 ? 2L : 3L));
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("X-Sharer-User-Id", "1");
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        ResponseEntity<BookingBatchResult[]> response = restTemplate.exchange("http://localhost:" + port + "/bookings/batch",
+                HttpMethod.POST, new HttpEntity<>(requests, headers), BookingBatchResult[].class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).extracting(BookingBatchResult::getStatus).containsOnly(201);
+        assertThat(response.getBody()).extracting(result -> result.getBooking().getId()).doesNotHaveDuplicates();
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(100L);
+        // два пакета вставок, две выборки из последовательности, вещи и их аренды — но не по запросу на строку
+        assertThat(statistics.getPrepareStatementCount()).isLessThan(10L);
+    }
+
+    @Test
+    public void testCreateBookingKeepsUnrelatedItemsCached() throws Exception {
+        LocalDateTime start = LocalDateTime.now().plusYears(7).withNano(0);
+        Cache cache = entityManagerFactory.getCache();
+        itemRepository.findById(2L);
+        assertThat(cache.contains(Item.class, 2L)).isTrue();
+
+        bookingService.createBooking(new BookingDtoRequest(0, FORMATTER.format(start),
+                FORMATTER.format(start.plusHours(1)), 4L), new User(1, "updateName", "updateName@user.com"));
+
+        assertThat(cache.contains(Item.class, 2L)).isTrue();
+    }
+
+    @Test
+    public void testAvailabilityFollowsCreateAndReject() throws Exception {
+        LocalDateTime start = LocalDateTime.now().plusYears(5).withNano(0);
+        String period = "/items/4/availability?from=" + FORMATTER.format(start) + "&to=" + FORMATTER.format(start.plusDays(1));
+        HttpHeaders booker = new HttpHeaders();
+        booker.set("X-Sharer-User-Id", "1");
+        BookingDtoRequest request = new BookingDtoRequest(0, FORMATTER.format(start.plusHours(2)),
+                FORMATTER.format(start.plusHours(3)), 4L);
+
+        ResponseEntity<BookingDto> created = restTemplate.exchange("http://localhost:" + port + "/bookings",
+                HttpMethod.POST, new HttpEntity<>(request, booker), BookingDto.class);
+        AvailabilityInterval[] booked = restTemplate.getForObject("http://localhost:" + port + period, AvailabilityInterval[].class);
+
+        assertThat(booked).containsExactly(
+                AvailabilityInterval.free(start, start.plusHours(2)),
+                AvailabilityInterval.busy(start.plusHours(2), start.plusHours(3)),
+                AvailabilityInterval.free(start.plusHours(3), start.plusDays(1)));
+
+        // PATCH не поддерживается клиентом TestRestTemplate по умолчанию
+        bookingService.approveBooking(created.getBody().getId(), false, 4L);
+        AvailabilityInterval[] rejected = restTemplate.getForObject("http://localhost:" + port + period, AvailabilityInterval[].class);
+
+        assertThat(rejected).containsExactly(AvailabilityInterval.free(start, start.plusDays(1)));
+    }
+
+    @Test
+    public void testExportBookingsByOwnerAsNdjson() {
+        ResponseEntity<String> response = exchange("/bookings/owner?state=PAST", 1L);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getContentType()).isEqualTo(APPLICATION_NDJSON);
+        List<String> lines = List.of(response.getBody().split("\n"));
+        assertThat(lines).hasSize(2);
+        assertThat(lines.get(0)).startsWith("{\"id\":8,").contains("\"status\":\"APPROVED\"");
+        assertThat(lines).allMatch(line -> line.contains("\"owner\":{\"id\":1,"));
+    }
+
+    @Test
+    public void testExportBookingsForUnknownUserReturnsJsonError() {
+        ResponseEntity<String> response = exchange("/bookings", 99L);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_JSON);
+        assertThat(response.getBody()).contains("\"error\"");
+    }
+
+    private ResponseEntity<String> exchange(String path, Long userId) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("X-Sharer-User-Id", String.valueOf(userId));
+        headers.setAccept(List.of(APPLICATION_NDJSON));
+        return restTemplate.exchange("http://localhost:" + port + path, HttpMethod.GET,
+                new HttpEntity<>(headers), String.class);
+    }
+}
@@ -0,0 +1,87 @@
+package ru.practicum.shareit;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.dto.ItemDtoWithBooking;
+import ru.practicum.shareit.sql.SqlStatementHeaders;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+public class ItemControllerIntegrationTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    public void testGetAllItemsForOwnerStatementCount() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("X-Sharer-User-Id", "2");
+        statistics.clear();
+
+        ResponseEntity<ItemDtoWithBooking[]> response = restTemplate.exchange("http://localhost:" + port + "/items",
+                HttpMethod.GET, new HttpEntity<>(headers), ItemDtoWithBooking[].class);
+
+        // вещи владельца вместе с указателями на аренды и комментарии — независимо от количества вещей
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2L);
+        assertThat(response.getHeaders().getFirst(SqlStatementHeaders.STATEMENTS)).isEqualTo("2");
+        Map<Long, ItemDtoWithBooking> items = Arrays.stream(response.getBody())
+                .collect(Collectors.toMap(ItemDtoWithBooking::getId, Function.identity()));
+        assertThat(items.size()).isEqualTo(3);
+        assertThat(items.get(3L).getLastBooking().getId()).isEqualTo(2L);
+        assertThat(items.get(3L).getNextBooking()).isNull();
+        assertThat(items.get(2L).getLastBooking().getId()).isEqualTo(4L);
+        assertThat(items.get(2L).getComments().size()).isEqualTo(1);
+        assertThat(items.get(5L).getLastBooking()).isNull();
+    }
+
+    @Test
+    public void testGetSearchItems() {
+        ItemDto[] items = restTemplate.getForObject("http://localhost:" + port + "/items/search?text=аккумулятор",
+                ItemDto[].class);
+
+        assertThat(items.length).isEqualTo(2);
+        assertThat(items[0].getId()).isEqualTo(1L);
+        assertThat(items[1].getId()).isEqualTo(3L);
+    }
+
+    @Test
+    public void testStreamSearchItemsAsNdjson() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(List.of(MediaType.parseMediaType("application/x-ndjson")));
+
+        ResponseEntity<String> response = restTemplate.exchange("http://localhost:" + port + "/items/search?text=аккумулятор",
+                HttpMethod.GET, new HttpEntity<>(headers), String.class);
+
+        String[] lines = response.getBody().split("\n");
+        assertThat(lines.length).isEqualTo(2);
+        assertThat(lines[0]).startsWith("{\"id\":1,").contains("\"owner\":{\"id\":1,");
+        assertThat(lines[1]).startsWith("{\"id\":3,").contains("\"owner\":{\"id\":2,");
+    }
+}
@@ -0,0 +1,83 @@
+package ru.practicum.shareit;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@AutoConfigureMetrics
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class MetricsIntegrationTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    public void testPrometheusExposesRequestAndRepositoryHistograms() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("X-Sharer-User-Id", "1");
+        ResponseEntity<String> bookings = restTemplate.exchange("http://localhost:" + port + "/bookings?state=PAST",
+                HttpMethod.GET, new HttpEntity<>(headers), String.class);
+        ResponseEntity<String> missing = restTemplate.exchange("http://localhost:" + port + "/bookings/100",
+                HttpMethod.GET, new HttpEntity<>(headers), String.class);
+        assertThat(bookings.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(missing.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+
+        String metrics = restTemplate.getForObject("http://localhost:" + port + "/actuator/prometheus", String.class);
+
+        assertThat(metrics).containsPattern("http_server_requests_seconds_bucket\\{[^}]*state=\"PAST\"[^}]*uri=\"/bookings\"");
+        assertThat(metrics).containsPattern("http_server_requests_seconds_count\\{[^}]*exception=\"NotFoundException\"[^}]*uri=\"/bookings/\\{bookingId}\"");
+        assertThat(metrics).containsPattern("http_server_requests_seconds_count\\{[^}]*state=\"none\"[^}]*uri=\"/bookings/\\{bookingId}\"");
+        assertThat(metrics).containsPattern("spring_data_repository_invocations_seconds_bucket\\{[^}]*method=\"findPastRowsByBooker\"[^}]*repository=\"BookingRepository\"");
+    }
+
+    @Test
+    public void testPrometheusExposesSecondLevelCacheRegions() {
+        restTemplate.getForObject("http://localhost:" + port + "/users/4", String.class);
+        restTemplate.getForObject("http://localhost:" + port + "/users/4", String.class);
+
+        String metrics = restTemplate.getForObject("http://localhost:" + port + "/actuator/prometheus", String.class);
+
+        assertThat(metrics).containsPattern("hibernate_second_level_cache_requests_total\\{[^}]*region=\"users\"[^}]*result=\"hit\"[^}]*} [1-9]");
+        assertThat(metrics).containsPattern("hibernate_second_level_cache_requests_total\\{[^}]*region=\"items\"");
+    }
+
+    @Test
+    public void testRepeatedCallerLookupsHitUsersRegion() {
+        CacheRegionStatistics users = entityManagerFactory.unwrap(SessionFactory.class).getStatistics()
+                .getDomainDataRegionStatistics(EntityCacheRegionFactory.USERS);
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("X-Sharer-User-Id", "2");
+
+        restTemplate.exchange("http://localhost:" + port + "/requests", HttpMethod.GET, new HttpEntity<>(headers), String.class);
+        long hits = users.getHitCount();
+        long misses = users.getMissCount();
+        for (int i = 0; i < 3; i++) {
+            ResponseEntity<String> response = restTemplate.exchange("http://localhost:" + port + "/requests",
+                    HttpMethod.GET, new HttpEntity<>(headers), String.class);
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        }
+
+        assertThat(users.getHitCount() - hits).isGreaterThanOrEqualTo(3);
+        assertThat(users.getMissCount()).isEqualTo(misses);
+    }
+}
@@ -6,22 +6,38 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.practicum.shareit.booking.dto.BookingBatchResult;
+import ru.practicum.shareit.booking.dto.BookingCursor;
 import ru.practicum.shareit.booking.dto.BookingDto;
 import ru.practicum.shareit.booking.dto.BookingDtoRequest;
+import ru.practicum.shareit.booking.dto.State;
 import ru.practicum.shareit.booking.dto.Status;
+import ru.practicum.shareit.exception.NotFoundException;
 import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.user.User;
+import ru.practicum.shareit.user.UserRepository;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.Optional;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.startsWith;
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(BookingController.class)
@@ -31,6 +47,9 @@ class BookingControllerTest {
     private ObjectMapper objectMapper;
     @MockBean
     private BookingServiceImpl bookingService;
+    @MockBean
+    private UserRepository userRepository;
+    private final User caller = new User(1L, "user", "user@user.com");
     private BookingDto firstBookingDto;
     private BookingDto toBookingDto;
     private BookingDtoRequest bookingDtoRequest;
@@ -44,11 +63,12 @@ class BookingControllerTest {
         firstBookingDto = new BookingDto(1, LocalDateTime.parse(startTime, formatter), LocalDateTime.parse(endTime, formatter), new Item(), new User(), Status.REJECTED);
         bookingDtoRequest = new BookingDtoRequest();
         toBookingDto = new BookingDto(2, LocalDateTime.parse(startTime, formatter), LocalDateTime.parse(endTime, formatter), new Item(), new User(), Status.WAITING);
+        when(userRepository.findById(1L)).thenReturn(Optional.of(caller));
     }
 
     @Test
     void createBooking() throws Exception {
-        when(bookingService.createBooking(any(), anyLong())).thenReturn(firstBookingDto);
+        when(bookingService.createBooking(any(), any(User.class))).thenReturn(firstBookingDto);
         mockMvc.perform(post("/bookings").header("X-Sharer-User-Id", 1)
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(bookingDtoRequest)))
@@ -84,7 +104,7 @@ class BookingControllerTest {
 
     @Test
     void getBookingsByState() throws Exception {
-        when(bookingService.getBookingsByState(any(), anyLong())).thenReturn(List.of(firstBookingDto, toBookingDto));
+        when(bookingService.getBookingsByState(any(), any(User.class))).thenReturn(List.of(firstBookingDto, toBookingDto));
         mockMvc.perform(get("/bookings", 1).param("state", "ALL").header("X-Sharer-User-Id", 1)
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
@@ -101,7 +121,7 @@ class BookingControllerTest {
 
     @Test
     void getBookingsByStatePageable() throws Exception {
-        when(bookingService.getBookingsByState(any(), anyLong(), anyInt(), anyInt())).thenReturn(List.of(firstBookingDto, toBookingDto));
+        when(bookingService.getBookingsByState(any(), any(User.class), anyInt(), anyInt())).thenReturn(new SliceImpl<>(List.of(firstBookingDto, toBookingDto)));
         mockMvc.perform(get("/bookings", 1).param("state", "ALL").param("from", "0")
                         .param("size", "2").header("X-Sharer-User-Id", 1)
                         .contentType(MediaType.APPLICATION_JSON))
@@ -117,9 +137,113 @@ class BookingControllerTest {
                 .andExpect(jsonPath("$.[1].status").value("WAITING"));
     }
 
+    @Test
+    void getBookingsByStatePageableReturnsNextCursor() throws Exception {
+        when(bookingService.getBookingsByState(any(), any(User.class), anyInt(), anyInt()))
+                .thenReturn(new SliceImpl<>(List.of(firstBookingDto, toBookingDto), PageRequest.of(0, 2), true));
+        mockMvc.perform(get("/bookings").param("from", "0").param("size", "2").header("X-Sharer-User-Id", 1))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", BookingCursor.of(toBookingDto).encode()));
+    }
+
+    @Test
+    void getBookingsByStateCursor() throws Exception {
+        BookingCursor cursor = BookingCursor.of(firstBookingDto);
+        when(bookingService.getBookingsByState(eq(State.ALL), eq(caller), eq(cursor), eq(3))).thenReturn(new SliceImpl<>(List.of(toBookingDto)));
+        mockMvc.perform(get("/bookings").param("cursor", cursor.encode()).param("size", "3").header("X-Sharer-User-Id", 1))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$.[0].id").value(2))
+                .andExpect(header().doesNotExist("X-Next-Cursor"));
+    }
+
+    @Test
+    void getBookingsByOwnerOfItemsCursor() throws Exception {
+        BookingCursor cursor = BookingCursor.of(firstBookingDto);
+        when(bookingService.getBookingsByOwnerOfItems(eq(State.WAITING), eq(caller), eq(cursor), eq(1)))
+                .thenReturn(new SliceImpl<>(List.of(toBookingDto), PageRequest.of(0, 1), true));
+        mockMvc.perform(get("/bookings/owner").param("state", "WAITING").param("cursor", cursor.encode())
+                        .param("size", "1").header("X-Sharer-User-Id", 1))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[0].id").value(2))
+                .andExpect(header().string("X-Next-Cursor", BookingCursor.of(toBookingDto).encode()));
+    }
+
+    @Test
+    void getBookingsByStateCursorExpectValidError() throws Exception {
+        mockMvc.perform(get("/bookings").param("cursor", "not-a-cursor").param("size", "2").header("X-Sharer-User-Id", 1))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/bookings/owner").param("cursor", BookingCursor.of(firstBookingDto).encode())
+                        .header("X-Sharer-User-Id", 1))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void exportBookingsByStateAsNdjson() throws Exception {
+        when(bookingService.exportBookingsByState(eq(State.PAST), eq(caller))).thenReturn(consumer -> {
+            consumer.accept(firstBookingDto);
+            consumer.accept(toBookingDto);
+        });
+        MvcResult result = mockMvc.perform(get("/bookings").param("state", "PAST").header("X-Sharer-User-Id", 1)
+                        .accept("application/x-ndjson"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String[] lines = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString().split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(lines[0]).contains("\"id\":1", "\"status\":\"REJECTED\"");
+        assertThat(lines[1]).contains("\"id\":2", "\"status\":\"WAITING\"");
+    }
+
+    @Test
+    void exportBookingsByOwnerOfItemsAsNdjson() throws Exception {
+        when(bookingService.exportBookingsByOwnerOfItems(eq(State.ALL), eq(caller))).thenReturn(consumer -> consumer.accept(toBookingDto));
+        MvcResult result = mockMvc.perform(get("/bookings/owner").header("X-Sharer-User-Id", 1)
+                        .accept("application/x-ndjson"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string(startsWith("{\"id\":2,")));
+    }
+
+    @Test
+    void exportBookingsExpectNotFoundBeforeStreaming() throws Exception {
+        mockMvc.perform(get("/bookings").header("X-Sharer-User-Id", 9).accept("application/x-ndjson"))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("Пользователь 9 не найден"));
+        verify(bookingService, never()).exportBookingsByState(any(), any());
+    }
+
+    @Test
+    void exportBookingsExpectValidErrorForUnknownState() throws Exception {
+        mockMvc.perform(get("/bookings/owner").param("state", "UNSUPPORTED").header("X-Sharer-User-Id", 1)
+                        .accept("application/x-ndjson"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void createBookings() throws Exception {
+        when(bookingService.createBookings(any(), eq(caller))).thenReturn(List.of(
+                BookingBatchResult.created(0, firstBookingDto),
+                BookingBatchResult.failed(1, new NotFoundException("Вещь по айди 99 не найдена!"))));
+        mockMvc.perform(post("/bookings/batch").header("X-Sharer-User-Id", 1)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(bookingDtoRequest, bookingDtoRequest))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$.[0].status").value(201))
+                .andExpect(jsonPath("$.[0].booking.id").value(1))
+                .andExpect(jsonPath("$.[1].status").value(404))
+                .andExpect(jsonPath("$.[1].error").value("Вещь по айди 99 не найдена!"));
+    }
+
     @Test
     void getBookingsExpectValidError() throws Exception {
-        when(bookingService.getBookingsByState(any(), anyLong())).thenReturn(List.of(firstBookingDto, toBookingDto));
+        when(bookingService.getBookingsByState(any(), any(User.class))).thenReturn(List.of(firstBookingDto, toBookingDto));
         mockMvc.perform(get("/bookings", 1).param("state", "ALL").header("X-Sharer-User-Id", 1)
                         .param("from", "-1")
                         .param("size", "2")
@@ -129,7 +253,7 @@ class BookingControllerTest {
 
     @Test
     void getBookingsByOwnerExpectValidError() throws Exception {
-        when(bookingService.getBookingsByState(any(), anyLong())).thenReturn(List.of(firstBookingDto, toBookingDto));
+        when(bookingService.getBookingsByState(any(), any(User.class))).thenReturn(List.of(firstBookingDto, toBookingDto));
         mockMvc.perform(get("/bookings/owner", 1).param("state", "ALL").header("X-Sharer-User-Id", 1)
                         .param("from", "-1")
                         .param("size", "2")
@@ -139,7 +263,7 @@ class BookingControllerTest {
 
     @Test
     void getBookingsExpectValidPageableNegative() throws Exception {
-        when(bookingService.getBookingsByState(any(), anyLong())).thenReturn(List.of(firstBookingDto, toBookingDto));
+        when(bookingService.getBookingsByState(any(), any(User.class))).thenReturn(List.of(firstBookingDto, toBookingDto));
         mockMvc.perform(get("/bookings", 1).param("state", "NOT_VALID").header("X-Sharer-User-Id", 1)
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().is4xxClientError());
@@ -147,7 +271,7 @@ class BookingControllerTest {
 
     @Test
     void getBookingsByOwnerOfItemsExpectValidError() throws Exception {
-        when(bookingService.getBookingsByOwnerOfItems(any(), anyLong())).thenReturn(List.of(firstBookingDto, toBookingDto));
+        when(bookingService.getBookingsByOwnerOfItems(any(), any(User.class))).thenReturn(List.of(firstBookingDto, toBookingDto));
         mockMvc.perform(get("/bookings/owner", 1).param("state", "NOT_VALID").header("X-Sharer-User-Id", 1)
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().is4xxClientError());
@@ -155,7 +279,7 @@ class BookingControllerTest {
 
     @Test
     void getBookingsByOwnerOfItemsPageable() throws Exception {
-        when(bookingService.getBookingsByOwnerOfItems(any(), anyLong())).thenReturn(List.of(firstBookingDto, toBookingDto));
+        when(bookingService.getBookingsByOwnerOfItems(any(), any(User.class))).thenReturn(List.of(firstBookingDto, toBookingDto));
         mockMvc.perform(get("/bookings/owner", 1).param("state", "ALL").header("X-Sharer-User-Id", 1))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.length()").value(2))
@@ -171,7 +295,7 @@ class BookingControllerTest {
 
     @Test
     void getBookingsByOwnerOfItems() throws Exception {
-        when(bookingService.getBookingsByOwnerOfItems(any(), anyLong(), anyInt(), anyInt())).thenReturn(List.of(firstBookingDto, toBookingDto));
+        when(bookingService.getBookingsByOwnerOfItems(any(), any(User.class), anyInt(), anyInt())).thenReturn(new SliceImpl<>(List.of(firstBookingDto, toBookingDto)));
         mockMvc.perform(get("/bookings/owner", 1).param("state", "ALL").param("from", "0")
                         .param("size", "2").header("X-Sharer-User-Id", 1))
                 .andExpect(status().isOk())
@@ -188,7 +312,7 @@ class BookingControllerTest {
 
     @Test
     void shouldExceptionCreateBooking() throws Exception {
-        when(bookingService.createBooking(any(), anyLong())).thenThrow(new Exception());
+        when(bookingService.createBooking(any(), any(User.class))).thenThrow(new Exception());
         mockMvc.perform(post("/bookings").header("X-Sharer-User-Id", 1)
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(bookingDtoRequest)))
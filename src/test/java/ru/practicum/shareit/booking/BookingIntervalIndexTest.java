@@ -0,0 +1,130 @@
+package ru.practicum.shareit.booking;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.practicum.shareit.booking.dto.Status;
+import ru.practicum.shareit.booking.model.Booking;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BookingIntervalIndexTest {
+    private static final LocalDateTime BASE = LocalDateTime.now().plusDays(1).withNano(0);
+    private BookingIntervalIndex bookingIntervalIndex;
+    @Mock
+    private BookingRepository bookingRepository;
+    private final BookingLocks bookingLocks = new BookingLocks();
+
+    @BeforeEach
+    void init() {
+        bookingIntervalIndex = new BookingIntervalIndex(bookingRepository, 100, Duration.ofMinutes(30));
+    }
+
+    @Test
+    void forItemLoadsBookingsOnce() {
+        Booking booking = new Booking(1, BASE, BASE.plusHours(2), null, null, Status.APPROVED);
+        when(bookingRepository.findAllByItemIdAndStatusInAndEndAfter(eq(1L), anyCollection(), any()))
+                .thenReturn(List.of(booking));
+
+        BookingIntervals intervals = bookingIntervalIndex.forItem(1L);
+
+        assertThat(bookingIntervalIndex.forItem(1L)).isSameAs(intervals);
+        assertThat(intervals.overlaps(BASE.plusHours(1), BASE.plusHours(3))).isTrue();
+        verify(bookingRepository, times(1)).findAllByItemIdAndStatusInAndEndAfter(eq(1L), anyCollection(), any());
+    }
+
+    @Test
+    void forItemReloadsAfterInvalidateAll() {
+        Booking booking = new Booking(1, BASE, BASE.plusHours(2), null, null, Status.APPROVED);
+        when(bookingRepository.findAllByItemIdAndStatusInAndEndAfter(eq(1L), anyCollection(), any()))
+                .thenReturn(List.of(booking))
+                .thenReturn(List.of());
+
+        assertThat(bookingIntervalIndex.forItem(1L).size()).isEqualTo(1);
+        bookingIntervalIndex.invalidateAll();
+
+        assertThat(bookingIntervalIndex.forItem(1L).size()).isZero();
+        verify(bookingRepository, times(2)).findAllByItemIdAndStatusInAndEndAfter(eq(1L), anyCollection(), any());
+    }
+
+    @Test
+    void forItemPrunesEndedBookings() {
+        LocalDateTime now = LocalDateTime.now();
+        when(bookingRepository.findAllByItemIdAndStatusInAndEndAfter(eq(1L), anyCollection(), any()))
+                .thenReturn(List.of());
+        BookingIntervals intervals = bookingIntervalIndex.forItem(1L);
+        intervals.add(1L, now.minusHours(2), now.minusHours(1));
+        intervals.add(2L, BASE, BASE.plusHours(1));
+
+        assertThat(bookingIntervalIndex.forItem(1L).size()).isEqualTo(1);
+    }
+
+    @Test
+    void forItemDoesNotCacheFailedLoad() {
+        when(bookingRepository.findAllByItemIdAndStatusInAndEndAfter(eq(1L), anyCollection(), any()))
+                .thenThrow(new IllegalStateException("db down"))
+                .thenReturn(List.of());
+
+        assertThatThrownBy(() -> bookingIntervalIndex.forItem(1L)).isInstanceOf(IllegalStateException.class);
+        assertThat(bookingIntervalIndex.forItem(1L).size()).isZero();
+    }
+
+    @Test
+    void forItemAcceptsOnlyOneOfConcurrentOverlappingBookings() throws Exception {
+        when(bookingRepository.findAllByItemIdAndStatusInAndEndAfter(eq(1L), anyCollection(), any()))
+                .thenReturn(List.of());
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch ready = new CountDownLatch(1);
+        AtomicInteger accepted = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            long bookingId = i + 1;
+            futures.add(executor.submit(() -> {
+                ready.await();
+                Lock lock = bookingLocks.forItem(1L);
+                lock.lock();
+                try {
+                    BookingIntervals intervals = bookingIntervalIndex.forItem(1L);
+                    if (!intervals.overlaps(BASE, BASE.plusHours(1))) {
+                        intervals.add(bookingId, BASE, BASE.plusHours(1));
+                        accepted.incrementAndGet();
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                return null;
+            }));
+        }
+        ready.countDown();
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(accepted.get()).isEqualTo(1);
+        assertThat(bookingIntervalIndex.forItem(1L).size()).isEqualTo(1);
+    }
+}
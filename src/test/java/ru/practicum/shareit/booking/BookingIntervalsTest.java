@@ -0,0 +1,122 @@
+package ru.practicum.shareit.booking;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.shareit.item.dto.AvailabilityInterval;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BookingIntervalsTest {
+    private static final LocalDateTime BASE = LocalDateTime.of(2030, 1, 1, 12, 0);
+    private BookingIntervals intervals;
+
+    @BeforeEach
+    void init() {
+        intervals = new BookingIntervals();
+    }
+
+    @Test
+    void overlapsEmpty() {
+        assertThat(intervals.overlaps(BASE, BASE.plusHours(1))).isFalse();
+    }
+
+    @Test
+    void overlapsTouchingBoundariesAreFree() {
+        intervals.add(1L, BASE, BASE.plusHours(2));
+
+        assertThat(intervals.overlaps(BASE.minusHours(1), BASE)).isFalse();
+        assertThat(intervals.overlaps(BASE.plusHours(2), BASE.plusHours(3))).isFalse();
+        assertThat(intervals.overlaps(BASE.minusHours(1), BASE.plusSeconds(1))).isTrue();
+        assertThat(intervals.overlaps(BASE.plusHours(1), BASE.plusHours(3))).isTrue();
+        assertThat(intervals.overlaps(BASE.plusMinutes(30), BASE.plusMinutes(40))).isTrue();
+        assertThat(intervals.overlaps(BASE.minusHours(1), BASE.plusHours(3))).isTrue();
+    }
+
+    @Test
+    void addMergesIntervals() {
+        intervals.add(1L, BASE, BASE.plusHours(2));
+        intervals.add(2L, BASE.plusHours(4), BASE.plusHours(6));
+        intervals.add(3L, BASE.plusHours(1), BASE.plusHours(5));
+
+        assertThat(intervals.size()).isEqualTo(3);
+        assertThat(intervals.overlaps(BASE.plusHours(2), BASE.plusHours(4))).isTrue();
+        assertThat(intervals.overlaps(BASE.plusHours(6), BASE.plusHours(7))).isFalse();
+    }
+
+    @Test
+    void removeFreesOnlyOwnInterval() {
+        intervals.add(1L, BASE, BASE.plusHours(2));
+        intervals.add(2L, BASE.plusHours(1), BASE.plusHours(3));
+        intervals.remove(2L);
+
+        assertThat(intervals.size()).isEqualTo(1);
+        assertThat(intervals.overlaps(BASE.plusHours(2), BASE.plusHours(3))).isFalse();
+        assertThat(intervals.overlaps(BASE.plusHours(1), BASE.plusHours(3))).isTrue();
+    }
+
+    @Test
+    void removeUnknownBooking() {
+        intervals.add(1L, BASE, BASE.plusHours(2));
+        intervals.remove(5L);
+
+        assertThat(intervals.size()).isEqualTo(1);
+        assertThat(intervals.overlaps(BASE, BASE.plusHours(1))).isTrue();
+    }
+
+    @Test
+    void availabilityEmptyIsOneFreeInterval() {
+        assertThat(intervals.availability(BASE, BASE.plusDays(1)))
+                .containsExactly(AvailabilityInterval.free(BASE, BASE.plusDays(1)));
+    }
+
+    @Test
+    void availabilityAlternatesFreeAndBusyMergedIntervals() {
+        intervals.add(1L, BASE.plusHours(2), BASE.plusHours(4));
+        intervals.add(2L, BASE.plusHours(3), BASE.plusHours(5));
+        intervals.add(3L, BASE.plusHours(8), BASE.plusHours(9));
+
+        assertThat(intervals.availability(BASE, BASE.plusHours(10))).containsExactly(
+                AvailabilityInterval.free(BASE, BASE.plusHours(2)),
+                AvailabilityInterval.busy(BASE.plusHours(2), BASE.plusHours(5)),
+                AvailabilityInterval.free(BASE.plusHours(5), BASE.plusHours(8)),
+                AvailabilityInterval.busy(BASE.plusHours(8), BASE.plusHours(9)),
+                AvailabilityInterval.free(BASE.plusHours(9), BASE.plusHours(10)));
+    }
+
+    @Test
+    void availabilityClipsIntervalsToPeriod() {
+        intervals.add(1L, BASE, BASE.plusHours(4));
+        intervals.add(2L, BASE.plusHours(6), BASE.plusHours(10));
+        intervals.add(3L, BASE.plusHours(12), BASE.plusHours(13));
+
+        assertThat(intervals.availability(BASE.plusHours(2), BASE.plusHours(8))).containsExactly(
+                AvailabilityInterval.busy(BASE.plusHours(2), BASE.plusHours(4)),
+                AvailabilityInterval.free(BASE.plusHours(4), BASE.plusHours(6)),
+                AvailabilityInterval.busy(BASE.plusHours(6), BASE.plusHours(8)));
+        assertThat(intervals.availability(BASE.plusHours(4), BASE.plusHours(6)))
+                .containsExactly(AvailabilityInterval.free(BASE.plusHours(4), BASE.plusHours(6)));
+    }
+
+    @Test
+    void availabilityReflectsRemovedBooking() {
+        intervals.add(1L, BASE, BASE.plusHours(2));
+        intervals.remove(1L);
+
+        assertThat(intervals.availability(BASE, BASE.plusHours(2)))
+                .containsExactly(AvailabilityInterval.free(BASE, BASE.plusHours(2)));
+    }
+
+    @Test
+    void pruneEndedBeforeDropsOnlyEndedBookings() {
+        intervals.add(1L, BASE, BASE.plusHours(2));
+        intervals.add(2L, BASE.plusHours(4), BASE.plusHours(6));
+
+        intervals.pruneEndedBefore(BASE.plusHours(3));
+
+        assertThat(intervals.size()).isEqualTo(1);
+        assertThat(intervals.overlaps(BASE, BASE.plusHours(2))).isFalse();
+        assertThat(intervals.overlaps(BASE.plusHours(5), BASE.plusHours(7))).isTrue();
+    }
+}
@@ -0,0 +1,51 @@
+package ru.practicum.shareit.booking;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BookingLocksTest {
+
+    @Test
+    void stripesRoundedUpToPowerOfTwo() {
+        assertThat(new BookingLocks(1000).stripes()).isEqualTo(1024);
+        assertThat(new BookingLocks(16).stripes()).isEqualTo(16);
+        assertThat(new BookingLocks(0).stripes()).isEqualTo(1);
+    }
+
+    @Test
+    void sameItemGetsSameLock() {
+        BookingLocks locks = new BookingLocks();
+
+        assertThat(locks.forItem(42L)).isSameAs(locks.forItem(42L));
+    }
+
+    @Test
+    void consecutiveItemsGetDistinctLocks() {
+        BookingLocks locks = new BookingLocks(64);
+        Set<Lock> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (long itemId = 1000; itemId < 1064; itemId++) {
+            distinct.add(locks.forItem(itemId));
+        }
+
+        assertThat(distinct).hasSize(64);
+        assertThat(locks.forItem(1000L)).isSameAs(locks.forItem(1064L));
+    }
+
+    @Test
+    void forItemsReturnsDistinctLocksInStripeOrder() {
+        BookingLocks locks = new BookingLocks(16);
+
+        List<Lock> forward = locks.forItems(List.of(3L, 1L, 19L, 2L));
+        List<Lock> backward = locks.forItems(List.of(2L, 19L, 1L, 3L));
+
+        assertThat(forward).containsExactly(locks.forItem(1L), locks.forItem(2L), locks.forItem(3L));
+        assertThat(backward).containsExactlyElementsOf(forward);
+    }
+}
@@ -0,0 +1,333 @@
+package ru.practicum.shareit.booking;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.util.ClassUtils;
+import ru.practicum.shareit.booking.dto.Status;
+import ru.practicum.shareit.user.User;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Проверяет планы запросов BookingRepository: каждый должен читать bookings по ожидаемому составному индексу.
+ * Запросы и параметры перехватываются на уровне JDBC, EXPLAIN выполняется с теми же значениями,
+ * что передал Hibernate, — иначе оптимизатор свернул бы условия вида booker_id = NULL.
+ * Планы строятся в H2 по schema-test.sql. Перед проверкой таблицы заполняются до нескольких тысяч строк
+ * и собирается статистика, а внешние ключи bookings снимаются вместе с одноколоночными индексами,
+ * которые H2 создает под них сам, — в Postgres таких индексов нет. Частичный индекс idx_bookings_item_waiting
+ * из schema.sql есть только в Postgres и здесь не проверяется.
+ */
+@DataJpaTest
+@Import(BookingQueryPlanTest.JdbcCaptureConfig.class)
+@ExtendWith(SpringExtension.class)
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2)
+class BookingQueryPlanTest {
+    private static final String BOOKINGS_SCAN = "PUBLIC.BOOKINGS.tableScan";
+    private static final Pattern BOOKINGS_INDEX = Pattern.compile("\"?PUBLIC\"?\\.\"?BOOKINGS\"? \"?\\w+\"?\\s*/\\* PUBLIC\\.(\\w+)");
+    private static final String PRIMARY_KEY = "PRIMARY_KEY";
+    private static final String BOOKER_START = "IDX_BOOKINGS_BOOKER_START";
+    private static final String BOOKER_STATUS_START = "IDX_BOOKINGS_BOOKER_STATUS_START";
+    private static final String BOOKER_ITEM_END = "IDX_BOOKINGS_BOOKER_ITEM_END";
+    private static final String ITEM_START = "IDX_BOOKINGS_ITEM_START";
+    private static final String ITEM_STATUS_START = "IDX_BOOKINGS_ITEM_STATUS_START";
+    private static final LocalDateTime NOW = LocalDateTime.of(2023, 9, 21, 18, 14, 50);
+    private static final Sort SORT = Sort.by(Sort.Direction.DESC, "start");
+    private static final Pageable PAGE = PageRequest.of(0, 10, SORT);
+    private static final Pageable SEEK = PageRequest.of(0, 10);
+
+    @Autowired
+    private TestEntityManager em;
+    @Autowired
+    private BookingRepository repository;
+    @Autowired
+    private DataSource dataSource;
+    private User user;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("ALTER TABLE bookings DROP CONSTRAINT IF EXISTS fk_bookings_item");
+            statement.execute("ALTER TABLE bookings DROP CONSTRAINT IF EXISTS fk_bookings_booker");
+            statement.execute("MERGE INTO users (id, name, email) KEY (id) " +
+                    "SELECT x, 'user' || x, 'user' || x || '@plan.test' FROM SYSTEM_RANGE(1000, 1099)");
+            statement.execute("MERGE INTO items (id, name, description, is_avaliable, owner_id) KEY (id) " +
+                    "SELECT x, 'item' || x, 'item' || x, TRUE, 1000 + MOD(x, 100) FROM SYSTEM_RANGE(1000, 1999)");
+            statement.execute("MERGE INTO bookings (id, start_date, end_date, item_id, booker_id, status) KEY (id) " +
+                    "SELECT x, DATEADD(HOUR, x, TIMESTAMP '2023-01-01 00:00:00'), DATEADD(HOUR, x + 2, TIMESTAMP '2023-01-01 00:00:00'), " +
+                    "1000 + MOD(x, 1000), 1000 + MOD(x / 7, 100), CASEWHEN(MOD(x, 4) = 0, 'WAITING', 'APPROVED') " +
+                    "FROM SYSTEM_RANGE(1000, 20999)");
+            statement.execute("ANALYZE");
+        }
+        user = em.find(User.class, 1L);
+        JdbcCapture.STATEMENTS.clear();
+    }
+
+    @Test
+    void everyQueryUsesExpectedIndexOnBookings() throws SQLException {
+        Map<String, PlannedQuery> queries = queries();
+        assertThat(queries.keySet()).containsExactlyInAnyOrderElementsOf(declaredQueries());
+
+        List<String> mismatches = new ArrayList<>();
+        for (Map.Entry<String, PlannedQuery> query : queries.entrySet()) {
+            JdbcCapture.STATEMENTS.clear();
+            query.getValue().call.accept(repository);
+            List<CapturedStatement> statements = new ArrayList<>(JdbcCapture.STATEMENTS);
+            assertThat(statements).as(query.getKey()).isNotEmpty();
+            Set<String> indexes = new TreeSet<>();
+            for (CapturedStatement statement : statements) {
+                String plan = explain(query.getKey(), statement);
+                indexes.addAll(bookingsIndexes(plan));
+                if (plan.contains(BOOKINGS_SCAN)) {
+                    mismatches.add(query.getKey() + ":\n" + plan);
+                }
+            }
+            if (!indexes.equals(Set.of(query.getValue().index))) {
+                mismatches.add(query.getKey() + ": ожидался " + query.getValue().index + ", использованы " + indexes);
+            }
+        }
+        assertThat(mismatches).isEmpty();
+    }
+
+    private Map<String, PlannedQuery> queries() {
+        Map<String, PlannedQuery> queries = new LinkedHashMap<>();
+        add(queries, "findFirstByBookerIdAndItemIdAndEndLessThanEqual", BOOKER_ITEM_END,
+                r -> r.findFirstByBookerIdAndItemIdAndEndLessThanEqual(1L, 3L, NOW));
+        add(queries, "findItemIdById", PRIMARY_KEY, r -> r.findItemIdById(1L));
+        add(queries, "findAllByItemIdAndStatusInAndEndAfter", ITEM_STATUS_START,
+                r -> r.findAllByItemIdAndStatusInAndEndAfter(3L, List.of(Status.WAITING, Status.APPROVED), NOW));
+        add(queries, "findFirstByItemIdAndStartLessThanEqualOrderByStartDesc", ITEM_START,
+                r -> r.findFirstByItemIdAndStartLessThanEqualOrderByStartDesc(3L, NOW));
+        add(queries, "findFirstByItemIdAndStartAfterOrderByStartAsc", ITEM_START,
+                r -> r.findFirstByItemIdAndStartAfterOrderByStartAsc(3L, NOW));
+        add(queries, "findLastAndNextByItemIdIn", ITEM_START, r -> r.findLastAndNextByItemIdIn(List.of(1L, 3L), NOW));
+        add(queries, "findRowsByBooker", BOOKER_START, r -> {
+            r.findRowsByBooker(user, SORT);
+            r.findRowsByBooker(user, PAGE);
+        });
+        add(queries, "findRowsByBookerAndStatus", BOOKER_STATUS_START, r -> {
+            r.findRowsByBookerAndStatus(user, Status.WAITING, SORT);
+            r.findRowsByBookerAndStatus(user, Status.WAITING, PAGE);
+        });
+        add(queries, "findCurrentRowsByBooker", BOOKER_START, r -> {
+            r.findCurrentRowsByBooker(user, NOW, SORT);
+            r.findCurrentRowsByBooker(user, NOW, PAGE);
+        });
+        add(queries, "findPastRowsByBooker", BOOKER_START, r -> {
+            r.findPastRowsByBooker(user, NOW, SORT);
+            r.findPastRowsByBooker(user, NOW, PAGE);
+        });
+        add(queries, "findFutureRowsByBooker", BOOKER_START, r -> {
+            r.findFutureRowsByBooker(user, NOW, SORT);
+            r.findFutureRowsByBooker(user, NOW, PAGE);
+        });
+        add(queries, "findRowsByItemOwner", ITEM_START, r -> {
+            r.findRowsByItemOwner(user, SORT);
+            r.findRowsByItemOwner(user, PAGE);
+        });
+        add(queries, "findRowsByItemOwnerAndStatus", ITEM_STATUS_START, r -> {
+            r.findRowsByItemOwnerAndStatus(user, Status.WAITING, SORT);
+            r.findRowsByItemOwnerAndStatus(user, Status.WAITING, PAGE);
+        });
+        add(queries, "findCurrentRowsByItemOwner", ITEM_START, r -> {
+            r.findCurrentRowsByItemOwner(user, NOW, SORT);
+            r.findCurrentRowsByItemOwner(user, NOW, PAGE);
+        });
+        add(queries, "findPastRowsByItemOwner", ITEM_START, r -> {
+            r.findPastRowsByItemOwner(user, NOW, SORT);
+            r.findPastRowsByItemOwner(user, NOW, PAGE);
+        });
+        add(queries, "findFutureRowsByItemOwner", ITEM_START, r -> {
+            r.findFutureRowsByItemOwner(user, NOW, SORT);
+            r.findFutureRowsByItemOwner(user, NOW, PAGE);
+        });
+        add(queries, "findAllByBookerBefore", BOOKER_START, r -> r.findAllByBookerBefore(user, NOW, 10L, SEEK));
+        add(queries, "findAllByStatusAndBookerBefore", BOOKER_STATUS_START,
+                r -> r.findAllByStatusAndBookerBefore(Status.WAITING, user, NOW, 10L, SEEK));
+        add(queries, "findCurrentByBookerBefore", BOOKER_START, r -> r.findCurrentByBookerBefore(user, NOW, NOW, 10L, SEEK));
+        add(queries, "findPastByBookerBefore", BOOKER_START, r -> r.findPastByBookerBefore(user, NOW, NOW, 10L, SEEK));
+        add(queries, "findFutureByBookerBefore", BOOKER_START, r -> r.findFutureByBookerBefore(user, NOW, NOW, 10L, SEEK));
+        add(queries, "findAllByItemOwnerBefore", ITEM_START, r -> r.findAllByItemOwnerBefore(user, NOW, 10L, SEEK));
+        add(queries, "findAllByStatusAndItemOwnerBefore", ITEM_STATUS_START,
+                r -> r.findAllByStatusAndItemOwnerBefore(Status.WAITING, user, NOW, 10L, SEEK));
+        add(queries, "findCurrentByItemOwnerBefore", ITEM_START, r -> r.findCurrentByItemOwnerBefore(user, NOW, NOW, 10L, SEEK));
+        add(queries, "findPastByItemOwnerBefore", ITEM_START, r -> r.findPastByItemOwnerBefore(user, NOW, NOW, 10L, SEEK));
+        add(queries, "findFutureByItemOwnerBefore", ITEM_START, r -> r.findFutureByItemOwnerBefore(user, NOW, NOW, 10L, SEEK));
+        add(queries, "streamRowsByBooker", BOOKER_START, r -> drain(r.streamRowsByBooker(user)));
+        add(queries, "streamRowsByBookerAndStatus", BOOKER_STATUS_START,
+                r -> drain(r.streamRowsByBookerAndStatus(user, Status.WAITING)));
+        add(queries, "streamCurrentRowsByBooker", BOOKER_START, r -> drain(r.streamCurrentRowsByBooker(user, NOW)));
+        add(queries, "streamPastRowsByBooker", BOOKER_START, r -> drain(r.streamPastRowsByBooker(user, NOW)));
+        add(queries, "streamFutureRowsByBooker", BOOKER_START, r -> drain(r.streamFutureRowsByBooker(user, NOW)));
+        add(queries, "streamRowsByItemOwner", ITEM_START, r -> drain(r.streamRowsByItemOwner(user)));
+        add(queries, "streamRowsByItemOwnerAndStatus", ITEM_STATUS_START,
+                r -> drain(r.streamRowsByItemOwnerAndStatus(user, Status.WAITING)));
+        add(queries, "streamCurrentRowsByItemOwner", ITEM_START, r -> drain(r.streamCurrentRowsByItemOwner(user, NOW)));
+        add(queries, "streamPastRowsByItemOwner", ITEM_START, r -> drain(r.streamPastRowsByItemOwner(user, NOW)));
+        add(queries, "streamFutureRowsByItemOwner", ITEM_START, r -> drain(r.streamFutureRowsByItemOwner(user, NOW)));
+        return queries;
+    }
+
+    private static void add(Map<String, PlannedQuery> queries, String name, String index,
+                            Consumer<BookingRepository> call) {
+        queries.put(name, new PlannedQuery(index, call));
+    }
+
+    /**
+     * Индексы, по которым план читает bookings; первичные ключи сводятся к PRIMARY_KEY,
+     * их имена в H2 генерируются.
+     */
+    private static Set<String> bookingsIndexes(String plan) {
+        Set<String> indexes = new TreeSet<>();
+        Matcher matcher = BOOKINGS_INDEX.matcher(plan);
+        while (matcher.find()) {
+            String index = matcher.group(1);
+            indexes.add(index.startsWith(PRIMARY_KEY) ? PRIMARY_KEY : index);
+        }
+        return indexes;
+    }
+
+    private static void drain(Stream<?> rows) {
+        try (rows) {
+            rows.forEach(row -> {
+            });
+        }
+    }
+
+    private static Set<String> declaredQueries() {
+        Set<String> names = new HashSet<>();
+        for (Method method : BookingRepository.class.getDeclaredMethods()) {
+            if (!method.isDefault() && !method.isSynthetic()) {
+                names.add(method.getName());
+            }
+        }
+        return names;
+    }
+
+    private String explain(String query, CapturedStatement captured) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("EXPLAIN " + captured.sql)) {
+            int count = statement.getParameterMetaData().getParameterCount();
+            assertThat(captured.parameters.keySet()).as(query + ": параметры").hasSize(count);
+            for (Map.Entry<Integer, Object> parameter : captured.parameters.entrySet()) {
+                statement.setObject(parameter.getKey(), parameter.getValue());
+            }
+            StringBuilder plan = new StringBuilder();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    plan.append(resultSet.getString(1));
+                }
+            }
+            return plan.toString();
+        }
+    }
+
+    static class PlannedQuery {
+        final String index;
+        final Consumer<BookingRepository> call;
+
+        PlannedQuery(String index, Consumer<BookingRepository> call) {
+            this.index = index;
+            this.call = call;
+        }
+    }
+
+    static class CapturedStatement {
+        final String sql;
+        final Map<Integer, Object> parameters = new TreeMap<>();
+
+        CapturedStatement(String sql) {
+            this.sql = sql;
+        }
+    }
+
+    /**
+     * Обертки DataSource, Connection и PreparedStatement, запоминающие SQL и значения, переданные через set*.
+     */
+    static class JdbcCapture {
+        static final List<CapturedStatement> STATEMENTS = Collections.synchronizedList(new ArrayList<>());
+
+        static DataSource wrap(DataSource dataSource) {
+            return (DataSource) proxy(dataSource, (method, result, args) ->
+                    result instanceof Connection ? connection((Connection) result) : result);
+        }
+
+        private static Connection connection(Connection connection) {
+            return (Connection) proxy(connection, (method, result, args) -> {
+                if (method.getName().equals("prepareStatement") && result instanceof PreparedStatement) {
+                    CapturedStatement captured = new CapturedStatement((String) args[0]);
+                    STATEMENTS.add(captured);
+                    return statement((PreparedStatement) result, captured);
+                }
+                return result;
+            });
+        }
+
+        private static PreparedStatement statement(PreparedStatement statement, CapturedStatement captured) {
+            return (PreparedStatement) proxy(statement, (method, result, args) -> {
+                if (method.getName().startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                    captured.parameters.put((Integer) args[0], method.getName().equals("setNull") ? null : args[1]);
+                }
+                return result;
+            });
+        }
+
+        private static Object proxy(Object target, AfterCall afterCall) {
+            return Proxy.newProxyInstance(JdbcCapture.class.getClassLoader(), ClassUtils.getAllInterfaces(target),
+                    (proxy, method, args) -> {
+                        try {
+                            return afterCall.apply(method, method.invoke(target, args), args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getTargetException();
+                        }
+                    });
+        }
+
+        private interface AfterCall {
+            Object apply(Method method, Object result, Object[] args);
+        }
+    }
+
+    @TestConfiguration
+    static class JdbcCaptureConfig {
+        @Bean
+        static BeanPostProcessor jdbcCapture() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource ? JdbcCapture.wrap((DataSource) bean) : bean;
+                }
+            };
+        }
+    }
+}
@@ -8,8 +8,11 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import ru.practicum.shareit.booking.dto.BookingRow;
+import ru.practicum.shareit.booking.dto.BookingShort;
 import ru.practicum.shareit.booking.dto.Status;
 import ru.practicum.shareit.booking.model.Booking;
 import ru.practicum.shareit.item.model.Item;
@@ -19,6 +22,8 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -37,6 +42,7 @@ class BookingRepositoryTest {
     private static final String endTimeTwo = "2023-06-30T02:30:22";
     private static final String nowDate = "2023-10-20T18:14:49";
     private static final String nowDateTwo = "2023-07-24T01:29:22";
+    private static final String nowCurrent = "2023-09-21T18:14:50";
 
 
     @Test
@@ -77,199 +83,242 @@ class BookingRepositoryTest {
     }
 
     @Test
-    void findAllByStatusAndBookerPageable() {
-        Booking bookingTwo = em.find(Booking.class, 2L);
+    void findLastAndNextByItemIdIn() {
+        List<BookingShort> bookings = bookRepository
+                .findLastAndNextByItemIdIn(List.of(1L, 3L), LocalDateTime.parse("2023-09-25T00:00:00", formatter));
+        assertThat(bookings.size()).isEqualTo(3);
+        assertThat(bookings).extracting(BookingShort::getId).containsExactlyInAnyOrder(3L, 8L, 2L);
+        BookingShort next = bookings.stream().filter(b -> b.getId() == 8L).findFirst().get();
+        assertThat(next.getItemId()).isEqualTo(1L);
+        assertThat(next.getBookerId()).isEqualTo(3L);
+        assertThat(next.getStatus()).isEqualTo(Status.APPROVED);
+        assertThat(next.getStart()).isEqualTo(LocalDateTime.parse("2023-09-30T18:14:53", formatter));
+    }
+
+    @Test
+    void findAllByBookerBefore() {
         User user = em.find(User.class, 1L);
-        List<Booking> findBooking = bookRepository
-                .findAllByStatusAndBooker(Status.APPROVED, user, PageRequest.of(0, 2, Sort.Direction.DESC, "start"));
-        assertThat(findBooking.size()).isEqualTo(2);
-        assertThat(findBooking.get(0)).isEqualTo(bookingTwo);
+        Slice<BookingRow> firstPage = bookRepository
+                .findAllByBookerBefore(user, LocalDateTime.parse("2023-09-21T18:14:46", formatter), 3L, PageRequest.of(0, 2));
+        assertThat(firstPage.getContent()).extracting(BookingRow::getId).containsExactly(2L, 7L);
+        assertThat(firstPage.hasNext()).isTrue();
+        BookingRow last = firstPage.getContent().get(1);
+        List<BookingRow> secondPage = bookRepository
+                .findAllByBookerBefore(user, last.getStart(), last.getId(), PageRequest.of(0, 2)).getContent();
+        assertThat(secondPage).extracting(BookingRow::getId).containsExactly(6L, 5L);
     }
 
     @Test
-    void findAllByStatusAndBookerSort() {
+    void findAllByStatusAndItemOwnerBefore() {
+        User user = em.find(User.class, 2L);
+        List<BookingRow> bookings = bookRepository.findAllByStatusAndItemOwnerBefore(Status.APPROVED, user,
+                LocalDateTime.parse("2023-09-20T18:14:55", formatter), 6L, PageRequest.of(0, 10)).getContent();
+        assertThat(bookings).extracting(BookingRow::getId).containsExactly(1L);
+    }
+
+    @Test
+    void findRowsByBookerCarryResponseColumns() {
         User user = em.find(User.class, 1L);
-        List<Booking> findBooking = bookRepository
-                .findAllByStatusAndBooker(Status.APPROVED, user, Sort.by(Sort.Direction.DESC, "start"));
-        assertThat(findBooking.size()).isEqualTo(4);
+        List<BookingRow> rows = bookRepository.findRowsByBooker(user, Sort.by(Sort.Direction.DESC, "start"));
+        assertThat(rows.size()).isEqualTo(5);
+        assertThat(rows.get(0).getId()).isEqualTo(2L);
+        BookingRow row = rows.stream().filter(r -> r.getId() == 2L).findFirst().get();
+        assertThat(row.getStart()).isEqualTo(LocalDateTime.parse("2023-09-21T18:14:46", formatter));
+        assertThat(row.getEnd()).isEqualTo(LocalDateTime.parse("2023-09-22T18:14:46", formatter));
+        assertThat(row.getStatus()).isEqualTo(Status.APPROVED);
+        assertThat(row.getItemId()).isEqualTo(3L);
+        assertThat(row.getItemName()).isEqualTo("Отвертка");
+        assertThat(row.getItemDescription()).isEqualTo("Аккумуляторная отвертка");
+        assertThat(row.getItemAvailable()).isTrue();
+        assertThat(row.getOwnerId()).isEqualTo(2L);
+        assertThat(row.getOwnerName()).isEqualTo("user");
+        assertThat(row.getOwnerEmail()).isEqualTo("user@user.com");
+        assertThat(row.getBookerId()).isEqualTo(1L);
+        assertThat(row.getBookerName()).isEqualTo("updateName");
+        assertThat(row.getBookerEmail()).isEqualTo("updateName@user.com");
+    }
+
+    @Test
+    void findCurrentRowsByBookerSort() {
+        User user = em.find(User.class, 1L);
+        List<BookingRow> rows = bookRepository
+                .findCurrentRowsByBooker(user, LocalDateTime.parse(nowCurrent, formatter), Sort.by(Sort.Direction.DESC, "start"));
+        assertThat(rows).extracting(BookingRow::getId).containsExactly(2L, 5L);
+    }
+
+    @Test
+    void findPastRowsByBookerSort() {
+        User user = em.find(User.class, 1L);
+        List<BookingRow> rows = bookRepository
+                .findPastRowsByBooker(user, LocalDateTime.parse(nowCurrent, formatter), Sort.by(Sort.Direction.DESC, "start", "id"));
+        assertThat(rows).extracting(BookingRow::getId).containsExactly(7L, 6L, 1L);
+    }
+
+    @Test
+    void findFutureRowsByBookerSort() {
+        List<BookingRow> rows = bookRepository
+                .findFutureRowsByBooker(em.find(User.class, 1L), LocalDateTime.parse(nowCurrent, formatter), Sort.by(Sort.Direction.DESC, "start"));
+        assertThat(rows).isEmpty();
+        rows = bookRepository
+                .findFutureRowsByBooker(em.find(User.class, 3L), LocalDateTime.parse(nowCurrent, formatter), Sort.by(Sort.Direction.DESC, "start"));
+        assertThat(rows).extracting(BookingRow::getId).containsExactly(8L);
     }
 
     @Test
-    void findAllByStatusAndItemOwnerSort() {
+    void findRowsByBookerPageable() {
         User user = em.find(User.class, 1L);
-        Booking booking = em.find(Booking.class, 3L);
-        List<Booking> findBooking = bookRepository
-                .findAllByStatusAndItemOwner(Status.REJECTED, user, Sort.by(Sort.Direction.DESC, "start"));
-        assertThat(findBooking.size()).isEqualTo(1);
-        assertThat(findBooking).contains(booking);
+        List<BookingRow> rows = bookRepository
+                .findRowsByBooker(user, PageRequest.of(0, 3, Sort.Direction.DESC, "start", "id")).getContent();
+        assertThat(rows).extracting(BookingRow::getId).containsExactly(2L, 7L, 6L);
     }
 
     @Test
-    void findAllByItemOwnerSort() {
+    void findRowsByBookerAndStatusPageable() {
         User user = em.find(User.class, 1L);
-        Booking booking = em.find(Booking.class, 3L);
-        Booking bookingOther = em.find(Booking.class, 8L);
-        List<Booking> findBooking = bookRepository
-                .findAllByItemOwner(user, Sort.by(Sort.Direction.DESC, "start"));
-        assertThat(findBooking.size()).isEqualTo(2);
-        assertThat(findBooking).contains(booking, bookingOther);
-        assertThat(findBooking.get(0)).isEqualTo(bookingOther);
+        List<BookingRow> rows = bookRepository
+                .findRowsByBookerAndStatus(user, Status.APPROVED, PageRequest.of(0, 2, Sort.Direction.DESC, "start")).getContent();
+        assertThat(rows.size()).isEqualTo(2);
+        assertThat(rows.get(0).getId()).isEqualTo(2L);
     }
 
     @Test
-    void findAllByStatusAndItemOwnerPageable() {
+    void findRowsByBookerAndStatusSort() {
         User user = em.find(User.class, 1L);
-        Booking booking = em.find(Booking.class, 3L);
-        List<Booking> findBooking = bookRepository
-                .findAllByStatusAndItemOwner(Status.REJECTED, user, PageRequest.of(0, 2, Sort.Direction.DESC, "start"));
-        assertThat(findBooking.size()).isEqualTo(1);
-        assertThat(findBooking).contains(booking);
+        List<BookingRow> rows = bookRepository
+                .findRowsByBookerAndStatus(user, Status.APPROVED, Sort.by(Sort.Direction.DESC, "start"));
+        assertThat(rows).extracting(BookingRow::getId).containsExactlyInAnyOrder(1L, 2L, 6L, 7L);
     }
 
     @Test
-    void testFindAllByItemOwnerPageable() {
+    void findCurrentRowsByBookerPageable() {
         User user = em.find(User.class, 1L);
-        Booking booking = em.find(Booking.class, 3L);
-        Booking bookingOther = em.find(Booking.class, 8L);
-        List<Booking> findBooking = bookRepository
-                .findAllByItemOwner(user, PageRequest.of(0, 3, Sort.Direction.DESC, "start"));
-        assertThat(findBooking.size()).isEqualTo(2);
-        assertThat(findBooking).contains(booking, bookingOther);
-        assertThat(findBooking.get(0)).isEqualTo(bookingOther);
+        List<BookingRow> rows = bookRepository.findCurrentRowsByBooker(user, LocalDateTime.parse(nowCurrent, formatter),
+                PageRequest.of(0, 3, Sort.Direction.DESC, "start")).getContent();
+        assertThat(rows).extracting(BookingRow::getId).containsExactly(2L, 5L);
     }
 
     @Test
-    void findAllByStartBeforeAndEndAfterSort() {
-        Booking bookingTwo = em.find(Booking.class, 2L);
-        Booking booking = em.find(Booking.class, 3L);
-        Booking bookingOther = em.find(Booking.class, 8L);
-        List<Booking> findBooking = bookRepository
-                .findAllByStartBeforeAndEndAfter(LocalDateTime.parse(startTimeTwo, formatter),
-                        LocalDateTime.parse(endTimeTwo, formatter), Sort.by(Sort.Direction.DESC, "start"));
-        assertThat(findBooking.size()).isEqualTo(8);
-        assertThat(findBooking).contains(bookingTwo, booking, bookingOther);
-        assertThat(findBooking.get(0)).isEqualTo(bookingOther);
+    void findPastRowsByBookerPageable() {
+        User user = em.find(User.class, 1L);
+        List<BookingRow> rows = bookRepository.findPastRowsByBooker(user, LocalDateTime.parse(nowCurrent, formatter),
+                PageRequest.of(0, 3, Sort.Direction.DESC, "start", "id")).getContent();
+        assertThat(rows).extracting(BookingRow::getId).containsExactly(7L, 6L, 1L);
     }
 
     @Test
-    void findAllByEndBeforeSort() {
-        Booking booking = em.find(Booking.class, 3L);
-        List<Booking> findBooking = bookRepository
-                .findAllByEndBefore(LocalDateTime.parse(endTimeOne, formatter), Sort.by(Sort.Direction.DESC, "start"));
-        assertThat(findBooking.size()).isEqualTo(7);
-        assertThat(findBooking.get(0)).isEqualTo(booking);
+    void findFutureRowsByBookerPageable() {
+        User user = em.find(User.class, 1L);
+        List<BookingRow> rows = bookRepository.findFutureRowsByBooker(user, LocalDateTime.parse("2023-09-20T18:14:50", formatter),
+                PageRequest.of(0, 3, Sort.Direction.DESC, "start", "id")).getContent();
+        assertThat(rows).extracting(BookingRow::getId).containsExactly(2L, 7L, 6L);
     }
 
     @Test
-    void findAllByStartAfterSort() {
-        Booking booking = em.find(Booking.class, 8L);
-        List<Booking> findBooking = bookRepository
-                .findAllByStartAfter(LocalDateTime.parse(startTimeOne, formatter), Sort.by(Sort.Direction.DESC, "start"));
-        assertThat(findBooking.size()).isEqualTo(8);
-        assertThat(findBooking.get(0)).isEqualTo(booking);
+    void findRowsByItemOwnerSort() {
+        User user = em.find(User.class, 1L);
+        List<BookingRow> rows = bookRepository.findRowsByItemOwner(user, Sort.by(Sort.Direction.DESC, "start"));
+        assertThat(rows).extracting(BookingRow::getId).containsExactly(8L, 3L);
     }
 
     @Test
-    void findAllByStartBeforeAndEndAfterPageable() {
-        Booking bookingTwo = em.find(Booking.class, 2L);
+    void findRowsByItemOwnerPageable() {
         User user = em.find(User.class, 1L);
-        List<Booking> findBooking = bookRepository
-                .findAllByStartBeforeAndEndAfterAndBooker(LocalDateTime.parse(startTimeTwo, formatter),
-                        LocalDateTime.parse(endTimeTwo, formatter), user, PageRequest.of(0, 3, Sort.Direction.DESC, "start"));
-        assertThat(findBooking.size()).isEqualTo(3);
-        assertThat(findBooking.get(0)).isEqualTo(bookingTwo);
+        List<BookingRow> rows = bookRepository.findRowsByItemOwner(user, PageRequest.of(0, 3, Sort.Direction.DESC, "start")).getContent();
+        assertThat(rows).extracting(BookingRow::getId).containsExactly(8L, 3L);
     }
 
     @Test
-    void findAllByEndBeforePageable() {
-        Booking booking = em.find(Booking.class, 2L);
+    void findRowsByItemOwnerAndStatusSort() {
         User user = em.find(User.class, 1L);
-        List<Booking> findBooking = bookRepository
-                .findAllByEndBeforeAndBooker(LocalDateTime.parse(endTimeOne, formatter), user, PageRequest.of(0, 3, Sort.Direction.DESC, "start"));
-        assertThat(findBooking.size()).isEqualTo(3);
-        assertThat(findBooking.get(0)).isEqualTo(booking);
+        List<BookingRow> rows = bookRepository
+                .findRowsByItemOwnerAndStatus(user, Status.REJECTED, Sort.by(Sort.Direction.DESC, "start"));
+        assertThat(rows).extracting(BookingRow::getId).containsExactly(3L);
     }
 
     @Test
-    void findAllByStartAfterPageable() {
-        Booking booking = em.find(Booking.class, 2L);
+    void findRowsByItemOwnerAndStatusPageable() {
         User user = em.find(User.class, 1L);
-        List<Booking> findBooking = bookRepository
-                .findAllByStartAfterAndBooker(LocalDateTime.parse(startTimeOne, formatter), user, PageRequest.of(0, 3, Sort.Direction.DESC, "start"));
-        assertThat(findBooking.size()).isEqualTo(3);
-        assertThat(findBooking.get(0)).isEqualTo(booking);
+        List<BookingRow> rows = bookRepository
+                .findRowsByItemOwnerAndStatus(user, Status.REJECTED, PageRequest.of(0, 2, Sort.Direction.DESC, "start")).getContent();
+        assertThat(rows).extracting(BookingRow::getId).containsExactly(3L);
     }
 
     @Test
-    void findAllByItemOwnerAndStartBeforeAndEndAfterSort() {
+    void findCurrentRowsByItemOwnerSort() {
         User user = em.find(User.class, 1L);
-        Booking bookingTwo = em.find(Booking.class, 3L);
-        Booking bookingOther = em.find(Booking.class, 8L);
-        List<Booking> findBooking = bookRepository
-                .findAllByItemOwnerAndStartBeforeAndEndAfter(user, LocalDateTime.parse(startTimeTwo, formatter),
-                        LocalDateTime.parse(endTimeTwo, formatter), Sort.by(Sort.Direction.DESC, "start"));
-        assertThat(findBooking.size()).isEqualTo(2);
-        assertThat(findBooking).contains(bookingTwo, bookingOther);
-        assertThat(findBooking.get(0)).isEqualTo(bookingOther);
+        List<BookingRow> rows = bookRepository.findCurrentRowsByItemOwner(user,
+                LocalDateTime.parse("2023-09-30T20:00:00", formatter), Sort.by(Sort.Direction.DESC, "start"));
+        assertThat(rows).extracting(BookingRow::getId).containsExactly(8L);
     }
 
     @Test
-    void findAllByItemOwnerAndEndBeforeSort() {
+    void findCurrentRowsByItemOwnerPageable() {
         User user = em.find(User.class, 1L);
-        Booking bookingTwo = em.find(Booking.class, 3L);
-        Booking bookingOther = em.find(Booking.class, 8L);
-        List<Booking> findBooking = bookRepository
-                .findAllByItemOwnerAndEndBefore(user, LocalDateTime.parse(startTimeTwo, formatter), Sort.by(Sort.Direction.DESC, "start"));
-        assertThat(findBooking.size()).isEqualTo(2);
-        assertThat(findBooking).contains(bookingTwo, bookingOther);
-        assertThat(findBooking.get(0)).isEqualTo(bookingOther);
+        List<BookingRow> rows = bookRepository.findCurrentRowsByItemOwner(user,
+                LocalDateTime.parse("2023-09-30T20:00:00", formatter), PageRequest.of(0, 3, Sort.Direction.DESC, "start")).getContent();
+        assertThat(rows).extracting(BookingRow::getId).containsExactly(8L);
     }
 
     @Test
-    void findAllByItemOwnerAndStartAfterSort() {
+    void findPastRowsByItemOwnerSort() {
         User user = em.find(User.class, 1L);
-        Booking bookingTwo = em.find(Booking.class, 3L);
-        Booking bookingOther = em.find(Booking.class, 8L);
-        List<Booking> findBooking = bookRepository
-                .findAllByItemOwnerAndStartAfter(user, LocalDateTime.parse(startTimeOne, formatter), Sort.by(Sort.Direction.DESC, "start"));
-        assertThat(findBooking.size()).isEqualTo(2);
-        assertThat(findBooking).contains(bookingTwo, bookingOther);
-        assertThat(findBooking.get(0)).isEqualTo(bookingOther);
+        List<BookingRow> rows = bookRepository.findPastRowsByItemOwner(user,
+                LocalDateTime.parse(startTimeTwo, formatter), Sort.by(Sort.Direction.DESC, "start"));
+        assertThat(rows).extracting(BookingRow::getId).containsExactly(8L, 3L);
     }
 
     @Test
-    void findAllByItemOwnerAndStartBeforeAndEndAfterPageable() {
+    void findPastRowsByItemOwnerPageable() {
         User user = em.find(User.class, 1L);
-        Booking bookingTwo = em.find(Booking.class, 3L);
-        Booking bookingOther = em.find(Booking.class, 8L);
-        List<Booking> findBooking = bookRepository
-                .findAllByItemOwnerAndStartBeforeAndEndAfter(user, LocalDateTime.parse(startTimeTwo, formatter),
-                        LocalDateTime.parse(endTimeTwo, formatter), PageRequest.of(0, 3, Sort.Direction.DESC, "start"));
-        assertThat(findBooking.size()).isEqualTo(2);
-        assertThat(findBooking).contains(bookingTwo, bookingOther);
-        assertThat(findBooking.get(0)).isEqualTo(bookingOther);
+        List<BookingRow> rows = bookRepository.findPastRowsByItemOwner(user,
+                LocalDateTime.parse(startTimeTwo, formatter), PageRequest.of(0, 1, Sort.Direction.DESC, "start")).getContent();
+        assertThat(rows).extracting(BookingRow::getId).containsExactly(8L);
+    }
 
+    @Test
+    void findFutureRowsByItemOwnerSort() {
+        User user = em.find(User.class, 1L);
+        List<BookingRow> rows = bookRepository.findFutureRowsByItemOwner(user,
+                LocalDateTime.parse(startTimeOne, formatter), Sort.by(Sort.Direction.DESC, "start"));
+        assertThat(rows).extracting(BookingRow::getId).containsExactly(8L, 3L);
     }
 
     @Test
-    void findAllByItemOwnerAndEndBeforePageable() {
+    void findFutureRowsByItemOwnerPageable() {
         User user = em.find(User.class, 1L);
-        Booking bookingOther = em.find(Booking.class, 8L);
-        List<Booking> findBooking = bookRepository
-                .findAllByItemOwnerAndEndBefore(user, LocalDateTime.parse(startTimeTwo, formatter), PageRequest.of(0, 1, Sort.Direction.DESC, "start"));
-        assertThat(findBooking.size()).isEqualTo(1);
-        assertThat(findBooking).contains(bookingOther);
-        assertThat(findBooking.get(0)).isEqualTo(bookingOther);
+        List<BookingRow> rows = bookRepository.findFutureRowsByItemOwner(user,
+                LocalDateTime.parse(startTimeOne, formatter), PageRequest.of(0, 1, Sort.Direction.DESC, "start")).getContent();
+        assertThat(rows).extracting(BookingRow::getId).containsExactly(8L);
     }
 
     @Test
-    void findAllByItemOwnerAndStartAfterPageable() {
+    void findAllByItemIdAndStatusInAndEndAfter() {
+        List<Booking> bookings = bookRepository.findAllByItemIdAndStatusInAndEndAfter(3L,
+                List.of(Status.WAITING, Status.APPROVED), LocalDateTime.parse("2023-09-20T18:14:50", formatter));
+        assertThat(bookings).extracting(Booking::getId).containsExactlyInAnyOrder(2L, 6L);
+    }
+
+    @Test
+    void findItemIdById() {
+        assertThat(bookRepository.findItemIdById(4L)).contains(2L);
+        assertThat(bookRepository.findItemIdById(100L)).isEmpty();
+    }
+
+    @Test
+    void streamRowsByBookerOrdersByStart() {
         User user = em.find(User.class, 1L);
-        Booking bookingOther = em.find(Booking.class, 8L);
-        List<Booking> findBooking = bookRepository
-                .findAllByItemOwnerAndStartAfter(user, LocalDateTime.parse(startTimeOne, formatter), PageRequest.of(0, 1, Sort.Direction.DESC, "start"));
-        assertThat(findBooking.size()).isEqualTo(1);
-        assertThat(findBooking).contains(bookingOther);
-        assertThat(findBooking.get(0)).isEqualTo(bookingOther);
+        try (Stream<BookingRow> rows = bookRepository.streamRowsByBooker(user)) {
+            List<Long> ids = rows.map(BookingRow::getId).collect(Collectors.toList());
+            assertThat(ids).containsExactlyInAnyOrder(1L, 2L, 5L, 6L, 7L);
+            assertThat(ids).startsWith(2L).endsWith(1L);
+        }
+    }
+
+    @Test
+    void streamPastRowsByItemOwner() {
+        User user = em.find(User.class, 2L);
+        try (Stream<BookingRow> rows = bookRepository.streamPastRowsByItemOwner(user, LocalDateTime.parse(nowCurrent, formatter))) {
+            assertThat(rows.map(BookingRow::getId)).containsExactly(4L, 6L, 1L);
+        }
     }
-}
\ No newline at end of file
+}
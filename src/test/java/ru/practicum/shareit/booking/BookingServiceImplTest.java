@@ -6,31 +6,49 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
-import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.domain.Sort;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import ru.practicum.shareit.EntityVersions;
+import ru.practicum.shareit.booking.dto.BookingBatchResult;
+import ru.practicum.shareit.booking.dto.BookingCursor;
 import ru.practicum.shareit.booking.dto.BookingDto;
 import ru.practicum.shareit.booking.dto.BookingDtoRequest;
+import ru.practicum.shareit.booking.dto.BookingRow;
 import ru.practicum.shareit.booking.dto.State;
 import ru.practicum.shareit.booking.dto.Status;
 import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.exception.ConflictException;
 import ru.practicum.shareit.exception.NotFoundException;
 import ru.practicum.shareit.exception.ValidationException;
 import ru.practicum.shareit.item.ItemRepository;
 import ru.practicum.shareit.item.model.Item;
-import ru.practicum.shareit.request.ItemRequest;
 import ru.practicum.shareit.user.User;
-import ru.practicum.shareit.user.UserRepository;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(SpringExtension.class)
@@ -42,7 +60,14 @@ class BookingServiceImplTest {
     @Mock
     private ItemRepository itemRepository;
     @Mock
-    private UserRepository userRepository;
+    private BookingIntervalIndex bookingIntervalIndex;
+    @Mock
+    private BookingLocks bookingLocks;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @Mock
+    private EntityVersions entityVersions;
+    private BookingIntervals bookingIntervals;
     private BookingDto firstBookingDto;
     private BookingDto toBookingDto;
     private Booking bookingOne;
@@ -51,7 +76,6 @@ class BookingServiceImplTest {
     private Item itemTwo;
     private User userOne;
     private User userTwo;
-    private ItemRequest itemRequest;
     private BookingDtoRequest bookingDtoRequest;
     private DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
     private static final String startTimeOne = "2023-06-21T01:29:22";
@@ -63,14 +87,17 @@ class BookingServiceImplTest {
 
     @BeforeEach
     void init() {
+        bookingIntervals = new BookingIntervals();
+        when(bookingIntervalIndex.forItem(anyLong())).thenReturn(bookingIntervals);
+        when(bookingLocks.forItem(anyLong())).thenReturn(new ReentrantLock());
+        when(bookingRepository.findItemIdById(anyLong())).thenReturn(Optional.of(2L));
         bookingDtoRequest = new BookingDtoRequest(1, startTimeOne, endTimeOne, 2L);
 
 
-        itemRequest = new ItemRequest();
         userOne = new User(1, "name", "email");
         userTwo = new User(2, "name2", "email2");
-        itemOne = new Item(1, "item1", "description1", true, userTwo, itemRequest);
-        itemTwo = new Item(2, "item2", "description2", true, userOne, itemRequest);
+        itemOne = new Item(1, "item1", "description1", true, userTwo, null);
+        itemTwo = new Item(2, "item2", "description2", true, userOne, null);
         bookingOne = new Booking(1, LocalDateTime.parse(startTimeOne, formatter), LocalDateTime.parse(endTimeOne, formatter), itemTwo, userOne, Status.WAITING);
         bookingTwo = new Booking(2, LocalDateTime.parse(startTimeTwo, formatter), LocalDateTime.parse(endTimeTwo, formatter), itemOne, userTwo, Status.APPROVED);
         firstBookingDto = new BookingDto(1, LocalDateTime.parse(startTimeOne, formatter),
@@ -88,8 +115,7 @@ class BookingServiceImplTest {
         bookingDtoRequest.setEnd(formatter.format(LocalDateTime.now().plusDays(2)));
         when(bookingRepository.save(any())).thenReturn(bookingTwo);
         when(itemRepository.findById(anyLong())).thenReturn(Optional.of(itemTwo));
-        when(userRepository.findById(anyLong())).thenReturn(Optional.of(userTwo));
-        BookingDto booking = bookingService.createBooking(bookingDtoRequest, 1L);
+        BookingDto booking = bookingService.createBooking(bookingDtoRequest, userTwo);
 
         assertThat(booking.getStatus());
         assertThat(booking.getId()).isEqualTo(2);
@@ -100,17 +126,36 @@ class BookingServiceImplTest {
     }
 
     @Test
-    void createBookingExpectNotFoundExceptionUser() {
-        Assertions.assertThrows(NotFoundException.class, () -> {
-            bookingService.createBooking(bookingDtoRequest, 1L);
-        }, String.format("Пользователь %s не найден", 1L));
+    void createBookingExpectConflictWhenIntervalOverlaps() {
+        LocalDateTime start = LocalDateTime.now().plusDays(1).withNano(0);
+        bookingIntervals.add(5L, start.minusHours(1), start.plusHours(1));
+        bookingDtoRequest.setStart(formatter.format(start));
+        bookingDtoRequest.setEnd(formatter.format(start.plusDays(1)));
+        when(itemRepository.findById(anyLong())).thenReturn(Optional.of(itemTwo));
+        Assertions.assertThrows(ConflictException.class, () -> {
+            bookingService.createBooking(bookingDtoRequest, userTwo);
+        }, "Вещь уже забронирована на это время");
+        verify(bookingRepository, never()).save(any());
+    }
+
+    @Test
+    void createBookingAddsIntervalToIndex() throws Exception {
+        bookingDtoRequest.setStart(formatter.format(LocalDateTime.now().plusDays(1)));
+        bookingDtoRequest.setEnd(formatter.format(LocalDateTime.now().plusDays(2)));
+        when(bookingRepository.save(any())).thenReturn(bookingTwo);
+        when(itemRepository.findById(anyLong())).thenReturn(Optional.of(itemTwo));
+        bookingService.createBooking(bookingDtoRequest, userTwo);
+
+        assertThat(bookingIntervals.size()).isEqualTo(1);
+        assertThat(bookingIntervals.overlaps(bookingTwo.getStart(), bookingTwo.getEnd())).isTrue();
+        verify(itemRepository).offerNextBooking(itemTwo.getId(), bookingTwo.getId(), bookingTwo.getStart());
+        verify(entityVersions).itemChanged(itemTwo.getId());
     }
 
     @Test
     void createBookingExpectNotFoundExceptionItem() {
-        when(userRepository.findById(anyLong())).thenReturn(Optional.of(userTwo));
         Assertions.assertThrows(NotFoundException.class, () -> {
-            bookingService.createBooking(bookingDtoRequest, 1L);
+            bookingService.createBooking(bookingDtoRequest, userTwo);
         }, String.format("Вещь по айди %s не найдена!", bookingDtoRequest.getId()));
     }
 
@@ -121,9 +166,8 @@ class BookingServiceImplTest {
         itemTwo.setAvailable(false);
         when(bookingRepository.save(any())).thenReturn(bookingTwo);
         when(itemRepository.findById(anyLong())).thenReturn(Optional.of(itemTwo));
-        when(userRepository.findById(anyLong())).thenReturn(Optional.of(userTwo));
         Assertions.assertThrows(ValidationException.class, () -> {
-            BookingDto booking = bookingService.createBooking(bookingDtoRequest, 1L);
+            BookingDto booking = bookingService.createBooking(bookingDtoRequest, userTwo);
         }, "Вещь недоступна!");
 
     }
@@ -132,9 +176,8 @@ class BookingServiceImplTest {
     void createBookingExpectNotValidateStartAndEndOfBooking() {
         when(bookingRepository.save(any())).thenReturn(bookingTwo);
         when(itemRepository.findById(anyLong())).thenReturn(Optional.of(itemTwo));
-        when(userRepository.findById(anyLong())).thenReturn(Optional.of(userTwo));
         Assertions.assertThrows(ValidationException.class, () -> {
-            BookingDto booking = bookingService.createBooking(bookingDtoRequest, 1L);
+            BookingDto booking = bookingService.createBooking(bookingDtoRequest, userTwo);
         }, "Некорректное время бронирования");
 
     }
@@ -146,15 +189,90 @@ class BookingServiceImplTest {
         itemTwo.setOwner(userOne);
         when(bookingRepository.save(any())).thenReturn(bookingTwo);
         when(itemRepository.findById(anyLong())).thenReturn(Optional.of(itemTwo));
-        when(userRepository.findById(anyLong())).thenReturn(Optional.of(userOne));
         Assertions.assertThrows(NotFoundException.class, () -> {
-            BookingDto booking = bookingService.createBooking(bookingDtoRequest, 1L);
+            BookingDto booking = bookingService.createBooking(bookingDtoRequest, userOne);
         }, String.format("Пользователь с айди %s не может забронировать свою вещь", 1L));
 
     }
 
     @Test
-    void approveTrueBooking() throws ValidationException, NotFoundException {
+    void createBookingsReportsEveryEntry() throws Exception {
+        LocalDateTime tomorrow = LocalDateTime.now().plusDays(1).withNano(0);
+        List<BookingDtoRequest> requests = List.of(
+                new BookingDtoRequest(0, formatter.format(tomorrow), formatter.format(tomorrow.plusDays(1)), 2L),
+                new BookingDtoRequest(0, formatter.format(tomorrow), formatter.format(tomorrow.plusDays(1)), 99L),
+                new BookingDtoRequest(0, formatter.format(tomorrow.plusHours(12)), formatter.format(tomorrow.plusDays(2)), 2L),
+                new BookingDtoRequest(0, startTimeOne, endTimeOne, 2L),
+                new BookingDtoRequest(0, formatter.format(tomorrow), formatter.format(tomorrow.plusDays(1)), 1L),
+                new BookingDtoRequest(0, formatter.format(tomorrow.plusDays(4)), formatter.format(tomorrow.plusDays(5)), 2L));
+        when(itemRepository.findAllByIdIn(any())).thenReturn(List.of(itemOne, itemTwo));
+        when(bookingLocks.forItems(any())).thenReturn(List.of(new ReentrantLock()));
+        when(bookingRepository.saveAll(any())).thenAnswer(invocation -> {
+            List<Booking> bookings = invocation.getArgument(0);
+            for (int i = 0; i < bookings.size(); i++) {
+                bookings.get(i).setId(10 + i);
+            }
+            return bookings;
+        });
+
+        List<BookingBatchResult> results = bookingService.createBookings(requests, userTwo);
+
+        assertThat(results).extracting(BookingBatchResult::getStatus).containsExactly(201, 404, 409, 400, 404, 201);
+        assertThat(results).extracting(BookingBatchResult::getIndex).containsExactly(0, 1, 2, 3, 4, 5);
+        assertThat(results.get(0).getBooking().getId()).isEqualTo(10);
+        assertThat(results.get(5).getBooking().getId()).isEqualTo(11);
+        assertThat(results.get(2).getError()).isEqualTo("Вещь уже забронирована на это время");
+        verify(bookingRepository, times(1)).saveAll(any());
+        verify(itemRepository, never()).findById(anyLong());
+        assertThat(bookingIntervals.size()).isEqualTo(2);
+        verify(itemRepository, times(1)).offerNextBooking(eq(2L), eq(10L), eq(tomorrow));
+        verify(itemRepository, times(1)).offerNextBooking(anyLong(), anyLong(), any());
+    }
+
+    @Test
+    void createBookingsReportsMissingItemIdAndNullEntries() throws Exception {
+        LocalDateTime tomorrow = LocalDateTime.now().plusDays(1).withNano(0);
+        List<BookingDtoRequest> requests = new ArrayList<>();
+        requests.add(new BookingDtoRequest(0, formatter.format(tomorrow), formatter.format(tomorrow.plusDays(1)), null));
+        requests.add(null);
+        when(bookingLocks.forItems(any())).thenReturn(List.of());
+
+        List<BookingBatchResult> results = bookingService.createBookings(requests, userTwo);
+
+        assertThat(results).extracting(BookingBatchResult::getStatus).containsExactly(400, 400);
+        assertThat(results).extracting(BookingBatchResult::getIndex).containsExactly(0, 1);
+        verify(itemRepository, never()).findAllByIdIn(any());
+        verify(bookingRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void createBookingsIgnoresClientBookingId() throws Exception {
+        LocalDateTime tomorrow = LocalDateTime.now().plusDays(1).withNano(0);
+        List<BookingDtoRequest> requests = List.of(
+                new BookingDtoRequest(1, formatter.format(tomorrow), formatter.format(tomorrow.plusDays(1)), 2L));
+        when(itemRepository.findAllByIdIn(any())).thenReturn(List.of(itemTwo));
+        when(bookingLocks.forItems(any())).thenReturn(List.of(new ReentrantLock()));
+        when(bookingRepository.saveAll(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        bookingService.createBookings(requests, userTwo);
+
+        verify(bookingRepository).saveAll(argThat(bookings -> {
+            List<Booking> saved = new ArrayList<>();
+            bookings.forEach(saved::add);
+            return saved.size() == 1 && saved.get(0).getId() == 0;
+        }));
+    }
+
+    @Test
+    void createBookingsExpectValidationExceptionWhenBatchTooLarge() {
+        Assertions.assertThrows(ValidationException.class, () -> {
+            bookingService.createBookings(Collections.nCopies(1001, bookingDtoRequest), userTwo);
+        });
+        verify(itemRepository, never()).findAllByIdIn(any());
+    }
+
+    @Test
+    void approveTrueBooking() throws ValidationException, NotFoundException, ConflictException {
         when(bookingRepository.findById(any())).thenReturn(Optional.of(bookingOne));
         when(bookingRepository.save(any())).thenReturn(bookingOne);
         when(itemRepository.findById(anyLong())).thenReturn(Optional.of(itemTwo));
@@ -205,7 +323,7 @@ class BookingServiceImplTest {
     }
 
     @Test
-    void approveFalseBooking() throws ValidationException, NotFoundException {
+    void approveFalseBooking() throws ValidationException, NotFoundException, ConflictException {
         when(bookingRepository.findById(any())).thenReturn(Optional.of(bookingOne));
         when(bookingRepository.save(any())).thenReturn(bookingOne);
         when(itemRepository.findById(anyLong())).thenReturn(Optional.of(itemTwo));
@@ -219,6 +337,57 @@ class BookingServiceImplTest {
         assertThat(booking.getBooker()).isEqualTo(userOne);
     }
 
+    @Test
+    void approveFalseBookingRemovesIntervalFromIndex() throws Exception {
+        bookingIntervals.add(1L, bookingOne.getStart(), bookingOne.getEnd());
+        when(bookingRepository.findById(any())).thenReturn(Optional.of(bookingOne));
+        when(bookingRepository.save(any())).thenReturn(bookingOne);
+        when(itemRepository.findById(anyLong())).thenReturn(Optional.of(itemTwo));
+        bookingService.approveBooking(1L, false, 1L);
+
+        assertThat(bookingIntervals.size()).isZero();
+    }
+
+    @Test
+    void approveRejectedBookingExpectConflictWhenIntervalOverlaps() {
+        bookingOne.setStatus(Status.REJECTED);
+        bookingIntervals.add(3L, bookingOne.getStart().plusDays(1), bookingOne.getStart().plusDays(2));
+        when(bookingRepository.findById(any())).thenReturn(Optional.of(bookingOne));
+        when(itemRepository.findById(anyLong())).thenReturn(Optional.of(itemTwo));
+        Assertions.assertThrows(ConflictException.class, () -> {
+            bookingService.approveBooking(1L, true, 1L);
+        }, "Вещь уже забронирована на это время");
+        verify(bookingRepository, never()).save(any());
+    }
+
+    @Test
+    void approveBookingRetriesOnOptimisticLockingFailure() throws Exception {
+        Booking reloaded = new Booking(1, bookingOne.getStart(), bookingOne.getEnd(), itemTwo, userOne, Status.WAITING);
+        when(bookingRepository.findById(any())).thenReturn(Optional.of(bookingOne))
+                .thenReturn(Optional.of(reloaded));
+        when(bookingRepository.save(any()))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Booking.class, 1L))
+                .thenReturn(reloaded);
+        when(itemRepository.findById(anyLong())).thenReturn(Optional.of(itemTwo));
+        BookingDto booking = bookingService.approveBooking(1L, true, 1L);
+
+        assertThat(booking.getStatus()).isEqualTo(Status.APPROVED);
+        verify(bookingRepository, times(2)).findById(1L);
+        verify(bookingRepository, times(2)).save(any());
+    }
+
+    @Test
+    void approveBookingExpectConflictWhenRetriesExhausted() {
+        when(bookingRepository.findById(any())).thenAnswer(invocation -> Optional.of(
+                new Booking(1, bookingOne.getStart(), bookingOne.getEnd(), itemTwo, userOne, Status.WAITING)));
+        when(bookingRepository.save(any())).thenThrow(new ObjectOptimisticLockingFailureException(Booking.class, 1L));
+        when(itemRepository.findById(anyLong())).thenReturn(Optional.of(itemTwo));
+        Assertions.assertThrows(ConflictException.class, () -> {
+            bookingService.approveBooking(1L, true, 1L);
+        }, "Аренда изменена другим запросом, повторите попытку");
+        verify(bookingRepository, times(3)).save(any());
+    }
+
     @Test
     void getBookingById() throws NotFoundException {
         when(bookingRepository.findById(any())).thenReturn(Optional.of(bookingOne));
@@ -260,9 +429,8 @@ class BookingServiceImplTest {
 
     @Test
     void getBookingsByStateAll() throws Exception {
-        when(userRepository.findById(anyLong())).thenReturn(Optional.of(userOne));
-        when(bookingRepository.findAll((Sort) any())).thenReturn(List.of(bookingOne, bookingTwo));
-        List<BookingDto> bookings = bookingService.getBookingsByState(State.ALL, 1L);
+        when(bookingRepository.findRowsByBooker(eq(userOne), (Sort) any())).thenReturn(rows(bookingOne, bookingTwo));
+        List<BookingDto> bookings = bookingService.getBookingsByState(State.ALL, userOne);
         assertThat(bookings.size()).isEqualTo(2);
         assertThat(bookings).contains(firstBookingDto);
         assertThat(bookings).contains(toBookingDto);
@@ -273,9 +441,8 @@ class BookingServiceImplTest {
 
     @Test
     void getBookingsByStateCURRENT() throws Exception {
-        when(userRepository.findById(anyLong())).thenReturn(Optional.of(userOne));
-        when(bookingRepository.findAllByStartBeforeAndEndAfter(any(), any(), (Sort) any())).thenReturn(List.of(bookingOne));
-        List<BookingDto> bookings = bookingService.getBookingsByState(State.CURRENT, 1L);
+        when(bookingRepository.findCurrentRowsByBooker(eq(userOne), any(), (Sort) any())).thenReturn(rows(bookingOne));
+        List<BookingDto> bookings = bookingService.getBookingsByState(State.CURRENT, userOne);
         assertThat(bookings.size()).isEqualTo(1);
         assertThat(bookings).contains(firstBookingDto);
         assertThat(bookings.get(0)).isEqualTo(firstBookingDto);
@@ -284,9 +451,8 @@ class BookingServiceImplTest {
 
     @Test
     void getBookingsByStatePAST() throws Exception {
-        when(userRepository.findById(anyLong())).thenReturn(Optional.of(userOne));
-        when(bookingRepository.findAllByEndBefore(any(), (Sort) any())).thenReturn(List.of(bookingTwo));
-        List<BookingDto> bookings = bookingService.getBookingsByState(State.PAST, 1L);
+        when(bookingRepository.findPastRowsByBooker(eq(userOne), any(), (Sort) any())).thenReturn(rows(bookingTwo));
+        List<BookingDto> bookings = bookingService.getBookingsByState(State.PAST, userOne);
         assertThat(bookings.size()).isEqualTo(1);
         assertThat(bookings).contains(toBookingDto);
         assertThat(bookings.get(0)).isEqualTo(toBookingDto);
@@ -295,9 +461,8 @@ class BookingServiceImplTest {
 
     @Test
     void getBookingsByStateFUTURE() throws Exception {
-        when(userRepository.findById(anyLong())).thenReturn(Optional.of(userOne));
-        when(bookingRepository.findAllByStartAfter(any(), (Sort) any())).thenReturn(List.of(bookingOne));
-        List<BookingDto> bookings = bookingService.getBookingsByState(State.FUTURE, 1L);
+        when(bookingRepository.findFutureRowsByBooker(eq(userOne), any(), (Sort) any())).thenReturn(rows(bookingOne));
+        List<BookingDto> bookings = bookingService.getBookingsByState(State.FUTURE, userOne);
         assertThat(bookings.size()).isEqualTo(1);
         assertThat(bookings).contains(firstBookingDto);
         assertThat(bookings.get(0)).isEqualTo(firstBookingDto);
@@ -305,9 +470,8 @@ class BookingServiceImplTest {
 
     @Test
     void getBookingsByStateRejectedOrWaiting() throws Exception {
-        when(userRepository.findById(anyLong())).thenReturn(Optional.of(userOne));
-        when(bookingRepository.findAllByStatusAndBooker(any(), any(), (Sort) any())).thenReturn(List.of(bookingOne));
-        List<BookingDto> bookings = bookingService.getBookingsByState(State.REJECTED, 1L);
+        when(bookingRepository.findRowsByBookerAndStatus(any(), any(), (Sort) any())).thenReturn(rows(bookingOne));
+        List<BookingDto> bookings = bookingService.getBookingsByState(State.REJECTED, userOne);
         assertThat(bookings.size()).isEqualTo(1);
         assertThat(bookings).contains(firstBookingDto);
         assertThat(bookings.get(0)).isEqualTo(firstBookingDto);
@@ -315,9 +479,8 @@ class BookingServiceImplTest {
 
     @Test
     void getBookingsByStatePageableAll() throws Exception {
-        when(userRepository.findById(anyLong())).thenReturn(Optional.of(userOne));
-        when(bookingRepository.findAllByBooker(any(), (Pageable) any())).thenReturn(new PageImpl<>(List.of(bookingOne, bookingTwo)));
-        List<BookingDto> bookings = bookingService.getBookingsByState(State.ALL, 1L, 0, 2);
+        when(bookingRepository.findRowsByBooker(any(), (Pageable) any())).thenReturn(slice(bookingOne, bookingTwo));
+        List<BookingDto> bookings = bookingService.getBookingsByState(State.ALL, userOne, 0, 2).getContent();
         assertThat(bookings.size()).isEqualTo(2);
         assertThat(bookings).contains(firstBookingDto);
         assertThat(bookings).contains(toBookingDto);
@@ -325,25 +488,10 @@ class BookingServiceImplTest {
 
     }
 
-    @Test
-    void getBookingsByStateAllxpectNotFoundExceptionBooking() {
-        Assertions.assertThrows(NotFoundException.class, () -> {
-            bookingService.getBookingsByState(State.ALL, 1L);
-        }, String.format("Аренда не найдена по айди %s", 1L));
-    }
-
-    @Test
-    void getBookingsByStatePageableAllxpectNotFoundExceptionBooking() {
-        Assertions.assertThrows(NotFoundException.class, () -> {
-            bookingService.getBookingsByState(State.ALL, 1L, 1, 1);
-        }, String.format("Аренда не найдена по айди %s", 1L));
-    }
-
     @Test
     void getBookingsByStatePageableCURRENT() throws Exception {
-        when(userRepository.findById(anyLong())).thenReturn(Optional.of(userOne));
-        when(bookingRepository.findAllByStartBeforeAndEndAfterAndBooker(any(), any(), any(), (Pageable) any())).thenReturn(List.of(bookingOne));
-        List<BookingDto> bookings = bookingService.getBookingsByState(State.CURRENT, 1L, 0, 2);
+        when(bookingRepository.findCurrentRowsByBooker(any(), any(), (Pageable) any())).thenReturn(slice(bookingOne));
+        List<BookingDto> bookings = bookingService.getBookingsByState(State.CURRENT, userOne, 0, 2).getContent();
         assertThat(bookings.size()).isEqualTo(1);
         assertThat(bookings).contains(firstBookingDto);
         assertThat(bookings.get(0)).isEqualTo(firstBookingDto);
@@ -352,9 +500,8 @@ class BookingServiceImplTest {
 
     @Test
     void getBookingsByStatePageablePAST() throws Exception {
-        when(userRepository.findById(anyLong())).thenReturn(Optional.of(userOne));
-        when(bookingRepository.findAllByEndBeforeAndBooker(any(), any(), (Pageable) any())).thenReturn(List.of(bookingTwo));
-        List<BookingDto> bookings = bookingService.getBookingsByState(State.PAST, 1L, 0, 2);
+        when(bookingRepository.findPastRowsByBooker(any(), any(), (Pageable) any())).thenReturn(slice(bookingTwo));
+        List<BookingDto> bookings = bookingService.getBookingsByState(State.PAST, userOne, 0, 2).getContent();
         assertThat(bookings.size()).isEqualTo(1);
         assertThat(bookings).contains(toBookingDto);
         assertThat(bookings.get(0)).isEqualTo(toBookingDto);
@@ -363,9 +510,8 @@ class BookingServiceImplTest {
 
     @Test
     void getBookingsByStatePageableFUTURE() throws Exception {
-        when(userRepository.findById(anyLong())).thenReturn(Optional.of(userOne));
-        when(bookingRepository.findAllByStartAfterAndBooker(any(), any(), (Pageable) any())).thenReturn(List.of(bookingOne));
-        List<BookingDto> bookings = bookingService.getBookingsByState(State.FUTURE, 1L, 0, 2);
+        when(bookingRepository.findFutureRowsByBooker(any(), any(), (Pageable) any())).thenReturn(slice(bookingOne));
+        List<BookingDto> bookings = bookingService.getBookingsByState(State.FUTURE, userOne, 0, 2).getContent();
         assertThat(bookings.size()).isEqualTo(1);
         assertThat(bookings).contains(firstBookingDto);
         assertThat(bookings.get(0)).isEqualTo(firstBookingDto);
@@ -373,37 +519,79 @@ class BookingServiceImplTest {
 
     @Test
     void getBookingsByStatePageableRejectedOrWaiting() throws Exception {
-        when(userRepository.findById(anyLong())).thenReturn(Optional.of(userOne));
-        when(bookingRepository.findAllByStatusAndBooker(any(), any(), (Pageable) any())).thenReturn(List.of(bookingOne));
-        List<BookingDto> bookings = bookingService.getBookingsByState(State.REJECTED, 1L, 0, 2);
+        when(bookingRepository.findRowsByBookerAndStatus(any(), any(), (Pageable) any())).thenReturn(slice(bookingOne));
+        List<BookingDto> bookings = bookingService.getBookingsByState(State.REJECTED, userOne, 0, 2).getContent();
         assertThat(bookings.size()).isEqualTo(1);
         assertThat(bookings).contains(firstBookingDto);
         assertThat(bookings.get(0)).isEqualTo(firstBookingDto);
     }
 
+    @Test
+    void getBookingsByStateCursorAll() throws Exception {
+        BookingCursor cursor = new BookingCursor(LocalDateTime.parse(endTimeOne, formatter), 10L);
+        when(bookingRepository.findAllByBookerBefore(userOne, cursor.getStart(), cursor.getId(), PageRequest.of(0, 2)))
+                .thenReturn(slice(bookingOne, bookingTwo));
+        List<BookingDto> bookings = bookingService.getBookingsByState(State.ALL, userOne, cursor, 2).getContent();
+        assertThat(bookings).containsExactly(firstBookingDto, toBookingDto);
+    }
+
+    @Test
+    void getBookingsByStateCursorWaiting() throws Exception {
+        BookingCursor cursor = new BookingCursor(LocalDateTime.parse(endTimeOne, formatter), 10L);
+        when(bookingRepository.findAllByStatusAndBookerBefore(Status.WAITING, userOne, cursor.getStart(), cursor.getId(), PageRequest.of(0, 2)))
+                .thenReturn(slice(bookingOne));
+        List<BookingDto> bookings = bookingService.getBookingsByState(State.WAITING, userOne, cursor, 2).getContent();
+        assertThat(bookings).containsExactly(firstBookingDto);
+    }
+
+    @Test
+    void getBookingsByStateCursorPast() throws Exception {
+        BookingCursor cursor = new BookingCursor(LocalDateTime.parse(endTimeOne, formatter), 10L);
+        when(bookingRepository.findPastByBookerBefore(any(), any(), any(), anyLong(), any())).thenReturn(slice(bookingTwo));
+        List<BookingDto> bookings = bookingService.getBookingsByState(State.PAST, userOne, cursor, 2).getContent();
+        assertThat(bookings).containsExactly(toBookingDto);
+    }
+
+    @Test
+    void getBookingsByStateCursorKeepsHasNext() throws Exception {
+        BookingCursor cursor = new BookingCursor(LocalDateTime.parse(endTimeOne, formatter), 10L);
+        when(bookingRepository.findAllByBookerBefore(userOne, cursor.getStart(), cursor.getId(), PageRequest.of(0, 1)))
+                .thenReturn(new SliceImpl<>(rows(bookingOne), PageRequest.of(0, 1), true));
+        Slice<BookingDto> bookings = bookingService.getBookingsByState(State.ALL, userOne, cursor, 1);
+        assertThat(bookings.getContent()).containsExactly(firstBookingDto);
+        assertThat(bookings.hasNext()).isTrue();
+    }
+
+    @Test
+    void getBookingsByOwnerOfItemsCursorFuture() throws Exception {
+        BookingCursor cursor = new BookingCursor(LocalDateTime.parse(endTimeOne, formatter), 10L);
+        when(bookingRepository.findFutureByItemOwnerBefore(any(), any(), any(), anyLong(), any())).thenReturn(slice(bookingOne));
+        List<BookingDto> bookings = bookingService.getBookingsByOwnerOfItems(State.FUTURE, userOne, cursor, 2).getContent();
+        assertThat(bookings).containsExactly(firstBookingDto);
+    }
+
+    @Test
+    void getBookingsByOwnerOfItemsCursorCurrent() throws Exception {
+        BookingCursor cursor = new BookingCursor(LocalDateTime.parse(endTimeOne, formatter), 10L);
+        when(bookingRepository.findCurrentByItemOwnerBefore(any(), any(), any(), anyLong(), any())).thenReturn(slice(bookingOne));
+        List<BookingDto> bookings = bookingService.getBookingsByOwnerOfItems(State.CURRENT, userOne, cursor, 2).getContent();
+        assertThat(bookings).containsExactly(firstBookingDto);
+    }
+
     @Test
     void getBookingsByOwnerOfItemsAll() throws Exception {
-        when(userRepository.findById(anyLong())).thenReturn(Optional.of(userOne));
-        when(bookingRepository.findAllByItemOwner(any(), (Sort) any())).thenReturn(List.of(bookingOne, bookingTwo));
-        List<BookingDto> bookings = bookingService.getBookingsByOwnerOfItems(State.ALL, 1L);
+        when(bookingRepository.findRowsByItemOwner(any(), (Sort) any())).thenReturn(rows(bookingOne, bookingTwo));
+        List<BookingDto> bookings = bookingService.getBookingsByOwnerOfItems(State.ALL, userOne);
         assertThat(bookings.size()).isEqualTo(2);
         assertThat(bookings).contains(firstBookingDto);
         assertThat(bookings).contains(toBookingDto);
         assertThat(bookings.get(0)).isEqualTo(firstBookingDto);
     }
 
-    @Test
-    void getBookingsByOwnerOfItemsExpectNotFoundExceptionBooking() {
-        Assertions.assertThrows(NotFoundException.class, () -> {
-            bookingService.getBookingsByOwnerOfItems(State.ALL, 1L);
-        }, String.format("Аренда не найдена по айди %s", 1L));
-    }
-
     @Test
     void getBookingsByOwnerOfItemsCURRENT() throws Exception {
-        when(userRepository.findById(anyLong())).thenReturn(Optional.of(userOne));
-        when(bookingRepository.findAllByItemOwnerAndStartBeforeAndEndAfter(any(), any(), any(), (Sort) any())).thenReturn(List.of(bookingOne, bookingTwo));
-        List<BookingDto> bookings = bookingService.getBookingsByOwnerOfItems(State.CURRENT, 1L);
+        when(bookingRepository.findCurrentRowsByItemOwner(any(), any(), (Sort) any())).thenReturn(rows(bookingOne, bookingTwo));
+        List<BookingDto> bookings = bookingService.getBookingsByOwnerOfItems(State.CURRENT, userOne);
         assertThat(bookings.size()).isEqualTo(2);
         assertThat(bookings).contains(firstBookingDto);
         assertThat(bookings).contains(toBookingDto);
@@ -412,9 +600,8 @@ class BookingServiceImplTest {
 
     @Test
     void getBookingsByOwnerOfItemsPAST() throws Exception {
-        when(userRepository.findById(anyLong())).thenReturn(Optional.of(userOne));
-        when(bookingRepository.findAllByItemOwnerAndEndBefore(any(), any(), (Sort) any())).thenReturn(List.of(bookingOne, bookingTwo));
-        List<BookingDto> bookings = bookingService.getBookingsByOwnerOfItems(State.PAST, 1L);
+        when(bookingRepository.findPastRowsByItemOwner(any(), any(), (Sort) any())).thenReturn(rows(bookingOne, bookingTwo));
+        List<BookingDto> bookings = bookingService.getBookingsByOwnerOfItems(State.PAST, userOne);
         assertThat(bookings.size()).isEqualTo(2);
         assertThat(bookings).contains(firstBookingDto);
         assertThat(bookings).contains(toBookingDto);
@@ -423,9 +610,8 @@ class BookingServiceImplTest {
 
     @Test
     void getBookingsByOwnerOfItemsFUTURE() throws Exception {
-        when(userRepository.findById(anyLong())).thenReturn(Optional.of(userOne));
-        when(bookingRepository.findAllByItemOwnerAndStartAfter(any(), any(), (Sort) any())).thenReturn(List.of(bookingOne, bookingTwo));
-        List<BookingDto> bookings = bookingService.getBookingsByOwnerOfItems(State.FUTURE, 1L);
+        when(bookingRepository.findFutureRowsByItemOwner(any(), any(), (Sort) any())).thenReturn(rows(bookingOne, bookingTwo));
+        List<BookingDto> bookings = bookingService.getBookingsByOwnerOfItems(State.FUTURE, userOne);
         assertThat(bookings.size()).isEqualTo(2);
         assertThat(bookings).contains(firstBookingDto);
         assertThat(bookings).contains(toBookingDto);
@@ -434,9 +620,8 @@ class BookingServiceImplTest {
 
     @Test
     void getBookingsByOwnerOfItemsRejectedOrWaiting() throws Exception {
-        when(userRepository.findById(anyLong())).thenReturn(Optional.of(userOne));
-        when(bookingRepository.findAllByStatusAndItemOwner(any(), any(), (Sort) any())).thenReturn(List.of(bookingOne, bookingTwo));
-        List<BookingDto> bookings = bookingService.getBookingsByOwnerOfItems(State.REJECTED, 1L);
+        when(bookingRepository.findRowsByItemOwnerAndStatus(any(), any(), (Sort) any())).thenReturn(rows(bookingOne, bookingTwo));
+        List<BookingDto> bookings = bookingService.getBookingsByOwnerOfItems(State.REJECTED, userOne);
         assertThat(bookings.size()).isEqualTo(2);
         assertThat(bookings).contains(firstBookingDto);
         assertThat(bookings).contains(toBookingDto);
@@ -445,27 +630,18 @@ class BookingServiceImplTest {
 
     @Test
     void getBookingsByOwnerOfItemsPageableAll() throws Exception {
-        when(userRepository.findById(anyLong())).thenReturn(Optional.of(userOne));
-        when(bookingRepository.findAllByItemOwner(any(), (Pageable) any())).thenReturn(List.of(bookingOne, bookingTwo));
-        List<BookingDto> bookings = bookingService.getBookingsByOwnerOfItems(State.ALL, 1L, 0, 2);
+        when(bookingRepository.findRowsByItemOwner(any(), (Pageable) any())).thenReturn(slice(bookingOne, bookingTwo));
+        List<BookingDto> bookings = bookingService.getBookingsByOwnerOfItems(State.ALL, userOne, 0, 2).getContent();
         assertThat(bookings.size()).isEqualTo(2);
         assertThat(bookings).contains(firstBookingDto);
         assertThat(bookings).contains(toBookingDto);
         assertThat(bookings.get(0)).isEqualTo(firstBookingDto);
     }
 
-    @Test
-    void getBookingsByOwnerOfItemsPageableExpectNotFoundExceptionBooking() {
-        Assertions.assertThrows(NotFoundException.class, () -> {
-            bookingService.getBookingsByOwnerOfItems(State.ALL, 1L, 0, 2);
-        }, String.format("Аренда не найдена по айди %s", 1L));
-    }
-
     @Test
     void getBookingsByOwnerOfItemsPageableCURRENT() throws Exception {
-        when(userRepository.findById(anyLong())).thenReturn(Optional.of(userOne));
-        when(bookingRepository.findAllByItemOwnerAndStartBeforeAndEndAfter(any(), any(), any(), (Pageable) any())).thenReturn(List.of(bookingOne, bookingTwo));
-        List<BookingDto> bookings = bookingService.getBookingsByOwnerOfItems(State.CURRENT, 1L, 0, 2);
+        when(bookingRepository.findCurrentRowsByItemOwner(any(), any(), (Pageable) any())).thenReturn(slice(bookingOne, bookingTwo));
+        List<BookingDto> bookings = bookingService.getBookingsByOwnerOfItems(State.CURRENT, userOne, 0, 2).getContent();
         assertThat(bookings.size()).isEqualTo(2);
         assertThat(bookings).contains(firstBookingDto);
         assertThat(bookings).contains(toBookingDto);
@@ -474,9 +650,8 @@ class BookingServiceImplTest {
 
     @Test
     void getBookingsByOwnerOfItemsPageablePAST() throws Exception {
-        when(userRepository.findById(anyLong())).thenReturn(Optional.of(userOne));
-        when(bookingRepository.findAllByItemOwnerAndEndBefore(any(), any(), (Pageable) any())).thenReturn(List.of(bookingOne, bookingTwo));
-        List<BookingDto> bookings = bookingService.getBookingsByOwnerOfItems(State.PAST, 1L, 0, 2);
+        when(bookingRepository.findPastRowsByItemOwner(any(), any(), (Pageable) any())).thenReturn(slice(bookingOne, bookingTwo));
+        List<BookingDto> bookings = bookingService.getBookingsByOwnerOfItems(State.PAST, userOne, 0, 2).getContent();
         assertThat(bookings.size()).isEqualTo(2);
         assertThat(bookings).contains(firstBookingDto);
         assertThat(bookings).contains(toBookingDto);
@@ -485,9 +660,8 @@ class BookingServiceImplTest {
 
     @Test
     void getBookingsByOwnerOfItemsPageableFUTURE() throws Exception {
-        when(userRepository.findById(anyLong())).thenReturn(Optional.of(userOne));
-        when(bookingRepository.findAllByItemOwnerAndStartAfter(any(), any(), (Pageable) any())).thenReturn(List.of(bookingOne, bookingTwo));
-        List<BookingDto> bookings = bookingService.getBookingsByOwnerOfItems(State.FUTURE, 1L, 0, 2);
+        when(bookingRepository.findFutureRowsByItemOwner(any(), any(), (Pageable) any())).thenReturn(slice(bookingOne, bookingTwo));
+        List<BookingDto> bookings = bookingService.getBookingsByOwnerOfItems(State.FUTURE, userOne, 0, 2).getContent();
         assertThat(bookings.size()).isEqualTo(2);
         assertThat(bookings).contains(firstBookingDto);
         assertThat(bookings).contains(toBookingDto);
@@ -496,13 +670,61 @@ class BookingServiceImplTest {
 
     @Test
     void getBookingsByOwnerOfItemsPageableRejectedOrWaiting() throws Exception {
-        when(userRepository.findById(anyLong())).thenReturn(Optional.of(userOne));
-        when(bookingRepository.findAllByStatusAndItemOwner(any(), any(), (Pageable) any())).thenReturn(List.of(bookingOne, bookingTwo));
-        List<BookingDto> bookings = bookingService.getBookingsByOwnerOfItems(State.REJECTED, 1L, 0, 2);
+        when(bookingRepository.findRowsByItemOwnerAndStatus(any(), any(), (Pageable) any())).thenReturn(slice(bookingOne, bookingTwo));
+        List<BookingDto> bookings = bookingService.getBookingsByOwnerOfItems(State.REJECTED, userOne, 0, 2).getContent();
         assertThat(bookings.size()).isEqualTo(2);
         assertThat(bookings).contains(firstBookingDto);
         assertThat(bookings).contains(toBookingDto);
         assertThat(bookings.get(0)).isEqualTo(firstBookingDto);
     }
 
-}
\ No newline at end of file
+    @Test
+    void exportBookingsByStatePastStreamsRowsInReadOnlyTransaction() throws Exception {
+        when(bookingRepository.streamPastRowsByBooker(any(), any())).thenReturn(rows(bookingOne, bookingTwo).stream());
+        BookingExport export = bookingService.exportBookingsByState(State.PAST, userOne);
+        verify(bookingRepository, never()).streamPastRowsByBooker(any(), any());
+        List<BookingDto> bookings = new ArrayList<>();
+        export.writeTo(bookings::add);
+        assertThat(bookings).containsExactly(firstBookingDto, toBookingDto);
+        verify(transactionManager).getTransaction(argThat(TransactionDefinition::isReadOnly));
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void exportBookingsByStateWaitingStreamsByStatus() throws Exception {
+        when(bookingRepository.streamRowsByBookerAndStatus(any(), eq(Status.WAITING))).thenReturn(rows(bookingTwo).stream());
+        List<BookingDto> bookings = new ArrayList<>();
+        bookingService.exportBookingsByState(State.WAITING, userOne).writeTo(bookings::add);
+        assertThat(bookings).containsExactly(toBookingDto);
+    }
+
+    @Test
+    void exportBookingsByOwnerOfItemsAllStreamsRows() throws Exception {
+        when(bookingRepository.streamRowsByItemOwner(any())).thenReturn(rows(bookingOne, bookingTwo).stream());
+        List<BookingDto> bookings = new ArrayList<>();
+        bookingService.exportBookingsByOwnerOfItems(State.ALL, userOne).writeTo(bookings::add);
+        assertThat(bookings).containsExactly(firstBookingDto, toBookingDto);
+    }
+
+    @Test
+    void exportBookingsByOwnerOfItemsFutureStreamsRows() throws Exception {
+        when(bookingRepository.streamFutureRowsByItemOwner(any(), any())).thenReturn(rows(bookingOne).stream());
+        List<BookingDto> bookings = new ArrayList<>();
+        bookingService.exportBookingsByOwnerOfItems(State.FUTURE, userOne).writeTo(bookings::add);
+        assertThat(bookings).containsExactly(firstBookingDto);
+    }
+
+    private Slice<BookingRow> slice(Booking... bookings) {
+        return new SliceImpl<>(rows(bookings));
+    }
+
+    private List<BookingRow> rows(Booking... bookings) {
+        return Arrays.stream(bookings)
+                .map(booking -> new BookingRow(booking.getId(), booking.getStart(), booking.getEnd(), booking.getStatus(),
+                        booking.getItem().getId(), booking.getItem().getName(), booking.getItem().getDescription(),
+                        booking.getItem().isAvailable(), booking.getItem().getOwner().getId(),
+                        booking.getItem().getOwner().getName(), booking.getItem().getOwner().getEmail(),
+                        booking.getBooker().getId(), booking.getBooker().getName(), booking.getBooker().getEmail()))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,30 @@
+package ru.practicum.shareit.booking.dto;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.practicum.shareit.exception.ValidationException;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BookingCursorTest {
+
+    @Test
+    void encodeAndDecode() throws ValidationException {
+        BookingCursor cursor = new BookingCursor(LocalDateTime.of(2023, 9, 21, 18, 14, 46, 123000000), 42L);
+        assertThat(BookingCursor.decode(cursor.encode())).isEqualTo(cursor);
+    }
+
+    @Test
+    void ofBookingDto() {
+        BookingDto bookingDto = new BookingDto(7L, LocalDateTime.of(2023, 9, 21, 18, 14), null, null, null, Status.WAITING);
+        assertThat(BookingCursor.of(bookingDto)).isEqualTo(new BookingCursor(bookingDto.getStart(), 7L));
+    }
+
+    @Test
+    void decodeExpectValidationException() {
+        Assertions.assertThrows(ValidationException.class, () -> BookingCursor.decode("%%%"));
+        Assertions.assertThrows(ValidationException.class, () -> BookingCursor.decode("bm90LWEtY3Vyc29y"));
+    }
+}
@@ -0,0 +1,97 @@
+package ru.practicum.shareit.item;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.practicum.shareit.EntityVersions;
+import ru.practicum.shareit.booking.BookingLocks;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BookingPointerRolloverTest {
+    @Mock
+    private ItemRepository itemRepository;
+    @Mock
+    private EntityVersions entityVersions;
+    private BookingPointerRollover rollover;
+
+    @BeforeEach
+    void init() {
+        rollover = new BookingPointerRollover(itemRepository, entityVersions, new BookingLocks(), 2);
+    }
+
+    @Test
+    void rolloverRefreshesDueItemsInBatches() {
+        when(itemRepository.findIdsWithStartedNextBooking(any(), any()))
+                .thenReturn(List.of(1L, 2L))
+                .thenReturn(List.of(5L))
+                .thenReturn(Collections.emptyList());
+
+        rollover.rollover();
+
+        verify(itemRepository).refreshBookingPointers(eq(List.of(1L, 2L)), any());
+        verify(itemRepository).refreshBookingPointers(eq(List.of(5L)), any());
+        verify(itemRepository, times(3)).findIdsWithStartedNextBooking(any(), any());
+        verify(entityVersions).itemChanged(1L);
+        verify(entityVersions).itemChanged(5L);
+    }
+
+    @Test
+    void rolloverWithoutDueItems() {
+        when(itemRepository.findIdsWithStartedNextBooking(any(), any())).thenReturn(Collections.emptyList());
+
+        rollover.rollover();
+
+        verify(itemRepository, never()).refreshBookingPointers(any(), any());
+    }
+
+    @Test
+    void rolloverWaitsForItemLock() throws Exception {
+        BookingLocks bookingLocks = new BookingLocks();
+        rollover = new BookingPointerRollover(itemRepository, entityVersions, bookingLocks, 2);
+        when(itemRepository.findIdsWithStartedNextBooking(any(), any()))
+                .thenReturn(List.of(1L))
+                .thenReturn(Collections.emptyList());
+        Lock lock = bookingLocks.forItem(1L);
+        Thread thread = new Thread(rollover::rollover);
+
+        lock.lock();
+        try {
+            thread.start();
+            verify(itemRepository, after(200).never()).refreshBookingPointers(any(), any());
+        } finally {
+            lock.unlock();
+        }
+
+        verify(itemRepository, timeout(1000)).refreshBookingPointers(eq(List.of(1L)), any());
+        thread.join(1000);
+    }
+
+    @Test
+    void rebuildWalksAllItemsByKeyset() {
+        when(itemRepository.findIdsAfter(eq(0L), any())).thenReturn(List.of(1L, 2L));
+        when(itemRepository.findIdsAfter(eq(2L), any())).thenReturn(List.of(4L));
+        when(itemRepository.findIdsAfter(eq(4L), any())).thenReturn(Collections.emptyList());
+
+        rollover.rebuild();
+
+        verify(itemRepository).refreshBookingPointers(eq(List.of(1L, 2L)), any());
+        verify(itemRepository).refreshBookingPointers(eq(List.of(4L)), any());
+        verify(itemRepository, times(3)).findIdsAfter(anyLong(), any());
+    }
+}
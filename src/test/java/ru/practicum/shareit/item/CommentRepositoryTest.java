@@ -0,0 +1,63 @@
+package ru.practicum.shareit.item;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import ru.practicum.shareit.item.dto.CommentDto;
+import ru.practicum.shareit.item.dto.CommentRow;
+import ru.practicum.shareit.item.model.Comment;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.user.User;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2)
+class CommentRepositoryTest {
+    @Autowired
+    private TestEntityManager em;
+    @Autowired
+    private CommentRepository commentRepository;
+
+    @Test
+    void findDtosByItemIdNewestFirst() {
+        addComments(2L, 3);
+
+        List<CommentDto> firstPage = commentRepository.findDtosByItemId(2L, PageRequest.of(0, 3));
+        List<CommentDto> lastPage = commentRepository.findDtosByItemId(2L, PageRequest.of(1, 3));
+
+        assertThat(firstPage).extracting(CommentDto::getText).containsExactly("comment 3", "comment 2", "comment 1");
+        assertThat(firstPage).extracting(CommentDto::getAuthorName).containsOnly("other");
+        assertThat(lastPage).extracting(CommentDto::getText).containsExactly("Add comment from user1");
+    }
+
+    @Test
+    void findLatestByItemIdInLimitsEachItemAndCountsAll() {
+        addComments(2L, 3);
+        addComments(3L, 1);
+
+        List<CommentRow> rows = commentRepository.findLatestByItemIdIn(List.of(2L, 3L, 4L), 2);
+
+        assertThat(rows).extracting(CommentRow::getItemId).containsExactly(2L, 2L, 3L);
+        assertThat(rows).extracting(CommentRow::getText).containsExactly("comment 3", "comment 2", "comment 1");
+        assertThat(rows).extracting(CommentRow::getTotal).containsExactly(4L, 4L, 1L);
+        assertThat(rows.get(0).getAuthorName()).isEqualTo("other");
+    }
+
+    private void addComments(Long itemId, int count) {
+        Item item = em.find(Item.class, itemId);
+        User author = em.find(User.class, 3L);
+        LocalDateTime created = LocalDateTime.of(2024, 1, 1, 12, 0);
+        for (int i = 1; i <= count; i++) {
+            em.persist(new Comment(0, "comment " + i, item, author, created.plusMinutes(i)));
+        }
+        em.flush();
+    }
+}
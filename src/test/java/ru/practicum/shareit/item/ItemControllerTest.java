@@ -1,32 +1,67 @@
 package ru.practicum.shareit.item;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import reactor.core.publisher.Flux;
+import ru.practicum.shareit.EntityVersions;
+import ru.practicum.shareit.exception.NotFoundException;
+import ru.practicum.shareit.item.dto.AvailabilityInterval;
 import ru.practicum.shareit.item.dto.CommentDto;
 import ru.practicum.shareit.item.dto.ItemDto;
 import ru.practicum.shareit.item.dto.ItemDtoWithBooking;
+import ru.practicum.shareit.user.User;
+import ru.practicum.shareit.user.UserRepository;
 
+import java.time.LocalDateTime;
 import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(ItemController.class)
+@Import(EntityVersions.class)
 public class ItemControllerTest {
 
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private EntityVersions entityVersions;
+
     @MockBean
     private ItemServiceImpl itemService;
 
+    @MockBean
+    private UserRepository userRepository;
+
+    private final User caller = new User(1L, "user", "user@user.com");
+
+    @BeforeEach
+    void setUpCaller() {
+        when(userRepository.findById(1L)).thenReturn(Optional.of(caller));
+    }
+
     @Test
     public void testCreateItem() throws Exception {
         ItemDto itemDto = new ItemDto();
@@ -34,7 +69,7 @@ public class ItemControllerTest {
         itemDto.setDescription("Test Description");
         itemDto.setAvailable(true);
 
-        when(itemService.createItem(any(ItemDto.class), any(Long.class))).thenReturn(itemDto);
+        when(itemService.createItem(any(ItemDto.class), any(User.class))).thenReturn(itemDto);
 
         mockMvc.perform(MockMvcRequestBuilders.post("/items")
                         .header("X-Sharer-User-Id", 1L)
@@ -76,6 +111,74 @@ public class ItemControllerTest {
                 .andExpect(jsonPath("$.name").value("Test Item"));
     }
 
+    @Test
+    public void testGetItemByIdNotModifiedUntilItemChanges() throws Exception {
+        ItemDtoWithBooking itemDtoWithBooking = new ItemDtoWithBooking();
+        itemDtoWithBooking.setId(2L);
+
+        when(itemService.getItemById(2L, 1L)).thenReturn(itemDtoWithBooking);
+
+        String etag = mockMvc.perform(MockMvcRequestBuilders.get("/items/2")
+                        .header("X-Sharer-User-Id", 1L))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mockMvc.perform(MockMvcRequestBuilders.get("/items/2")
+                        .header("X-Sharer-User-Id", 1L)
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag));
+        mockMvc.perform(MockMvcRequestBuilders.get("/items/2")
+                        .header("X-Sharer-User-Id", 2L)
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+        entityVersions.itemChanged(2L);
+        mockMvc.perform(MockMvcRequestBuilders.get("/items/2")
+                        .header("X-Sharer-User-Id", 1L)
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(2));
+
+        assertThat(etag).isNotBlank();
+        verify(itemService, times(2)).getItemById(2L, 1L);
+    }
+
+    @Test
+    public void testGetItemByIdModifiedWhenNextBookingStarts() throws Exception {
+        ItemDtoWithBooking itemDtoWithBooking = new ItemDtoWithBooking();
+        itemDtoWithBooking.setId(3L);
+
+        when(itemService.getItemById(3L, 1L)).thenReturn(itemDtoWithBooking);
+
+        String etag = mockMvc.perform(MockMvcRequestBuilders.get("/items/3")
+                        .header("X-Sharer-User-Id", 1L))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        entityVersions.itemChangesAt(3L, LocalDateTime.now().plusHours(1));
+        mockMvc.perform(MockMvcRequestBuilders.get("/items/3")
+                        .header("X-Sharer-User-Id", 1L)
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+        entityVersions.itemChangesAt(3L, LocalDateTime.now().minusSeconds(1));
+        String changed = mockMvc.perform(MockMvcRequestBuilders.get("/items/3")
+                        .header("X-Sharer-User-Id", 1L)
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        assertThat(changed).isNotEqualTo(etag);
+        verify(itemService, times(2)).getItemById(3L, 1L);
+    }
+
+    @Test
+    public void testGetItemByIdNotFoundHasNoETag() throws Exception {
+        when(itemService.getItemById(99L, 1L)).thenThrow(new NotFoundException("Вещь не найдена"));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/items/99")
+                        .header("X-Sharer-User-Id", 1L))
+                .andExpect(status().isNotFound())
+                .andExpect(header().doesNotExist(HttpHeaders.ETAG));
+    }
+
     @Test
     public void testGetAllItemsForOwner() throws Exception {
         ItemDtoWithBooking itemDtoWithBooking = new ItemDtoWithBooking();
@@ -146,13 +249,70 @@ public class ItemControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    public void testStreamSearchItemsAsNdjson() throws Exception {
+        ItemDto first = new ItemDto();
+        first.setId(1L);
+        first.setName("Дрель");
+        ItemDto second = new ItemDto();
+        second.setId(3L);
+        second.setName("Отвертка");
+
+        when(itemService.streamSearchItems(eq("аккумулятор"))).thenReturn(Flux.just(first, second));
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/items/search")
+                        .param("text", "аккумулятор")
+                        .accept("application/x-ndjson"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String[] lines = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString().split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(lines[0]).startsWith("{\"id\":1,");
+        assertThat(lines[1]).startsWith("{\"id\":3,");
+    }
+
+    @Test
+    public void testGetAvailability() throws Exception {
+        LocalDateTime start = LocalDateTime.of(2030, 1, 1, 0, 0);
+        when(itemService.getAvailability(eq(1L), eq("2030-01-01T00:00:00"), eq("2030-01-01T02:00:00")))
+                .thenReturn(List.of(AvailabilityInterval.free(start, start.plusHours(1)),
+                        AvailabilityInterval.busy(start.plusHours(1), start.plusHours(2))));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/items/1/availability")
+                        .param("from", "2030-01-01T00:00:00")
+                        .param("to", "2030-01-01T02:00:00"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$.[0].start").value("2030-01-01T00:00:00"))
+                .andExpect(jsonPath("$.[0].free").value(true))
+                .andExpect(jsonPath("$.[1].end").value("2030-01-01T02:00:00"))
+                .andExpect(jsonPath("$.[1].free").value(false));
+    }
+
+    @Test
+    public void testGetComments() throws Exception {
+        CommentDto commentDto = new CommentDto(1L, "Test Comment", "author", null);
+
+        when(itemService.getComments(1L, 1, 5)).thenReturn(List.of(commentDto));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/items/1/comments")
+                        .param("from", "1")
+                        .param("size", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$.[0].authorName").value("author"));
+    }
+
     @Test
     public void testCreateComment() throws Exception {
         CommentDto commentDto = new CommentDto();
         commentDto.setId(1L);
         commentDto.setText("Test Comment");
 
-        when(itemService.createComment(any(CommentDto.class), any(Long.class), any(Long.class)))
+        when(itemService.createComment(any(CommentDto.class), any(Long.class), any(User.class)))
                 .thenReturn(commentDto);
 
         mockMvc.perform(MockMvcRequestBuilders.post("/items/1/comment")
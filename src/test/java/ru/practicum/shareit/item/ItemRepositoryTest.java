@@ -7,8 +7,15 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.user.User;
 
+import javax.persistence.Cache;
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -21,6 +28,10 @@ class ItemRepositoryTest {
     private TestEntityManager em;
     @Autowired
     private ItemRepository itemRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
 
     @Test
     void findByIdAndOwnerId() {
@@ -38,4 +49,103 @@ class ItemRepositoryTest {
         assertThat(finds).isNotEmpty();
         assertThat(finds.get(0)).isEqualTo(item);
     }
-}
\ No newline at end of file
+
+    @Test
+    void findAllByRequestIdIn() {
+        Item item = em.find(Item.class, 5L);
+        List<Item> finds = itemRepository.findAllByRequestIdIn(List.of(1L));
+        assertThat(finds.size()).isEqualTo(1);
+        assertThat(finds.get(0)).isEqualTo(item);
+    }
+
+    @Test
+    void findAllByIdInFetchesOwners() {
+        List<Item> finds = itemRepository.findAllByIdIn(List.of(1L, 3L, 99L));
+        assertThat(finds).extracting(Item::getId).containsExactlyInAnyOrder(1L, 3L);
+        assertThat(finds).extracting(item -> item.getOwner().getId()).containsExactlyInAnyOrder(1L, 2L);
+    }
+
+    @Test
+    void refreshBookingPointers() {
+        int updated = itemRepository.refreshBookingPointers(List.of(1L, 3L), LocalDateTime.of(2023, 9, 25, 0, 0));
+        em.clear();
+
+        assertThat(updated).isEqualTo(2);
+        Item first = itemRepository.findWithBookingsById(1L).get();
+        assertThat(first.getLastBooking().getId()).isEqualTo(3L);
+        assertThat(first.getNextBooking().getId()).isEqualTo(8L);
+        assertThat(first.getNextBooking().getBooker().getId()).isEqualTo(3L);
+        Item third = itemRepository.findWithBookingsById(3L).get();
+        assertThat(third.getLastBooking().getId()).isEqualTo(2L);
+        assertThat(third.getNextBooking()).isNull();
+        assertThat(itemRepository.findWithBookingsById(2L).get().getLastBooking()).isNull();
+    }
+
+    @Test
+    void offerNextBookingKeepsEarliest() {
+        itemRepository.refreshBookingPointers(List.of(1L), LocalDateTime.of(2023, 9, 1, 0, 0));
+
+        assertThat(itemRepository.offerNextBooking(1L, 8L, LocalDateTime.of(2023, 9, 30, 18, 14, 53))).isZero();
+        em.clear();
+        assertThat(itemRepository.findWithBookingsById(1L).get().getNextBooking().getId()).isEqualTo(3L);
+        assertThat(itemRepository.offerNextBooking(2L, 4L, LocalDateTime.of(2023, 9, 20, 19, 14, 48))).isEqualTo(1);
+        em.clear();
+        assertThat(itemRepository.findWithBookingsById(2L).get().getNextBooking().getId()).isEqualTo(4L);
+    }
+
+    @Test
+    void findIdsWithStartedNextBooking() {
+        itemRepository.refreshBookingPointers(List.of(1L, 2L, 3L, 4L, 5L), LocalDateTime.of(2023, 9, 25, 0, 0));
+
+        assertThat(itemRepository.findIdsWithStartedNextBooking(LocalDateTime.of(2023, 9, 26, 0, 0), PageRequest.of(0, 10)))
+                .isEmpty();
+        assertThat(itemRepository.findIdsWithStartedNextBooking(LocalDateTime.of(2023, 10, 1, 0, 0), PageRequest.of(0, 10)))
+                .containsExactly(1L);
+    }
+
+    @Test
+    void findIdsAfter() {
+        assertThat(itemRepository.findIdsAfter(1L, PageRequest.of(0, 2))).containsExactly(2L, 3L);
+        assertThat(itemRepository.findIdsAfter(5L, PageRequest.of(0, 2))).isEmpty();
+    }
+
+    @Test
+    void findAllByOwnerIdFetchesBookingPointers() {
+        itemRepository.refreshBookingPointers(List.of(2L, 3L, 5L), LocalDateTime.of(2023, 9, 25, 0, 0));
+        em.clear();
+
+        List<Item> items = itemRepository.findAllByOwnerId(2L);
+        em.clear();
+
+        assertThat(items).extracting(Item::getId).containsExactlyInAnyOrder(2L, 3L, 5L);
+        assertThat(items).filteredOn(item -> item.getId() == 3L)
+                .extracting(item -> item.getLastBooking().getBooker().getId()).containsExactly(1L);
+    }
+
+    /**
+     * Вещи вытесняются после коммита, поэтому тест идет без общей транзакции.
+     * Аренда 4 уже ближайшая у вещи 2 после пересчета, повторное предложение ее не меняет.
+     * Закоммиченные указатели вещи 2 сбрасываются в конце, чтобы не влиять на остальные тесты.
+     */
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void pointerUpdateEvictsOnlyAffectedItems() {
+        Cache cache = entityManagerFactory.getCache();
+        try {
+            itemRepository.refreshBookingPointers(List.of(2L), LocalDateTime.of(2023, 9, 1, 0, 0));
+            itemRepository.findById(1L);
+            itemRepository.findById(2L);
+            assertThat(cache.contains(Item.class, 1L)).isTrue();
+            assertThat(cache.contains(Item.class, 2L)).isTrue();
+
+            itemRepository.refreshBookingPointers(List.of(2L), LocalDateTime.of(2023, 9, 1, 0, 0));
+
+            assertThat(cache.contains(Item.class, 1L)).isTrue();
+            assertThat(cache.contains(Item.class, 2L)).isFalse();
+            assertThat(cache.contains(User.class, 1L)).isTrue();
+        } finally {
+            jdbcTemplate.update("UPDATE items SET last_booking_id = NULL, next_booking_id = NULL WHERE id = 2");
+            cache.evict(Item.class, 2L);
+        }
+    }
+}
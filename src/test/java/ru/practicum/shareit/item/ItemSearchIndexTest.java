@@ -0,0 +1,109 @@
+package ru.practicum.shareit.item;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.practicum.shareit.item.dto.ItemShort;
+import ru.practicum.shareit.item.model.Item;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ItemSearchIndexTest {
+    @InjectMocks
+    private ItemSearchIndex itemSearchIndex;
+    @Mock
+    private ItemRepository itemRepository;
+
+    @BeforeEach
+    void setUp() {
+        when(itemRepository.findAllAvailableShort()).thenReturn(List.of(
+                itemShort(3L, "Отвертка", "Аккумуляторная отвертка"),
+                itemShort(1L, "Аккумуляторная дрель", "Аккумуляторная дрель + аккумулятор"),
+                itemShort(2L, "Клей Момент", "Тюбик суперклея марки Момент")));
+        itemSearchIndex.rebuild();
+    }
+
+    @Test
+    void searchSubstringIgnoringCase() {
+        assertThat(itemSearchIndex.search("АККУМУЛЯТОР")).containsExactly(1L, 3L);
+        assertThat(itemSearchIndex.search("дрел")).containsExactly(1L);
+        assertThat(itemSearchIndex.search("клея мар")).containsExactly(2L);
+    }
+
+    @Test
+    void searchRequiresContiguousMatch() {
+        assertThat(itemSearchIndex.search("дрель отвертка")).isEmpty();
+        assertThat(itemSearchIndex.search("момент клей")).isEmpty();
+        assertThat(itemSearchIndex.search("пила")).isEmpty();
+    }
+
+    @Test
+    void searchShortQueryScansDocuments() {
+        assertThat(itemSearchIndex.search("кл")).containsExactly(2L);
+        assertThat(itemSearchIndex.search("+")).containsExactly(1L);
+    }
+
+    @Test
+    void indexUpdatesAndAvailabilityFlips() {
+        Item item = new Item(2L, "Клей Секунда", "Тюбик клея", true, null, null);
+        itemSearchIndex.index(item);
+        assertThat(itemSearchIndex.search("момент")).isEmpty();
+        assertThat(itemSearchIndex.search("секунд")).containsExactly(2L);
+
+        item.setAvailable(false);
+        itemSearchIndex.index(item);
+        assertThat(itemSearchIndex.search("клей")).isEmpty();
+        assertThat(itemSearchIndex.size()).isEqualTo(2);
+
+        item.setAvailable(true);
+        itemSearchIndex.index(item);
+        assertThat(itemSearchIndex.search("клей")).containsExactly(2L);
+
+        itemSearchIndex.index(new Item(10L, "Дрель ударная", null, true, null, null));
+        assertThat(itemSearchIndex.search("дрель")).containsExactly(1L, 10L);
+    }
+
+    @Test
+    void indexReturnsTextsBeforeAndAfterChange() {
+        Item item = new Item(2L, "Клей Секунда", "Тюбик клея", true, null, null);
+        assertThat(itemSearchIndex.index(item))
+                .containsExactly("клей момент", "тюбик суперклея марки момент", "клей секунда", "тюбик клея");
+
+        item.setAvailable(false);
+        assertThat(itemSearchIndex.index(item)).containsExactly("клей секунда", "тюбик клея");
+        assertThat(itemSearchIndex.index(item)).isEmpty();
+    }
+
+    @Test
+    void remove() {
+        assertThat(itemSearchIndex.remove(1L)).containsExactly("аккумуляторная дрель", "аккумуляторная дрель + аккумулятор");
+        assertThat(itemSearchIndex.remove(100L)).isEmpty();
+        assertThat(itemSearchIndex.search("аккумулятор")).containsExactly(3L);
+    }
+
+    private ItemShort itemShort(Long id, String name, String description) {
+        return new ItemShort() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public String getDescription() {
+                return description;
+            }
+        };
+    }
+}
@@ -1,20 +1,30 @@
 package ru.practicum.shareit.item;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import reactor.test.StepVerifier;
+import ru.practicum.shareit.EntityVersions;
+import ru.practicum.shareit.booking.BookingIntervalIndex;
+import ru.practicum.shareit.booking.BookingIntervals;
 import ru.practicum.shareit.booking.BookingRepository;
+import ru.practicum.shareit.booking.dto.BookingShort;
 import ru.practicum.shareit.booking.dto.BookingTwoFieldsDto;
 import ru.practicum.shareit.booking.dto.Status;
 import ru.practicum.shareit.booking.model.Booking;
 import ru.practicum.shareit.exception.NotFoundException;
 import ru.practicum.shareit.exception.ValidationException;
+import ru.practicum.shareit.item.dto.AvailabilityInterval;
 import ru.practicum.shareit.item.dto.CommentDto;
+import ru.practicum.shareit.item.dto.CommentRow;
 import ru.practicum.shareit.item.dto.ItemDto;
 import ru.practicum.shareit.item.dto.ItemDtoWithBooking;
 import ru.practicum.shareit.item.model.Comment;
@@ -22,16 +32,21 @@ import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.request.ItemRequest;
 import ru.practicum.shareit.request.ItemRequestRepository;
 import ru.practicum.shareit.user.User;
-import ru.practicum.shareit.user.UserRepository;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -41,13 +56,19 @@ public class ItemServiceImplTest {
     @Mock
     private ItemRepository itemRepository;
     @Mock
-    private UserRepository userRepository;
-    @Mock
     private BookingRepository bookingRepository;
     @Mock
     private CommentRepository commentRepository;
     @Mock
     private ItemRequestRepository itemRequestRepository;
+    @Mock
+    private ItemSearchIndex itemSearchIndex;
+    @Spy
+    private SearchResultCache searchResultCache = new SearchResultCache(new SimpleMeterRegistry(), 100);
+    @Mock
+    private BookingIntervalIndex bookingIntervalIndex;
+    @Mock
+    private EntityVersions entityVersions;
     private Booking bookingOne;
     private Booking bookingTwo;
     private Item itemOne;
@@ -80,7 +101,7 @@ public class ItemServiceImplTest {
         bookingTwo = new Booking(2, LocalDateTime.parse(startTimeTwo, formatter), LocalDateTime.parse(endTimeTwo, formatter), itemOne, userTwo, Status.APPROVED);
         nextBookingTwoFieldsDto = new BookingTwoFieldsDto(1L, 1L);
         lastBookingTwoFieldsDto = new BookingTwoFieldsDto(1L, 1L);
-        itemDtoWithBooking = new ItemDtoWithBooking(1, "item1", "description1", true, lastBookingTwoFieldsDto, nextBookingTwoFieldsDto, Collections.emptyList());
+        itemDtoWithBooking = new ItemDtoWithBooking(1, "item1", "description1", true, lastBookingTwoFieldsDto, nextBookingTwoFieldsDto, Collections.emptyList(), 0);
         itemDto = new ItemDto(1, "item1", "description1", true, userOne, 1L);
     }
 
@@ -96,13 +117,15 @@ public class ItemServiceImplTest {
 
         ItemRequest itemRequest = new ItemRequest();
         itemRequest.setId(2L);
-
-        when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
+        itemOne.setRequest(itemRequest);
         when(itemRequestRepository.findById(itemDto.getRequestId())).thenReturn(Optional.of(itemRequest));
         when(itemRepository.save(any(Item.class))).thenReturn(itemOne);
 
-        ItemDto result = itemService.createItem(itemDto, user.getId());
+        ItemDto result = itemService.createItem(itemDto, user);
 
+        verify(itemSearchIndex).index(itemOne);
+        verify(entityVersions).itemChanged(itemOne.getId());
+        verify(entityVersions).requestChanged(2L);
         assertThat(result).isNotNull();
         assertThat(result.getAvailable()).isEqualTo(true);
         assertThat(result.getName()).isEqualTo(itemOne.getName());
@@ -112,32 +135,25 @@ public class ItemServiceImplTest {
     @Test
     public void testCreateItemExpectNotValidateItemFromUser() {
         Assertions.assertThrows(ValidationException.class, () -> {
-            itemService.createItem(new ItemDto(), 1L);
+            itemService.createItem(new ItemDto(), new User());
         }, "Для добавления вещи необходимо заполнить следующие поля: имя вещи, " +
                 "доступность вещи и описание вещи");
     }
 
-    @Test
-    public void testCreateItemExpectNotFoundExceptionUser() {
-        Assertions.assertThrows(NotFoundException.class, () -> {
-            itemService.createItem(itemDto, 1L);
-        }, String.format("Пользователь %s не найден", 1L));
-    }
-
     @Test
     public void testUpdateItem() throws NotFoundException {
         User user = new User();
-        user.setId(1L);
+        user.setId(2L);
         ItemDto itemDto = new ItemDto();
         itemDto.setName("Updated Item");
         itemDto.setDescription("Updated Description");
         itemDto.setAvailable(true);
         when(itemRepository.save(any())).thenReturn(itemOne);
-        when(itemRepository.findById(anyLong())).thenReturn(Optional.of(itemOne));
-        when(itemRepository.findByIdAndOwnerId(any(), any())).thenReturn(Optional.of(itemOne));
+        when(itemRepository.findById(1L)).thenReturn(Optional.of(itemOne));
 
         ItemDto result = itemService.updateItem(itemDto, 1L, user.getId());
 
+        verify(itemSearchIndex).index(itemOne);
         assertThat(result).isNotNull();
         assertThat(result.getAvailable()).isEqualTo(true);
         assertThat(result.getName()).isEqualTo(itemOne.getName());
@@ -146,7 +162,7 @@ public class ItemServiceImplTest {
 
     @Test
     public void testUpdateItemExpectNotValidateOwnerOfItem() {
-        when(itemRepository.findByIdAndOwnerId(anyLong(), anyLong())).thenReturn(Optional.empty());
+        when(itemRepository.findById(1L)).thenReturn(Optional.of(itemOne));
         Assertions.assertThrows(NotFoundException.class, () -> {
             itemService.updateItem(itemDto, 1L, 1L);
         }, String.format("Пользователь c идентификатором %s не является владельцем вещи", 1L));
@@ -157,9 +173,9 @@ public class ItemServiceImplTest {
         long itemId = 1L;
         long userId = 2L;
 
-        when(itemRepository.findByIdAndOwnerId(itemId, userId)).thenReturn(Optional.of(itemOne));
-        when(itemRepository.findById(itemId)).thenReturn(Optional.of(itemOne));
-        when(commentRepository.findAllCommentByItemId(itemId)).thenReturn(List.of(comment));
+        when(itemRepository.findWithBookingsById(itemId)).thenReturn(Optional.of(itemOne));
+        when(commentRepository.findLatestByItemIdIn(Set.of(itemId), ItemServiceImpl.LATEST_COMMENTS))
+                .thenReturn(List.of(commentRow(comment, 12L)));
 
         ItemDtoWithBooking result = itemService.getItemById(itemId, userId);
 
@@ -167,19 +183,22 @@ public class ItemServiceImplTest {
         assertThat(result.getAvailable()).isEqualTo(true);
         assertThat(result.getName()).isEqualTo(itemOne.getName());
         assertThat(result.getDescription()).isEqualTo(itemOne.getDescription());
+        assertThat(result.getLastBooking()).isNull();
+        assertThat(result.getNextBooking()).isNull();
+        assertThat(result.getComments()).hasSize(1);
+        assertThat(result.getCommentCount()).isEqualTo(12L);
     }
 
     @Test
     public void testGetItemByIdLastPresentAndStatusNotREJECTED() throws NotFoundException {
         long itemId = 1L;
         long userId = 2L;
+        itemOne.setLastBooking(bookingTwo);
+        itemOne.setNextBooking(futureBooking(3L, userOne, Status.WAITING));
 
-
-        when(itemRepository.findByIdAndOwnerId(itemId, userId)).thenReturn(Optional.of(itemOne));
-        when(itemRepository.findById(itemId)).thenReturn(Optional.of(itemOne));
-        when(bookingRepository.findFirstByItemIdAndStartLessThanEqualOrderByStartDesc(anyLong(), any())).thenReturn(Optional.of(bookingOne));
-        when(bookingRepository.findFirstByItemIdAndStartAfterOrderByStartAsc(anyLong(), any())).thenReturn(Optional.of(bookingTwo));
-        when(commentRepository.findAllCommentByItemId(itemId)).thenReturn(List.of(comment));
+        when(itemRepository.findWithBookingsById(itemId)).thenReturn(Optional.of(itemOne));
+        when(commentRepository.findLatestByItemIdIn(Set.of(itemId), ItemServiceImpl.LATEST_COMMENTS))
+                .thenReturn(List.of(commentRow(comment, 12L)));
 
         ItemDtoWithBooking result = itemService.getItemById(itemId, userId);
 
@@ -187,6 +206,39 @@ public class ItemServiceImplTest {
         assertThat(result.getAvailable()).isEqualTo(true);
         assertThat(result.getName()).isEqualTo(itemOne.getName());
         assertThat(result.getDescription()).isEqualTo(itemOne.getDescription());
+        assertThat(result.getLastBooking()).isEqualTo(new BookingTwoFieldsDto(2L, 2L));
+        assertThat(result.getNextBooking()).isEqualTo(new BookingTwoFieldsDto(3L, 1L));
+        verifyNoInteractions(bookingRepository);
+        verify(entityVersions).itemChangesAt(itemId, itemOne.getNextBooking().getStart());
+    }
+
+    @Test
+    public void testGetItemByIdRejectedBookingNotShown() throws NotFoundException {
+        bookingTwo.setStatus(Status.REJECTED);
+        itemOne.setLastBooking(bookingTwo);
+        itemOne.setNextBooking(futureBooking(3L, userOne, Status.REJECTED));
+
+        when(itemRepository.findWithBookingsById(1L)).thenReturn(Optional.of(itemOne));
+
+        ItemDtoWithBooking result = itemService.getItemById(1L, 2L);
+
+        assertThat(result.getLastBooking()).isNull();
+        assertThat(result.getNextBooking()).isNull();
+    }
+
+    @Test
+    public void testGetItemByIdStartedNextBookingReadFromBookings() throws NotFoundException {
+        itemOne.setLastBooking(bookingOne);
+        itemOne.setNextBooking(bookingTwo);
+
+        when(itemRepository.findWithBookingsById(1L)).thenReturn(Optional.of(itemOne));
+        when(bookingRepository.findLastAndNextByItemIdIn(eq(List.of(1L)), any()))
+                .thenReturn(List.of(bookingShort(bookingTwo, 1L, true)));
+
+        ItemDtoWithBooking result = itemService.getItemById(1L, 2L);
+
+        assertThat(result.getLastBooking()).isEqualTo(new BookingTwoFieldsDto(2L, 2L));
+        assertThat(result.getNextBooking()).isNull();
     }
 
     @Test
@@ -194,9 +246,7 @@ public class ItemServiceImplTest {
         long itemId = 1L;
         long userId = 2L;
 
-        when(itemRepository.findByIdAndOwnerId(anyLong(), anyLong())).thenReturn(Optional.of(itemOne));
-        when(itemRepository.findById(anyLong())).thenReturn(Optional.empty());
-        when(commentRepository.findAllCommentByItemId(anyLong())).thenReturn(List.of(comment));
+        when(itemRepository.findWithBookingsById(anyLong())).thenReturn(Optional.empty());
         Assertions.assertThrows(NotFoundException.class, () -> {
             itemService.getItemById(itemId, userId);
         }, "Вещь не найдена");
@@ -205,28 +255,27 @@ public class ItemServiceImplTest {
     @Test
     public void testGetItemByIdElseFindByIdAndOwnerIdPresentComment() throws NotFoundException {
         long itemId = 1L;
-        long userId = 2L;
+        long userId = 1L;
+        itemOne.setLastBooking(bookingOne);
 
-        when(itemRepository.findByIdAndOwnerId(anyLong(), anyLong())).thenReturn(Optional.empty());
-        when(commentRepository.findAllCommentByItemId(anyLong())).thenReturn(List.of(comment));
-        when(itemRepository.findById(anyLong())).thenReturn(Optional.of(itemOne));
+        when(commentRepository.findLatestByItemIdIn(anyCollection(), anyInt())).thenReturn(List.of(commentRow(comment, 1L)));
+        when(itemRepository.findWithBookingsById(anyLong())).thenReturn(Optional.of(itemOne));
 
         ItemDtoWithBooking result = itemService.getItemById(itemId, userId);
         assertThat(result).isNotNull();
         assertThat(result.getAvailable()).isEqualTo(true);
         assertThat(result.getName()).isEqualTo(itemOne.getName());
         assertThat(result.getDescription()).isEqualTo(itemOne.getDescription());
-
+        assertThat(result.getLastBooking()).isNull();
+        assertThat(result.getComments()).hasSize(1);
     }
 
     @Test
     public void testGetItemByIdElseFindByIdAndOwnerIdNotPresentComment() throws NotFoundException {
         long itemId = 1L;
-        long userId = 2L;
+        long userId = 1L;
 
-        when(itemRepository.findByIdAndOwnerId(anyLong(), anyLong())).thenReturn(Optional.empty());
-        when(commentRepository.findAllCommentByItemId(anyLong())).thenReturn(Collections.emptyList());
-        when(itemRepository.findById(anyLong())).thenReturn(Optional.empty());
+        when(itemRepository.findWithBookingsById(anyLong())).thenReturn(Optional.empty());
 
         Assertions.assertThrows(NotFoundException.class, () -> {
             itemService.getItemById(itemId, userId);
@@ -236,11 +285,9 @@ public class ItemServiceImplTest {
     @Test
     public void testGetItemByIdElseFindByIdAndOwnerIdNotFindItem() throws NotFoundException {
         long itemId = 1L;
-        long userId = 2L;
+        long userId = 1L;
 
-        when(itemRepository.findByIdAndOwnerId(anyLong(), anyLong())).thenReturn(Optional.empty());
-        when(commentRepository.findAllCommentByItemId(anyLong())).thenReturn(Collections.emptyList());
-        when(itemRepository.findById(anyLong())).thenReturn(Optional.of(itemOne));
+        when(itemRepository.findWithBookingsById(anyLong())).thenReturn(Optional.of(itemOne));
 
         ItemDtoWithBooking result = itemService.getItemById(itemId, userId);
         assertThat(result).isNotNull();
@@ -254,53 +301,258 @@ public class ItemServiceImplTest {
     public void testGetAllItemsForOwnerPageable() {
         long userId = 1L;
         Pageable pageable = Pageable.unpaged();
+        itemOne.setLastBooking(bookingOne);
+        itemOne.setNextBooking(futureBooking(1L, userOne, Status.WAITING));
 
         when(itemRepository.findAllByOwnerId(anyLong(), any())).thenReturn(List.of(itemOne, itemTwo));
-        when(bookingRepository.findFirstByItemIdAndStartLessThanEqualOrderByStartDesc(anyLong(), any())).thenReturn(Optional.of(bookingOne));
-        when(bookingRepository.findFirstByItemIdAndStartAfterOrderByStartAsc(anyLong(), any())).thenReturn(Optional.of(bookingOne));
         List<ItemDtoWithBooking> result = itemService.getAllItemsForOwner(userId, pageable);
         assertThat(result).isNotNull();
         assertThat(result).contains(itemDtoWithBooking);
+        verifyNoInteractions(bookingRepository);
     }
 
     @Test
     public void testGetAllItemsForOwnerPageableNotEmptyCommentLatNotPresentAndNextNotPresent() {
         long userId = 1L;
         Pageable pageable = Pageable.unpaged();
-        when(commentRepository.findAllCommentByItemId(anyLong())).thenReturn(List.of(comment));
+        when(commentRepository.findLatestByItemIdIn(anyCollection(), anyInt())).thenReturn(List.of(commentRow(comment, 1L)));
         when(itemRepository.findAllByOwnerId(anyLong(), any())).thenReturn(List.of(itemOne, itemTwo));
-        when(bookingRepository.findFirstByItemIdAndStartLessThanEqualOrderByStartDesc(anyLong(), any())).thenReturn(Optional.empty());
-        when(bookingRepository.findFirstByItemIdAndStartAfterOrderByStartAsc(anyLong(), any())).thenReturn(Optional.empty());
         List<ItemDtoWithBooking> result = itemService.getAllItemsForOwner(userId, pageable);
         assertThat(result).isNotNull();
+        assertThat(result).allMatch(item -> item.getLastBooking() == null && item.getNextBooking() == null);
+        assertThat(result).filteredOn(item -> item.getId() == itemOne.getId())
+                .allMatch(item -> item.getComments().size() == 1);
     }
 
     @Test
     public void testGetAllItemsForOwner() {
         long userId = 1L;
+        itemOne.setLastBooking(bookingOne);
+        itemOne.setNextBooking(futureBooking(1L, userOne, Status.APPROVED));
 
         when(itemRepository.findAllByOwnerId(anyLong())).thenReturn(List.of(itemOne, itemTwo));
-        when(bookingRepository.findFirstByItemIdAndStartLessThanEqualOrderByStartDesc(anyLong(), any())).thenReturn(Optional.of(bookingOne));
-        when(bookingRepository.findFirstByItemIdAndStartAfterOrderByStartAsc(anyLong(), any())).thenReturn(Optional.of(bookingOne));
         List<ItemDtoWithBooking> result = itemService.getAllItemsForOwner(userId, null);
         assertThat(result).isNotNull();
         assertThat(result).contains(itemDtoWithBooking);
     }
 
+    @Test
+    public void testGetAllItemsForOwnerRejectedBookingNotShown() {
+        long userId = 1L;
+        bookingOne.setStatus(Status.REJECTED);
+        itemOne.setLastBooking(bookingOne);
+
+        when(itemRepository.findAllByOwnerId(anyLong())).thenReturn(List.of(itemOne));
+        List<ItemDtoWithBooking> result = itemService.getAllItemsForOwner(userId, null);
+        assertThat(result).hasSize(1);
+        assertThat(result.get(0).getLastBooking()).isNull();
+        assertThat(result.get(0).getNextBooking()).isNull();
+    }
+
+    @Test
+    public void testGetAllItemsForOwnerStartedNextBookingReadFromBookings() {
+        itemOne.setLastBooking(bookingOne);
+        itemOne.setNextBooking(bookingTwo);
+        itemTwo.setLastBooking(bookingOne);
+
+        when(itemRepository.findAllByOwnerId(anyLong())).thenReturn(List.of(itemOne, itemTwo));
+        when(bookingRepository.findLastAndNextByItemIdIn(eq(List.of(1L)), any()))
+                .thenReturn(List.of(bookingShort(bookingTwo, 1L, true), bookingShort(bookingOne, 1L, false)));
+        List<ItemDtoWithBooking> result = itemService.getAllItemsForOwner(1L, null);
+
+        assertThat(result).filteredOn(item -> item.getId() == 1L).singleElement().satisfies(item -> {
+            assertThat(item.getLastBooking()).isEqualTo(new BookingTwoFieldsDto(2L, 2L));
+            assertThat(item.getNextBooking()).isEqualTo(new BookingTwoFieldsDto(1L, 1L));
+        });
+        assertThat(result).filteredOn(item -> item.getId() == 2L).singleElement()
+                .satisfies(item -> assertThat(item.getLastBooking()).isEqualTo(new BookingTwoFieldsDto(1L, 1L)));
+    }
+
+    @Test
+    public void testGetAllItemsForOwnerEmpty() {
+        when(itemRepository.findAllByOwnerId(anyLong())).thenReturn(Collections.emptyList());
+        List<ItemDtoWithBooking> result = itemService.getAllItemsForOwner(1L, null);
+        assertThat(result).isEmpty();
+        verifyNoInteractions(bookingRepository, commentRepository);
+    }
+
     @Test
     public void testGetSearchItems() {
-        when(itemRepository.search(anyString())).thenReturn(List.of(itemOne, itemTwo));
+        when(itemSearchIndex.search("text")).thenReturn(List.of(1L, 2L));
+        when(itemRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(itemTwo, itemOne));
         List<ItemDto> text = itemService.getSearchItems("text", null);
-        assertThat(text).isNotNull();
+        assertThat(text).extracting(ItemDto::getId).containsExactly(1L, 2L);
     }
 
 
     @Test
     public void testGetSearchItemsPageable() {
         Pageable pageable = Pageable.unpaged();
-        when(itemRepository.findAll(anyString(), any())).thenReturn(List.of(itemOne, itemTwo));
+        when(itemSearchIndex.search("text")).thenReturn(List.of(1L, 2L));
+        when(itemRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(itemOne, itemTwo));
         List<ItemDto> text = itemService.getSearchItems("text", pageable);
-        assertThat(text).isNotNull();
+        assertThat(text).extracting(ItemDto::getId).containsExactly(1L, 2L);
+    }
+
+    @Test
+    public void testGetSearchItemsPageRequest() {
+        when(itemSearchIndex.search("text")).thenReturn(List.of(1L, 2L, 3L));
+        when(itemRepository.findAllById(List.of(2L))).thenReturn(List.of(itemTwo));
+        List<ItemDto> text = itemService.getSearchItems("text", PageRequest.of(1, 1));
+        assertThat(text).extracting(ItemDto::getId).containsExactly(2L);
+    }
+
+    @Test
+    public void testGetSearchItemsCachesPage() {
+        when(itemSearchIndex.search("text")).thenReturn(List.of(1L, 2L, 3L));
+        when(itemRepository.findAllById(List.of(2L))).thenReturn(List.of(itemTwo));
+        itemService.getSearchItems("text", PageRequest.of(1, 1));
+        List<ItemDto> text = itemService.getSearchItems("TEXT", PageRequest.of(1, 1));
+        assertThat(text).extracting(ItemDto::getId).containsExactly(2L);
+        verify(itemSearchIndex, times(1)).search(anyString());
+    }
+
+    @Test
+    public void testUpdateItemInvalidatesMatchingSearches() throws NotFoundException {
+        when(itemSearchIndex.search(anyString())).thenReturn(List.of(1L));
+        when(itemRepository.findAllById(List.of(1L))).thenReturn(List.of(itemOne));
+        itemService.getSearchItems("дрел", null);
+        itemService.getSearchItems("клей", null);
+        when(itemRepository.findById(1L)).thenReturn(Optional.of(itemOne));
+        when(itemRepository.save(any())).thenReturn(itemOne);
+        when(itemSearchIndex.index(itemOne)).thenReturn(List.of("дрель", "аккумуляторная дрель"));
+
+        itemService.updateItem(new ItemDto(), 1L, userTwo.getId());
+        itemService.getSearchItems("дрел", null);
+        itemService.getSearchItems("клей", null);
+
+        verify(itemSearchIndex, times(2)).search("дрел");
+        verify(itemSearchIndex, times(1)).search("клей");
+    }
+
+    @Test
+    public void testGetSearchItemsRemovesMissingFromIndex() {
+        when(itemSearchIndex.search("text")).thenReturn(List.of(1L, 5L));
+        when(itemRepository.findAllById(List.of(1L, 5L))).thenReturn(List.of(itemOne));
+        List<ItemDto> text = itemService.getSearchItems("text", null);
+        assertThat(text).extracting(ItemDto::getId).containsExactly(1L);
+        verify(itemSearchIndex).remove(5L);
+    }
+
+    @Test
+    public void testGetSearchItemsBlank() {
+        assertThat(itemService.getSearchItems(" ", null)).isEmpty();
+        verifyNoInteractions(itemSearchIndex);
+    }
+
+    @Test
+    public void testStreamSearchItemsLoadsChunksOnDemand() {
+        when(itemSearchIndex.search("text")).thenReturn(LongStream.rangeClosed(1, 250).boxed().collect(Collectors.toList()));
+        when(itemRepository.findAllByIdIn(anyCollection())).thenAnswer(invocation -> {
+            List<Long> ids = invocation.getArgument(0);
+            return ids.stream()
+                    .map(id -> new Item(id, "item" + id, "description" + id, true, userOne, null))
+                    .collect(Collectors.toList());
+        });
+
+        StepVerifier.create(itemService.streamSearchItems("text"), 1)
+                .assertNext(item -> assertThat(item.getId()).isEqualTo(1L))
+                .then(() -> verify(itemRepository, times(1)).findAllByIdIn(anyCollection()))
+                .thenRequest(ItemServiceImpl.SEARCH_CHUNK_SIZE)
+                .expectNextCount(ItemServiceImpl.SEARCH_CHUNK_SIZE)
+                .then(() -> verify(itemRepository, times(2)).findAllByIdIn(anyCollection()))
+                .thenRequest(Long.MAX_VALUE)
+                .expectNextCount(149)
+                .verifyComplete();
+        verify(itemRepository, times(3)).findAllByIdIn(anyCollection());
+    }
+
+    @Test
+    public void testStreamSearchItemsRemovesMissingFromIndex() {
+        when(itemSearchIndex.search("text")).thenReturn(List.of(1L, 5L));
+        when(itemRepository.findAllByIdIn(List.of(1L, 5L))).thenReturn(List.of(itemOne));
+
+        StepVerifier.create(itemService.streamSearchItems("text"))
+                .assertNext(item -> assertThat(item.getId()).isEqualTo(1L))
+                .verifyComplete();
+        verify(itemSearchIndex).remove(5L);
+    }
+
+    @Test
+    public void testStreamSearchItemsBlank() {
+        StepVerifier.create(itemService.streamSearchItems(" ")).verifyComplete();
+        verifyNoInteractions(itemSearchIndex, itemRepository);
+    }
+
+    @Test
+    public void testGetAvailability() throws NotFoundException, ValidationException {
+        LocalDateTime start = LocalDateTime.of(2030, 1, 1, 0, 0);
+        BookingIntervals intervals = new BookingIntervals();
+        intervals.add(1L, start.plusHours(1), start.plusHours(2));
+        when(itemRepository.existsById(1L)).thenReturn(true);
+        when(bookingIntervalIndex.forItem(1L)).thenReturn(intervals);
+
+        List<AvailabilityInterval> result = itemService.getAvailability(1L, "2030-01-01T00:00:00", "2030-01-01T03:00:00");
+
+        assertThat(result).containsExactly(
+                AvailabilityInterval.free(start, start.plusHours(1)),
+                AvailabilityInterval.busy(start.plusHours(1), start.plusHours(2)),
+                AvailabilityInterval.free(start.plusHours(2), start.plusHours(3)));
+        verifyNoInteractions(bookingRepository);
+    }
+
+    @Test
+    public void testGetAvailabilityStartsNow() throws NotFoundException, ValidationException {
+        when(itemRepository.existsById(1L)).thenReturn(true);
+        when(bookingIntervalIndex.forItem(1L)).thenReturn(new BookingIntervals());
+
+        List<AvailabilityInterval> result = itemService.getAvailability(1L, "2020-01-01T00:00:00", "2030-01-01T00:00:00");
+
+        assertThat(result).hasSize(1);
+        assertThat(result.get(0).getStart()).isAfter(LocalDateTime.of(2023, 1, 1, 0, 0));
+        assertThat(itemService.getAvailability(1L, "2020-01-01T00:00:00", "2021-01-01T00:00:00")).isEmpty();
+    }
+
+    @Test
+    public void testGetAvailabilityInvalidPeriod() {
+        Assertions.assertThrows(ValidationException.class,
+                () -> itemService.getAvailability(1L, "2030-01-02T00:00:00", "2030-01-01T00:00:00"));
+        Assertions.assertThrows(ValidationException.class,
+                () -> itemService.getAvailability(1L, "завтра", "2030-01-01T00:00:00"));
+        verifyNoInteractions(itemRepository, bookingIntervalIndex);
+    }
+
+    @Test
+    public void testGetAvailabilityItemNotFound() {
+        when(itemRepository.existsById(99L)).thenReturn(false);
+        Assertions.assertThrows(NotFoundException.class,
+                () -> itemService.getAvailability(99L, "2030-01-01T00:00:00", "2030-01-02T00:00:00"));
+        verifyNoInteractions(bookingIntervalIndex);
+    }
+
+    @Test
+    public void testGetComments() throws NotFoundException, ValidationException {
+        CommentDto commentDto = new CommentDto(1L, "text", "name1", comment.getCreated());
+        when(itemRepository.existsById(1L)).thenReturn(true);
+        when(commentRepository.findDtosByItemId(1L, PageRequest.of(2, 5))).thenReturn(List.of(commentDto));
+
+        // from — смещение в элементах: с 10-го комментария при странице 5 начинается третья страница
+        assertThat(itemService.getComments(1L, 10, 5)).containsExactly(commentDto);
+    }
+
+    @Test
+    public void testGetCommentsItemNotFound() {
+        when(itemRepository.existsById(1L)).thenReturn(false);
+
+        Assertions.assertThrows(NotFoundException.class, () -> itemService.getComments(1L, 0, 20));
+        verifyNoInteractions(commentRepository);
+    }
+
+    @Test
+    public void testGetCommentsWrongPage() {
+        Assertions.assertThrows(ValidationException.class, () -> itemService.getComments(1L, -1, 20));
+        Assertions.assertThrows(ValidationException.class, () -> itemService.getComments(1L, 0, 0));
+        verifyNoInteractions(itemRepository, commentRepository);
     }
 
     @Test
@@ -315,18 +567,17 @@ public class ItemServiceImplTest {
 
         Item item = new Item();
         item.setId(itemId);
-
-        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
         when(itemRepository.findById(itemId)).thenReturn(Optional.of(item));
         when(bookingRepository.findFirstByBookerIdAndItemIdAndEndLessThanEqual(any(), any(), any()))
                 .thenReturn(Optional.of(bookingOne));
         when(commentRepository.save(any())).thenReturn(comment);
 
-        CommentDto result = itemService.createComment(commentDto, itemId, userId);
+        CommentDto result = itemService.createComment(commentDto, itemId, user);
 
         assertThat(result).isNotNull();
         assertThat(result.getText()).isEqualTo(comment.getText());
         assertThat(result.getAuthorName()).isEqualTo(comment.getAuthor().getName());
+        verify(entityVersions).itemChanged(itemId);
     }
 
     @Test
@@ -340,27 +591,86 @@ public class ItemServiceImplTest {
         CommentDto commentDto = new CommentDto();
         commentDto.setText("Test Comment");
         item.setId(itemId);
-        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
         when(itemRepository.findById(itemId)).thenReturn(Optional.of(item));
         when(bookingRepository.findFirstByBookerIdAndItemIdAndEndLessThanEqual(any(), any(), any()))
                 .thenReturn(Optional.empty());
         Assertions.assertThrows(ValidationException.class, () -> {
-            itemService.createComment(commentDto, itemId, userId);
+            itemService.createComment(commentDto, itemId, user);
         }, "Ошибка ввода данных!");
     }
 
-    @Test
-    public void testCreateCommentExpectNotFoundExceptionUser() {
-        Assertions.assertThrows(NotFoundException.class, () -> {
-            itemService.createComment(new CommentDto(), 1L, 1L);
-        }, String.format("Пользователь %s не найден", 1L));
-    }
-
     @Test
     public void testCreateCommentExpectNotFoundExceptionItem() {
-        when(userRepository.findById(1L)).thenReturn(Optional.of(userOne));
         Assertions.assertThrows(NotFoundException.class, () -> {
-            itemService.createComment(new CommentDto(), 1L, 1L);
+            itemService.createComment(new CommentDto(), 1L, userOne);
         }, String.format("Вещь по айди %s не найдена!", 1L));
     }
-}
\ No newline at end of file
+
+    private Booking futureBooking(long id, User booker, Status status) {
+        LocalDateTime start = LocalDateTime.now().plusDays(1);
+        return new Booking(id, start, start.plusDays(1), itemOne, booker, status);
+    }
+
+    private BookingShort bookingShort(Booking booking, Long itemId, boolean past) {
+        return new BookingShort() {
+            @Override
+            public Long getId() {
+                return booking.getId();
+            }
+
+            @Override
+            public Long getItemId() {
+                return itemId;
+            }
+
+            @Override
+            public Long getBookerId() {
+                return booking.getBooker().getId();
+            }
+
+            @Override
+            public Status getStatus() {
+                return booking.getStatus();
+            }
+
+            @Override
+            public LocalDateTime getStart() {
+                return past ? LocalDateTime.now().minusDays(1) : LocalDateTime.now().plusDays(1);
+            }
+        };
+    }
+
+    private CommentRow commentRow(Comment comment, Long total) {
+        return new CommentRow() {
+            @Override
+            public Long getId() {
+                return comment.getId();
+            }
+
+            @Override
+            public Long getItemId() {
+                return comment.getItem().getId();
+            }
+
+            @Override
+            public String getText() {
+                return comment.getText();
+            }
+
+            @Override
+            public String getAuthorName() {
+                return comment.getAuthor().getName();
+            }
+
+            @Override
+            public LocalDateTime getCreated() {
+                return comment.getCreated();
+            }
+
+            @Override
+            public Long getTotal() {
+                return total;
+            }
+        };
+    }
+}
@@ -0,0 +1,71 @@
+package ru.practicum.shareit.item;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SearchResultCacheTest {
+    private SimpleMeterRegistry meterRegistry;
+    private SearchResultCache searchResultCache;
+    private AtomicInteger searches;
+
+    @BeforeEach
+    void init() {
+        meterRegistry = new SimpleMeterRegistry();
+        searchResultCache = new SearchResultCache(meterRegistry, 100);
+        searches = new AtomicInteger();
+    }
+
+    @Test
+    void getSearchesOncePerTextAndPage() {
+        assertThat(searchResultCache.get("Дрель", null, search(List.of(1L, 2L)))).containsExactly(1L, 2L);
+        assertThat(searchResultCache.get("дрель", null, search(List.of(3L)))).containsExactly(1L, 2L);
+        assertThat(searchResultCache.get("дрель", PageRequest.of(1, 1), search(List.of(2L)))).containsExactly(2L);
+
+        assertThat(searches).hasValue(2);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", SearchResultCache.NAME).tag("result", "hit")
+                .functionCounter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", SearchResultCache.NAME).tag("result", "miss")
+                .functionCounter().count()).isEqualTo(2.0);
+    }
+
+    @Test
+    void invalidateRemovesOnlyMatchingQueries() {
+        searchResultCache.get("дрел", null, search(List.of(1L)));
+        searchResultCache.get("дрел", PageRequest.of(1, 1), search(List.of()));
+        searchResultCache.get("клей", null, search(List.of(2L)));
+
+        searchResultCache.invalidate(List.of("Аккумуляторная дрель", "Дрель + аккумулятор"));
+
+        searchResultCache.get("дрел", null, search(List.of(1L, 10L)));
+        searchResultCache.get("дрел", PageRequest.of(1, 1), search(List.of(10L)));
+        searchResultCache.get("клей", null, search(List.of(2L)));
+        assertThat(searches).hasValue(5);
+        assertThat(meterRegistry.get("cache.invalidations").tag("cache", SearchResultCache.NAME)
+                .counter().count()).isEqualTo(2.0);
+    }
+
+    @Test
+    void getDoesNotCacheResultComputedDuringInvalidation() {
+        searchResultCache.get("дрел", null, () -> {
+            searchResultCache.invalidate(List.of("дрель"));
+            return List.of(1L);
+        });
+
+        assertThat(searchResultCache.get("дрел", null, search(List.of(1L, 10L)))).containsExactly(1L, 10L);
+    }
+
+    private Supplier<List<Long>> search(List<Long> ids) {
+        return () -> {
+            searches.incrementAndGet();
+            return ids;
+        };
+    }
+}
@@ -1,38 +1,64 @@
 package ru.practicum.shareit.request;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import ru.practicum.shareit.EntityVersions;
 import ru.practicum.shareit.request.dto.ItemRequestDto;
+import ru.practicum.shareit.user.User;
+import ru.practicum.shareit.user.UserRepository;
 
 import java.util.Collections;
+import java.util.Optional;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 
 @WebMvcTest(ItemRequestController.class)
+@Import(EntityVersions.class)
 public class ItemRequestControllerTest {
 
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private EntityVersions entityVersions;
+
     @MockBean
     private ItemRequestService itemRequestService;
 
+    @MockBean
+    private UserRepository userRepository;
+
+    private final User caller = new User(1L, "user", "user@user.com");
+
+    @BeforeEach
+    void setUpCaller() {
+        when(userRepository.findById(1L)).thenReturn(Optional.of(caller));
+    }
+
     @Test
     public void testCreateRequest() throws Exception {
         ItemRequestDto itemRequestDto = new ItemRequestDto();
         itemRequestDto.setDescription("Test Request Description");
 
-        when(itemRequestService.createRequest(any(ItemRequestDto.class), any(Long.class))).thenReturn(itemRequestDto);
+        when(itemRequestService.createRequest(any(ItemRequestDto.class), any(User.class))).thenReturn(itemRequestDto);
 
         mockMvc.perform(MockMvcRequestBuilders.post("/requests")
                         .header("X-Sharer-User-Id", 1L)
@@ -48,7 +74,7 @@ public class ItemRequestControllerTest {
         itemRequestDto.setId(1L);
         itemRequestDto.setDescription("Test Request Description");
 
-        when(itemRequestService.getRequestsWithAnswers(any(Long.class)))
+        when(itemRequestService.getRequestsWithAnswers(any(User.class)))
                 .thenReturn(Collections.singletonList(itemRequestDto));
 
         mockMvc.perform(MockMvcRequestBuilders.get("/requests")
@@ -65,13 +91,14 @@ public class ItemRequestControllerTest {
         itemRequestDto.setDescription("Test Request Description");
 
         when(itemRequestService.getAllRequests(any(Long.class), anyInt(), anyInt()))
-                .thenReturn(Collections.singletonList(itemRequestDto));
+                .thenReturn(new SliceImpl<>(Collections.singletonList(itemRequestDto), PageRequest.of(0, 10), false));
 
         mockMvc.perform(MockMvcRequestBuilders.get("/requests/all")
                         .param("from", "0")
                         .param("size", "10")
                         .header("X-Sharer-User-Id", 1L))
                 .andExpect(status().isOk())
+                .andExpect(header().string("X-Has-Next", "false"))
                 .andExpect(jsonPath("$.size()").value("1"))
                 .andExpect(jsonPath("$.[0].id").value("1"))
                 .andExpect(jsonPath("$.[0].description").value("Test Request Description"));
@@ -84,7 +111,7 @@ public class ItemRequestControllerTest {
         itemRequestDto.setDescription("Test Request Description");
 
         when(itemRequestService.getAllRequests(any(Long.class), anyInt(), anyInt()))
-                .thenReturn(Collections.singletonList(itemRequestDto));
+                .thenReturn(new SliceImpl<>(Collections.singletonList(itemRequestDto)));
 
         mockMvc.perform(MockMvcRequestBuilders.get("/requests/all")
                         .header("X-Sharer-User-Id", 1L))
@@ -98,7 +125,7 @@ public class ItemRequestControllerTest {
         itemRequestDto.setId(1L);
         itemRequestDto.setDescription("Test Request Description");
 
-        when(itemRequestService.getRequestById(any(Long.class), any(Long.class)))
+        when(itemRequestService.getRequestById(any(Long.class)))
                 .thenReturn(itemRequestDto);
 
         mockMvc.perform(MockMvcRequestBuilders.get("/requests/1")
@@ -107,4 +134,28 @@ public class ItemRequestControllerTest {
                 .andExpect(jsonPath("$.id").value("1"))
                 .andExpect(jsonPath("$.description").value("Test Request Description"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testGetRequestByIdNotModifiedUntilRequestChanges() throws Exception {
+        ItemRequestDto itemRequestDto = new ItemRequestDto();
+        itemRequestDto.setId(2L);
+
+        when(itemRequestService.getRequestById(2L)).thenReturn(itemRequestDto);
+
+        String etag = mockMvc.perform(MockMvcRequestBuilders.get("/requests/2")
+                        .header("X-Sharer-User-Id", 1L))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mockMvc.perform(MockMvcRequestBuilders.get("/requests/2")
+                        .header("X-Sharer-User-Id", 1L)
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+        entityVersions.requestChanged(2L);
+        mockMvc.perform(MockMvcRequestBuilders.get("/requests/2")
+                        .header("X-Sharer-User-Id", 1L)
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+
+        verify(itemRequestService, times(2)).getRequestById(2L);
+    }
+}
@@ -7,8 +7,8 @@ import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import java.util.List;
@@ -35,9 +35,10 @@ class ItemRequestRepositoryTest {
     @Test
     void findAllByRequestorIdNot() {
         ItemRequest itemRequest = em.find(ItemRequest.class, 1L);
-        Page<ItemRequest> finds = itemRequestRepository.findAllByRequestorIdNot(2L, PageRequest.of(0, 3));
+        Slice<ItemRequest> finds = itemRequestRepository.findAllByRequestorIdNot(2L, PageRequest.of(0, 3));
         assertThat(finds).isNotEmpty();
         assertThat(finds).contains(itemRequest);
+        assertThat(finds.hasNext()).isFalse();
     }
 
     @Test
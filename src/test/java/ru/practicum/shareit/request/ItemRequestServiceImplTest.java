@@ -7,14 +7,14 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.SliceImpl;
+import ru.practicum.shareit.EntityVersions;
 import ru.practicum.shareit.exception.NotFoundException;
 import ru.practicum.shareit.exception.ValidationException;
 import ru.practicum.shareit.item.ItemRepository;
 import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.request.dto.ItemRequestDto;
 import ru.practicum.shareit.user.User;
-import ru.practicum.shareit.user.UserRepository;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -24,6 +24,8 @@ import java.util.Optional;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -35,11 +37,10 @@ public class ItemRequestServiceImplTest {
     @Mock
     private ItemRepository itemRepository;
 
-    @Mock
-    private UserRepository userRepository;
-
     @Mock
     private ItemRequestRepository requestRepository;
+    @Mock
+    private EntityVersions entityVersions;
     private Item itemOne;
     private Item itemTwo;
     private User userOne;
@@ -64,37 +65,28 @@ public class ItemRequestServiceImplTest {
 
     @Test
     public void testCreateRequest() throws NotFoundException, ValidationException {
-        when(userRepository.findById(any(Long.class))).thenReturn(Optional.of(userOne));
         when(requestRepository.save(any(ItemRequest.class))).thenReturn(itemRequest);
 
-        ItemRequestDto createdRequest = itemRequestService.createRequest(itemRequestDto, 1L);
+        ItemRequestDto createdRequest = itemRequestService.createRequest(itemRequestDto, userOne);
 
         assertThat(createdRequest).isNotNull();
         assertThat(createdRequest).isEqualTo(itemRequestDto);
+        verify(entityVersions).requestChanged(createdRequest.getId());
     }
 
     @Test
     void testCreateRequestExpectExceptionValidationException() {
-        when(userRepository.findById(any(Long.class))).thenReturn(Optional.of(userOne));
         Assertions.assertThrows(ValidationException.class, () -> {
-            itemRequestService.createRequest(new ItemRequestDto(), 1L);
+            itemRequestService.createRequest(new ItemRequestDto(), userOne);
         }, "Описание не заполнено!");
     }
 
-    @Test
-    void testCreateRequestExpectNotFoundUser() {
-        Assertions.assertThrows(NotFoundException.class, () -> {
-            itemRequestService.createRequest(new ItemRequestDto(), 1L);
-        }, String.format("Пользователь %s не найден", 1L));
-    }
-
     @Test
     public void testGetRequestsWithAnswers() throws NotFoundException {
-        when(userRepository.findById(any(Long.class))).thenReturn(Optional.of(userOne));
         when(requestRepository.findAllByRequestorId(any(Long.class))).thenReturn(Collections.singletonList(itemRequest));
-        when(itemRepository.findAll()).thenReturn(Collections.singletonList(new Item()));
+        when(itemRepository.findAllByRequestIdIn(anyCollection())).thenReturn(Collections.emptyList());
 
-        List<ItemRequestDto> requests = itemRequestService.getRequestsWithAnswers(1L);
+        List<ItemRequestDto> requests = itemRequestService.getRequestsWithAnswers(userOne);
 
         assertThat(requests).isNotNull();
         assertThat(requests.get(0).getRequester()).isEqualTo(userOne);
@@ -102,29 +94,22 @@ public class ItemRequestServiceImplTest {
 
     @Test
     public void testGetRequestsWithAnswersExpectItemDtoIdNotNull() throws NotFoundException {
-        when(userRepository.findById(any(Long.class))).thenReturn(Optional.of(userOne));
         when(requestRepository.findAllByRequestorId(any(Long.class))).thenReturn(Collections.singletonList(itemRequest));
-        when(itemRepository.findAll()).thenReturn(Collections.singletonList(itemOne));
+        when(itemRepository.findAllByRequestIdIn(anyCollection())).thenReturn(List.of(itemOne, itemTwo));
 
-        List<ItemRequestDto> requests = itemRequestService.getRequestsWithAnswers(1L);
+        List<ItemRequestDto> requests = itemRequestService.getRequestsWithAnswers(userOne);
 
         assertThat(requests).isNotNull();
         assertThat(requests.get(0).getRequester()).isEqualTo(userOne);
-    }
-
-    @Test
-    void testGetRequestsWithAnswersExpectNotFoundUser() {
-        Assertions.assertThrows(NotFoundException.class, () -> {
-            itemRequestService.getRequestsWithAnswers(1L);
-        }, String.format("Пользователь %s не найден", 1L));
+        assertThat(requests.get(0).getItems().size()).isEqualTo(2);
     }
 
     @Test
     public void testGetAllRequests() {
-        when(requestRepository.findAllByRequestorIdNot(any(Long.class), any())).thenReturn(new PageImpl<>(Collections.singletonList(itemRequest)));
-        when(itemRepository.findAll()).thenReturn(Collections.singletonList(new Item()));
+        when(requestRepository.findAllByRequestorIdNot(any(Long.class), any())).thenReturn(new SliceImpl<>(Collections.singletonList(itemRequest)));
+        when(itemRepository.findAllByRequestIdIn(anyCollection())).thenReturn(Collections.emptyList());
 
-        List<ItemRequestDto> requests = itemRequestService.getAllRequests(1L, 0, 10);
+        List<ItemRequestDto> requests = itemRequestService.getAllRequests(1L, 0, 10).getContent();
 
         assertThat(requests).isNotNull();
         assertThat(requests.size()).isEqualTo(1);
@@ -134,10 +119,10 @@ public class ItemRequestServiceImplTest {
 
     @Test
     public void testGetAllRequestsExpectItemDtoIdNotNull() {
-        when(requestRepository.findAllByRequestorIdNot(any(Long.class), any())).thenReturn(new PageImpl<>(Collections.singletonList(itemRequest)));
-        when(itemRepository.findAll()).thenReturn(Collections.singletonList(itemOne));
+        when(requestRepository.findAllByRequestorIdNot(any(Long.class), any())).thenReturn(new SliceImpl<>(Collections.singletonList(itemRequest)));
+        when(itemRepository.findAllByRequestIdIn(anyCollection())).thenReturn(List.of(itemOne, itemTwo));
 
-        List<ItemRequestDto> requests = itemRequestService.getAllRequests(1L, 0, 10);
+        List<ItemRequestDto> requests = itemRequestService.getAllRequests(1L, 0, 10).getContent();
 
         assertThat(requests).isNotNull();
         assertThat(requests.size()).isEqualTo(1);
@@ -146,28 +131,20 @@ public class ItemRequestServiceImplTest {
 
     @Test
     public void testGetRequestById() throws NotFoundException {
-        when(userRepository.findById(any(Long.class))).thenReturn(Optional.of(userOne));
         when(requestRepository.findById(any(Long.class))).thenReturn(Optional.of(itemRequest));
-        when(itemRepository.findAll()).thenReturn(Collections.singletonList(itemOne));
+        when(itemRepository.findAllByRequestIdIn(anyCollection())).thenReturn(List.of(itemOne, itemTwo));
 
-        ItemRequestDto request = itemRequestService.getRequestById(1L, 1L);
+        ItemRequestDto request = itemRequestService.getRequestById(1L);
 
         assertThat(request).isNotNull();
         assertThat(request.getRequester()).isEqualTo(userOne);
+        assertThat(request.getItems().size()).isEqualTo(2);
     }
 
     @Test
     void testGetRequestByIdExpectNotFoundRequest() {
-        when(userRepository.findById(any(Long.class))).thenReturn(Optional.of(userOne));
         Assertions.assertThrows(NotFoundException.class, () -> {
-            itemRequestService.getRequestById(1L, 1L);
+            itemRequestService.getRequestById(1L);
         }, String.format("Запрос на вещь не найден!", 1L));
     }
-
-    @Test
-    void testGetRequestByIdExpectNotFoundUser() {
-        Assertions.assertThrows(NotFoundException.class, () -> {
-            itemRequestService.getRequestById(1L, 1L);
-        }, String.format("Пользователь %s не найден", 1L));
-    }
 }
\ No newline at end of file
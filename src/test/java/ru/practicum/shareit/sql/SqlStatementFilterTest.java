@@ -0,0 +1,62 @@
+package ru.practicum.shareit.sql;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SqlStatementFilterTest {
+    private final SqlStatementInspector inspector = new SqlStatementInspector();
+    private SimpleMeterRegistry meterRegistry;
+    private SqlStatementFilter filter;
+    private MockHttpServletRequest request;
+
+    @BeforeEach
+    void init() {
+        meterRegistry = new SimpleMeterRegistry();
+        filter = new SqlStatementFilter(new StaticListableBeanFactory(Map.of("meterRegistry", meterRegistry))
+                .getBeanProvider(MeterRegistry.class), 20, 3);
+        request = new MockHttpServletRequest("GET", "/items");
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/items");
+    }
+
+    @Test
+    void countsStatementsAndRepeatedShapesOfRequest() throws Exception {
+        AtomicReference<SqlStatements> seen = new AtomicReference<>();
+
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+            inspector.inspect("select * from items where owner_id=?");
+            inspector.inspect("select * from bookings where item_id in (?)");
+            inspector.inspect("select * from bookings where item_id in (?, ?)");
+            inspector.inspect("select * from bookings where item_id in (?,?,?)");
+            seen.set(SqlStatements.current());
+        });
+
+        assertThat(seen.get().getCount()).isEqualTo(4);
+        assertThat(seen.get().getMaxRepeats()).isEqualTo(3);
+        assertThat(seen.get().getMostRepeated()).isEqualTo("select * from bookings where item_id in (?)");
+        assertThat(SqlStatements.current()).isNull();
+        assertThat(meterRegistry.get("shareit.sql.statements").tag("uri", "/items").tag("method", "GET")
+                .summary().totalAmount()).isEqualTo(4);
+        assertThat(meterRegistry.get("shareit.sql.time").tag("uri", "/items").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void statementsOutsideRequestAreNotCounted() throws Exception {
+        inspector.inspect("select 1");
+
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+        });
+
+        assertThat(meterRegistry.get("shareit.sql.statements").summary().totalAmount()).isZero();
+    }
+}
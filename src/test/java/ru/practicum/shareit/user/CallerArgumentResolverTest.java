@@ -0,0 +1,81 @@
+package ru.practicum.shareit.user;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.MethodParameter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.bind.MissingRequestHeaderException;
+import org.springframework.web.context.request.ServletWebRequest;
+import ru.practicum.shareit.exception.NotFoundException;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CallerArgumentResolverTest {
+    @Mock
+    private UserRepository userRepository;
+    private CallerArgumentResolver resolver;
+    private MethodParameter callerParameter;
+    private MethodParameter userIdParameter;
+    private MockHttpServletRequest request;
+
+    @BeforeEach
+    void init() throws NoSuchMethodException {
+        resolver = new CallerArgumentResolver(userRepository);
+        callerParameter = new MethodParameter(getClass().getDeclaredMethod("handler", User.class, Long.class), 0);
+        userIdParameter = new MethodParameter(getClass().getDeclaredMethod("handler", User.class, Long.class), 1);
+        request = new MockHttpServletRequest();
+    }
+
+    @Test
+    void supportsOnlyAnnotatedUserParameters() {
+        assertThat(resolver.supportsParameter(callerParameter)).isTrue();
+        assertThat(resolver.supportsParameter(userIdParameter)).isFalse();
+    }
+
+    @Test
+    void resolvesCallerOncePerRequest() throws Exception {
+        User user = new User(1, "name", "email@1");
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        request.addHeader(CallerArgumentResolver.X_SHARER_USER_ID, "1");
+        ServletWebRequest webRequest = new ServletWebRequest(request);
+
+        assertThat(resolver.resolveArgument(callerParameter, null, webRequest, null)).isEqualTo(user);
+        assertThat(resolver.resolveArgument(callerParameter, null, webRequest, null)).isSameAs(
+                request.getAttribute(CallerArgumentResolver.ATTRIBUTE));
+        verify(userRepository, times(1)).findById(1L);
+    }
+
+    @Test
+    void resolveExpectNotFoundExceptionUser() {
+        request.addHeader(CallerArgumentResolver.X_SHARER_USER_ID, "9");
+
+        Assertions.assertThrows(NotFoundException.class, () -> {
+            resolver.resolveArgument(callerParameter, null, new ServletWebRequest(request), null);
+        }, String.format("Пользователь %s не найден", 9L));
+        assertThat(request.getAttribute(CallerArgumentResolver.ATTRIBUTE)).isNull();
+    }
+
+    @Test
+    void resolveExpectMissingHeader() {
+        Assertions.assertThrows(MissingRequestHeaderException.class, () -> {
+            resolver.resolveArgument(callerParameter, null, new ServletWebRequest(request), null);
+        });
+        verify(userRepository, never()).findById(anyLong());
+    }
+
+    @SuppressWarnings("unused")
+    private void handler(@Caller User caller, Long userId) {
+    }
+}
@@ -26,6 +26,8 @@ class UserControllerTest {
     private ObjectMapper objectMapper;
     @MockBean
     private UserServiceImpl userService;
+    @MockBean
+    private UserRepository userRepository;
     private UserDto user1Dto;
     private UserDto user2Dto;
     private UserDto newUserDto;
@@ -9,11 +9,16 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import ru.practicum.shareit.EntityVersions;
+import ru.practicum.shareit.booking.BookingIntervalIndex;
 import ru.practicum.shareit.exception.ConflictException;
 import ru.practicum.shareit.exception.ValidationException;
+import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.user.dto.UserDto;
 import ru.practicum.shareit.user.dto.UserMapper;
 
+import javax.persistence.Cache;
+import javax.persistence.EntityManagerFactory;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
@@ -28,6 +33,14 @@ class UserServiceImplTest {
     private UserServiceImpl userService;
     @Mock
     private UserRepository userRepository;
+    @Mock
+    private EntityManagerFactory entityManagerFactory;
+    @Mock
+    private Cache entityCache;
+    @Mock
+    private EntityVersions entityVersions;
+    @Mock
+    private BookingIntervalIndex bookingIntervalIndex;
     private UserDto user1Dto;
     private UserDto user2Dto;
     private UserDto userErrorDto;
@@ -152,9 +165,13 @@ class UserServiceImplTest {
 
     @Test
     public void testDeleteUserById() {
+        when(entityManagerFactory.getCache()).thenReturn(entityCache);
         userService.deleteUserById(1L);
 
         Mockito.verify(userRepository, Mockito.times(1)).deleteById(1L);
+        Mockito.verify(entityCache).evict(Item.class);
+        Mockito.verify(bookingIntervalIndex).invalidateAll();
+        Mockito.verify(entityVersions).allChanged();
     }
 
 }
\ No newline at end of file